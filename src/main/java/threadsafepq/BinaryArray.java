@@ -0,0 +1,118 @@
+package threadsafepq;
+
+import java.io.Serializable;
+
+/**
+ * Storage for the nodes of the heap (binary tree) used by PipelinedPriorityQueue.
+ * Each node is addressed by its index in the tree and holds an active flag, a value and a capacity,
+ * i.e. the number of inactive nodes sub-rooted at that node. Implementations are not thread-safe by
+ * themselves beyond what is stated; the queue only touches a node while holding the lock of its level.
+ *
+ * @param <E> the type of values stored in the heap
+ */
+public interface BinaryArray<E> extends Serializable {
+
+    /**
+     * Returns the number of nodes in this BinaryArray
+     * @return the number of nodes in this BinaryArray
+     */
+    int length();
+
+    /**
+     * Returns true if the node at the given index is active
+     * @param i index of the node
+     * @return true if the node at the given index is active
+     */
+    boolean isActive(int i);
+
+    /**
+     * Sets the active flag of the node at the given index
+     * @param i      index of the node
+     * @param active true if the node should be active, false otherwise
+     */
+    void setActive(int i, boolean active);
+
+    /**
+     * Returns the value of the node at the given index
+     * @param i index of the node
+     * @return the value of the node, null if it has none
+     */
+    E getValue(int i);
+
+    /**
+     * Sets the value of the node at the given index
+     * @param i     index of the node
+     * @param value the new value of the node
+     */
+    void setValue(int i, E value);
+
+    /**
+     * Returns the capacity of the node at the given index
+     * @param i index of the node
+     * @return the number of inactive nodes sub-rooted at the node
+     */
+    int getCapacity(int i);
+
+    /**
+     * Sets the capacity of the node at the given index
+     * @param i        index of the node
+     * @param capacity the new capacity of the node
+     */
+    void setCapacity(int i, int capacity);
+
+    /**
+     * Increments the capacity of the node at the given index.
+     * @param i index of the node
+     */
+    void incrementCapacity(int i);
+
+    /**
+     * Decrements the capacity of the node at the given index.
+     * @param i index of the node
+     */
+    void decrementCapacity(int i);
+
+    /**
+     * Marks every node as inactive and clears its value. Capacities are left untouched.
+     */
+    void clear();
+
+    /**
+     * Returns a new BinaryArray of the given length holding the nodes of this BinaryArray at the same indices.
+     * Nodes past the length of this BinaryArray are inactive; capacities of the new nodes are left at zero.
+     * @param newLength length of the new BinaryArray, at least the length of this BinaryArray
+     * @return a new BinaryArray holding the nodes of this BinaryArray
+     */
+    BinaryArray<E> copyOf(int newLength);
+
+    /**
+     * Returns true if this BinaryArray stores each level of the heap in its own segment. Such a BinaryArray
+     * grows by whole levels, shares the existing levels with the copies returned by copyOf, and keeps the
+     * capacities of the existing nodes correct when it grows, so they need not be recomputed.
+     * @return true if this BinaryArray grows by appending levels
+     */
+    default boolean isSegmented() {
+        return false;
+    }
+
+    /**
+     * Returns a new BinaryArray of the same kind and the given length whose nodes are meant to be filled one at a
+     * time with moveNode. Creating it does not visit every node, and a node must be written before it is read.
+     * @param length number of nodes
+     * @return a new BinaryArray of the same kind
+     */
+    BinaryArray<E> newEmpty(int length);
+
+    /**
+     * Replaces the node at the given index with the node at the same index of another BinaryArray, which must not
+     * be used for that node afterwards, and sets its capacity.
+     * @param i        index of the node
+     * @param source   BinaryArray holding the node
+     * @param capacity the capacity of the node in this BinaryArray
+     */
+    default void moveNode(int i, BinaryArray<E> source, int capacity) {
+        setActive(i, source.isActive(i));
+        setValue(i, source.getValue(i));
+        setCapacity(i, capacity);
+    }
+}
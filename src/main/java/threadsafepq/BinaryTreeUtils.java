@@ -1,7 +1,7 @@
 package threadsafepq;
 
 /**
- * Set of utility functions associated with binary trees.
+ * Set of utility functions associated with binary trees, and with d-ary trees in general.
  */
 public class BinaryTreeUtils {
 
@@ -34,4 +34,68 @@ public class BinaryTreeUtils {
         return (int) (Math.log(index) / Math.log(2) + 1);
     }
 
+    /**
+     * Returns the number of levels in a d-ary tree given its size
+     *
+     * @param size  size of d-ary tree
+     * @param arity maximum number of children of each node
+     * @return number of levels in d-ary tree
+     */
+    public static int convertSizeToNumLevels(int size, int arity) {
+        int levels = 0;
+        long full = 0;
+        long levelSize = 1;
+        while (full < size) {
+            full += levelSize;
+            levelSize *= arity;
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * Returns the size of a complete and full d-ary tree given the number of levels it has
+     * @param levels number of levels in d-ary tree
+     * @param arity  maximum number of children of each node
+     * @return size of complete and full d-ary tree, capped at Integer.MAX_VALUE
+     */
+    public static int convertNumLevelsToSize(int levels, int arity) {
+        long size = 0;
+        long levelSize = 1;
+        for (int i = 0; i < levels && size < Integer.MAX_VALUE; i++) {
+            size += levelSize;
+            levelSize *= arity;
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the level of a node given its index in an array holding a d-ary tree
+     * @param index index of a node in a zero-indexed array
+     * @param arity maximum number of children of each node
+     * @return level of a node
+     */
+    public static int findLevel(int index, int arity) {
+        return convertSizeToNumLevels(index + 1, arity);
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at the given index of a d-ary tree whose index is below a bound
+     * @param index index of the root of the subtree
+     * @param bound exclusive upper bound on the indices counted
+     * @param arity maximum number of children of each node
+     * @return the number of nodes of the subtree with an index less than bound
+     */
+    public static int countSubtree(int index, int bound, int arity) {
+        int count = 0;
+        long first = index;
+        long last = index;
+        while (first < bound) {
+            count += Math.min(last, bound - 1) - first + 1;
+            first = first * arity + 1;
+            last = last * arity + arity;
+        }
+        return count;
+    }
+
 }
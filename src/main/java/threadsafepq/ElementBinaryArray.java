@@ -0,0 +1,176 @@
+package threadsafepq;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A BinaryArray that stores every node of the heap as its own BinaryArrayElement.
+ * The arrays returned by newEmpty create their nodes when they are first written, and take over the nodes
+ * moved into them from another ElementBinaryArray instead of copying them.
+ *
+ * @param <E> the type of values stored in the heap
+ */
+public class ElementBinaryArray<E> implements BinaryArray<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 49L;
+    /**
+     * Represents the nodes of the heap.
+     */
+    private final BinaryArrayElement<E>[] elements;
+    /**
+     * Represents the user-defined comparator handed to every BinaryArrayElement.
+     */
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Constructs an ElementBinaryArray of inactive nodes
+     *
+     * @param length     number of nodes
+     * @param comparator comparator used to determine the relative priorities of different nodes
+     */
+    public ElementBinaryArray(int length, Comparator<? super E> comparator) {
+        this(newElements(length), comparator);
+        for (int i = 0; i < length; i++) {
+            elements[i] = new BinaryArrayElement<>(false, null, 0, comparator);
+        }
+    }
+
+    /**
+     * Constructs an ElementBinaryArray backed by the given nodes
+     *
+     * @param elements   nodes of the heap
+     * @param comparator comparator used to determine the relative priorities of different nodes
+     */
+    private ElementBinaryArray(BinaryArrayElement<E>[] elements, Comparator<? super E> comparator) {
+        this.elements = elements;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns a new array of nodes, holding no nodes yet
+     * @param length number of nodes
+     * @param <E>    the type of elements held in the nodes
+     * @return the array of nodes
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> BinaryArrayElement<E>[] newElements(int length) {
+        return (BinaryArrayElement<E>[]) new BinaryArrayElement<?>[length];
+    }
+
+    /**
+     * Returns the node at the given index, creating an inactive one if it has not been written yet
+     * @param i index of the node
+     * @return the node at the given index
+     */
+    private BinaryArrayElement<E> element(int i) {
+        BinaryArrayElement<E> element = elements[i];
+        if (element == null) {
+            element = new BinaryArrayElement<>(false, null, 0, comparator);
+            elements[i] = element;
+        }
+        return element;
+    }
+
+    @Override
+    public int length() {
+        return elements.length;
+    }
+
+    @Override
+    public boolean isActive(int i) {
+        return element(i).isActive();
+    }
+
+    @Override
+    public void setActive(int i, boolean active) {
+        element(i).setActive(active);
+    }
+
+    @Override
+    public E getValue(int i) {
+        return element(i).getValue();
+    }
+
+    @Override
+    public void setValue(int i, E value) {
+        element(i).setValue(value);
+    }
+
+    @Override
+    public int getCapacity(int i) {
+        return element(i).getCapacity();
+    }
+
+    @Override
+    public void setCapacity(int i, int capacity) {
+        element(i).setCapacity(capacity);
+    }
+
+    @Override
+    public void incrementCapacity(int i) {
+        element(i).incrementCapacity();
+    }
+
+    @Override
+    public void decrementCapacity(int i) {
+        element(i).decrementCapacity();
+    }
+
+    @Override
+    public void clear() {
+        for (BinaryArrayElement<E> element : elements) {
+            if (element == null) continue;
+            element.setActive(false);
+            element.setValue(null);
+        }
+    }
+
+    @Override
+    public BinaryArray<E> newEmpty(int length) {
+        return new ElementBinaryArray<>(newElements(length), comparator);
+    }
+
+    @Override
+    public void moveNode(int i, BinaryArray<E> source, int capacity) {
+        if (source instanceof ElementBinaryArray) {
+            elements[i] = ((ElementBinaryArray<E>) source).elements[i];
+            elements[i].setCapacity(capacity);
+        } else {
+            BinaryArray.super.moveNode(i, source, capacity);
+        }
+    }
+
+    @Override
+    public BinaryArray<E> copyOf(int newLength) {
+        BinaryArrayElement<E>[] copy = Arrays.copyOf(elements, newLength);
+        for (int i = elements.length; i < newLength; i++) {
+            copy[i] = new BinaryArrayElement<>(false, null, 0, comparator);
+        }
+        return new ElementBinaryArray<>(copy, comparator);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ElementBinaryArray<?> that = (ElementBinaryArray<?>) o;
+        return new EqualsBuilder()
+                .append(elements, that.elements)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(elements)
+                .toHashCode();
+    }
+}
@@ -0,0 +1,157 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A set of exchange slots through which an offer can hand its element straight to a concurrent poll,
+ * so that neither of them has to traverse the heap.
+ * A poll that cannot get the root of the heap straight away waits in an empty slot for a short while.
+ * An offer holding the root whose element would become the new head may then fill a waiting slot
+ * instead of inserting the element, which is equivalent to the element being inserted and immediately
+ * removed by the waiting poll.
+ *
+ * @param <E> the type of elements exchanged
+ */
+public class EliminationArray<E> implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 54L;
+    /**
+     * Default number of times a waiting poll checks its slot before giving up.
+     */
+    static final int DEFAULT_SPINS = 256;
+    /**
+     * Number of checks of its slot after which a waiting poll yields to other threads.
+     */
+    private static final int SPINS_BEFORE_YIELD = 16;
+    /**
+     * Marks a slot in which a poll is waiting for an element.
+     */
+    private static final Object WAITING = new Object();
+    /**
+     * Represents the slots: null when empty, WAITING when a poll waits in it, or the element handed over.
+     */
+    private final transient AtomicReferenceArray<Object> slots;
+    /**
+     * Represents the number of slots.
+     */
+    private final int length;
+    /**
+     * Represents the number of times a waiting poll checks its slot before giving up.
+     */
+    private final int spins;
+    /**
+     * Represents the number of polls that waited in a slot.
+     */
+    private final LongAdder attempts = new LongAdder();
+    /**
+     * Represents the number of polls that received an element through a slot.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Constructs an EliminationArray
+     *
+     * @param length number of slots
+     * @param spins  number of times a waiting poll checks its slot before giving up
+     * @throws IllegalArgumentException if length is less than 1 or spins is negative
+     */
+    public EliminationArray(int length, int spins) {
+        if (length < 1) throw new IllegalArgumentException("Number of slots must be greater than 0");
+        if (spins < 0) throw new IllegalArgumentException("Spins cannot be negative");
+        this.slots = new AtomicReferenceArray<>(length);
+        this.length = length;
+        this.spins = spins;
+    }
+
+    /**
+     * Waits in a random empty slot for an offer to hand over an element.
+     *
+     * @return the element handed over, or null if there was no free slot or no offer arrived in time
+     */
+    public E awaitElement() {
+        int index = ThreadLocalRandom.current().nextInt(length);
+        if (!slots.compareAndSet(index, null, WAITING)) return null;
+        attempts.increment();
+
+        for (int i = 0; i < spins; i++) {
+            if (slots.get(index) != WAITING) {
+                return take(index);
+            }
+            if (i % SPINS_BEFORE_YIELD == SPINS_BEFORE_YIELD - 1) Thread.yield();
+        }
+
+        if (slots.compareAndSet(index, WAITING, null)) return null;
+        // an offer filled the slot after the last check
+        return take(index);
+    }
+
+    /**
+     * Hands the specified element to a waiting poll, if there is one.
+     *
+     * @param e the element to hand over
+     * @return true if a waiting poll took the element
+     */
+    public boolean handOff(E e) {
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            if (slots.get(index) == WAITING && slots.compareAndSet(index, WAITING, e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of polls that waited in a slot
+     * @return the number of polls that waited in a slot
+     */
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    /**
+     * Returns the number of polls that received an element through a slot
+     * @return the number of polls that received an element through a slot
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Empties a slot filled by an offer.
+     *
+     * @param index index of the slot
+     * @return the element handed over
+     */
+    @SuppressWarnings("unchecked")
+    private E take(int index) {
+        E value = (E) slots.get(index);
+        slots.set(index, null);
+        hits.increment();
+        return value;
+    }
+
+    /**
+     * Replaces a deserialized instance with one of empty slots, as waiting polls are never serialized.
+     *
+     * @return an EliminationArray with the same number of slots and spins
+     */
+    private Object readResolve() {
+        return new EliminationArray<E>(length, spins);
+    }
+
+    @Override
+    public String toString() {
+        return "EliminationArray{" +
+                "attempts=" + getAttempts() +
+                ", hits=" + getHits() +
+                '}';
+    }
+}
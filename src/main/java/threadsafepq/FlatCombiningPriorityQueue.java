@@ -0,0 +1,520 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A flat-combining front end for a PipelinedPriorityQueue.
+ * Instead of every thread walking the levels of the heap itself, a thread publishes its offer or poll
+ * in a slot of its own and tries to become the combiner. The combiner applies every published request
+ * to the underlying queue in one pass and hands the results back through the slots, while the other
+ * threads spin on their slot. Under heavy contention this replaces most lock hand-offs between threads
+ * with uncontended work done by a single thread.
+ * <p>
+ * Operations other than offer and poll are forwarded to the underlying queue directly.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class FlatCombiningPriorityQueue<E> implements Serializable, BlockingQueue<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 53L;
+    /**
+     * Value of the request of a slot with nothing to do.
+     */
+    private static final int NONE = 0;
+    /**
+     * Value of the request of a slot waiting for its item to be offered.
+     */
+    private static final int OFFER = 1;
+    /**
+     * Value of the request of a slot waiting for the result of a poll.
+     */
+    private static final int POLL = 2;
+    /**
+     * Number of times a waiting thread checks its slot before yielding.
+     */
+    private static final int SPINS_BEFORE_YIELD = 64;
+    /**
+     * Number of combining passes after which a slot without requests is dropped from the publication list.
+     */
+    private static final int SLOT_EXPIRY_PASSES = 1024;
+    /**
+     * Represents the queue the requests are applied to.
+     */
+    private final PipelinedPriorityQueue<E> queue;
+    /**
+     * Represents the lock held by the combiner.
+     */
+    private final transient Lock combinerLock = new ReentrantLock();
+    /**
+     * Represents the slots scanned by the combiner, at most one per thread.
+     */
+    private final transient ConcurrentLinkedQueue<Slot<E>> publications = new ConcurrentLinkedQueue<>();
+    /**
+     * Represents the slot of each thread.
+     */
+    private final transient ThreadLocal<Slot<E>> slots = ThreadLocal.withInitial(Slot::new);
+    /**
+     * Represents the number of combining passes so far. Only written by the combiner.
+     */
+    private transient int passes;
+    /**
+     * Represents the consumers sleeping until the queue becomes non-empty.
+     */
+    private final transient NotEmptyWaiters notEmptyWaiters = new NotEmptyWaiters();
+
+    /**
+     * Creates a FlatCombiningPriorityQueue in front of a new PipelinedPriorityQueue with the default
+     * initial capacity that orders its elements according to their natural ordering.
+     */
+    public FlatCombiningPriorityQueue() {
+        this(new PipelinedPriorityQueue<>());
+    }
+
+    /**
+     * Creates a FlatCombiningPriorityQueue in front of the specified queue.
+     * The queue should not be used directly afterwards, as offers and polls made through this
+     * FlatCombiningPriorityQueue would not wake consumers blocked on the other.
+     *
+     * @param queue the queue the requests are applied to
+     * @throws NullPointerException if queue is null
+     */
+    public FlatCombiningPriorityQueue(PipelinedPriorityQueue<E> queue) {
+        if (queue == null) throw new NullPointerException("Queue cannot be null");
+        this.queue = queue;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * Unless the underlying queue is bounded, this method will never return false.
+     *
+     * @param e the element to add
+     * @return true if the element was added, false if the underlying queue is bounded and full
+     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException("Specified element is null");
+        combine(OFFER, e);
+        if (!slots.get().accepted) return false;
+        signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue.
+     * Unless the underlying queue is bounded, this method will never throw IllegalStateException.
+     *
+     * @param e the element to add
+     * @return true
+     * @throws IllegalStateException if the underlying queue is bounded and full
+     */
+    public boolean add(E e) {
+        if (!offer(e)) throw new IllegalStateException("Queue full");
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue, waiting up to the specified wait time if necessary
+     * for space to become available in a bounded underlying queue. The wait bypasses combining.
+     * If the current thread is interrupted while waiting, its interrupt status is set again and the element
+     * is not added.
+     *
+     * @param e       the element to add
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    a TimeUnit determining how to interpret the timeout parameter
+     * @return true if the element was added, false if the waiting time elapsed or the thread was interrupted
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        if (offer(e)) return true;
+        if (!queue.offer(e, timeout, unit)) return false;
+        signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue, waiting if necessary for space to become available
+     * in a bounded underlying queue. The wait bypasses combining and cannot be interrupted: if the current thread
+     * is interrupted while waiting, its interrupt status is still set when the element has been added.
+     *
+     * @param e the element to add
+     */
+    public void put(E e) {
+        if (offer(e)) return;
+        queue.put(e);
+        signalNotEmpty();
+    }
+
+    /**
+     * Wakes one of the consumers sleeping until this queue is non-empty, if there are any.
+     */
+    private void signalNotEmpty() {
+        notEmptyWaiters.signal(1);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns null if this queue is empty.
+     *
+     * @return the head of this queue, or null if this queue is empty
+     */
+    public E poll() {
+        return combine(POLL, null);
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, waiting if necessary until an element becomes available.
+     * A consumer that is woken but then interrupted passes its wakeup on to another waiting consumer.
+     *
+     * @return the head of this queue
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        E value;
+        while ((value = poll()) == null) {
+            notEmptyWaiters.await(queue::isEmpty, false, 0);
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, waiting up to the specified wait time if necessary for an element to become available.
+     * A consumer that is woken but then interrupted passes its wakeup on to another waiting consumer.
+     *
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    a TimeUnit determining how to interpret the timeout parameter
+     * @return the head of this queue, or null if the specified waiting time elapses before an element is available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E value;
+        while ((value = poll()) == null) {
+            if (nanos <= 0) return null;
+            nanos = notEmptyWaiters.await(queue::isEmpty, true, nanos);
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue.
+     * This method differs from poll only in that it throws an exception if this queue is empty.
+     *
+     * @return the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public E remove() {
+        E value = poll();
+        if (value == null) throw new NoSuchElementException("Queue is empty");
+        return value;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue, or returns null if this queue is empty.
+     *
+     * @return the head of this queue, or null if this queue is empty
+     */
+    public E peek() {
+        return queue.peek();
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue.
+     * This method differs from peek only in that it throws an exception if this queue is empty.
+     *
+     * @return the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public E element() {
+        return queue.element();
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue, if it is present.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return true if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return queue.remove(o);
+    }
+
+    /**
+     * Returns true if this queue contains no elements.
+     *
+     * @return true if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * Returns the number of elements in this queue.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can accept without blocking.
+     *
+     * @return the remaining capacity of the underlying queue
+     */
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    /**
+     * Removes all of the elements from this queue.
+     */
+    public void clear() {
+        queue.clear();
+    }
+
+    /**
+     * Removes all available elements from this queue and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @return the number of elements transferred
+     */
+    public int drainTo(Collection<? super E> c) {
+        return queue.drainTo(c);
+    }
+
+    /**
+     * Removes at most the given number of available elements from this queue and adds them to the given collection.
+     *
+     * @param c           the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @return the number of elements transferred
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        return queue.drainTo(c, maxElements);
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        return queue.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue.
+     * The runtime type of the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the queue are to be stored, if big enough
+     * @return an array containing all of the elements in this queue
+     */
+    public <T> T[] toArray(T[] a) {
+        return queue.toArray(a);
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    public Iterator<E> iterator() {
+        return queue.iterator();
+    }
+
+    /**
+     * Returns true if this queue contains the specified element.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return true if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        return queue.contains(o);
+    }
+
+    /**
+     * Returns true if this queue contains all of the elements in the specified collection.
+     *
+     * @param c collection to be checked for containment in this queue
+     * @return true if this queue contains all of the elements in the specified collection
+     */
+    public boolean containsAll(Collection<?> c) {
+        return queue.containsAll(c);
+    }
+
+    /**
+     * Inserts every element of the specified collection into this queue.
+     *
+     * @param c collection containing elements to be added to this queue
+     * @return true
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        for (E e : c) {
+            add(e);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of this queue's elements that are also contained in the specified collection.
+     *
+     * @param c collection containing elements to be removed from this queue
+     * @return true if this queue changed as a result of the call
+     */
+    public boolean removeAll(Collection<?> c) {
+        return queue.removeAll(c);
+    }
+
+    /**
+     * Retains only the elements in this queue that are contained in the specified collection.
+     *
+     * @param c collection containing elements to be retained in this queue
+     * @return true if this queue changed as a result of the call
+     */
+    public boolean retainAll(Collection<?> c) {
+        return queue.retainAll(c);
+    }
+
+    /**
+     * Publishes a request in the slot of the current thread and waits until it has been applied,
+     * either by another thread acting as combiner or by the current thread itself.
+     *
+     * @param request OFFER or POLL
+     * @param item    the element to offer, null for a poll
+     * @return the result of a poll, null for an offer
+     * @throws RuntimeException if the underlying queue threw it while applying the request
+     */
+    private E combine(int request, E item) {
+        Slot<E> slot = slots.get();
+        slot.item = item;
+        slot.request = request;
+        if (!slot.published) {
+            slot.published = true;
+            publications.add(slot);
+        }
+
+        int spins = 0;
+        while (slot.request != NONE) {
+            if (combinerLock.tryLock()) {
+                try {
+                    // a slot dropped from the list after being checked by this thread is only served here
+                    apply(slot);
+                    scan();
+                } finally {
+                    combinerLock.unlock();
+                }
+            } else if (++spins % SPINS_BEFORE_YIELD == 0) {
+                Thread.yield();
+            }
+        }
+
+        Throwable failure = slot.failure;
+        if (failure != null) {
+            slot.failure = null;
+            if (failure instanceof Error) throw (Error) failure;
+            throw (RuntimeException) failure;
+        }
+        E result = slot.result;
+        slot.result = null;
+        return result;
+    }
+
+    /**
+     * Applies every request in the publication list, dropping slots that have had no requests for a while.
+     * Must only be called by the combiner.
+     */
+    private void scan() {
+        passes++;
+        boolean expire = passes % SLOT_EXPIRY_PASSES == 0;
+        for (Slot<E> slot : publications) {
+            if (slot.request != NONE) {
+                apply(slot);
+            } else if (expire && passes - slot.lastServed >= SLOT_EXPIRY_PASSES) {
+                publications.remove(slot);
+                slot.published = false;
+            }
+        }
+    }
+
+    /**
+     * Applies the request of a slot to the underlying queue and hands back its result. An exception thrown by
+     * the underlying queue is handed back to the owner of the slot, to be thrown there, rather than failing the
+     * call of the combiner.
+     * Must only be called by the combiner.
+     *
+     * @param slot the slot holding the request
+     */
+    private void apply(Slot<E> slot) {
+        int request = slot.request;
+        if (request == NONE) return;
+        try {
+            if (request == OFFER) {
+                slot.accepted = queue.offer(slot.item);
+            } else {
+                slot.result = queue.poll();
+            }
+        } catch (RuntimeException | Error ex) {
+            slot.failure = ex;
+        }
+        slot.item = null;
+        slot.lastServed = passes;
+        slot.request = NONE;
+    }
+
+    /**
+     * Replaces a deserialized instance with a new FlatCombiningPriorityQueue in front of the deserialized
+     * queue, as slots and waiting threads are never serialized.
+     *
+     * @return a FlatCombiningPriorityQueue in front of the same queue
+     */
+    private Object readResolve() {
+        return new FlatCombiningPriorityQueue<>(queue);
+    }
+
+    /**
+     * The publication slot of a single thread.
+     *
+     * @param <E> the type of elements held in the queue
+     */
+    private static final class Slot<E> {
+
+        /**
+         * Represents the pending request: NONE, OFFER or POLL. Writing NONE hands the result back to the owner.
+         */
+        volatile int request;
+        /**
+         * Represents the element to offer.
+         */
+        E item;
+        /**
+         * Represents the result of a poll.
+         */
+        E result;
+        /**
+         * Represents whether the underlying queue accepted the element of the last offer.
+         */
+        boolean accepted;
+        /**
+         * Represents the exception thrown by the underlying queue while applying the last request, or null.
+         */
+        Throwable failure;
+        /**
+         * Represents whether this slot is in the publication list. Only set by the owner, only cleared by the combiner.
+         */
+        volatile boolean published;
+        /**
+         * Represents the combining pass in which the last request of this slot was applied.
+         */
+        int lastServed;
+    }
+}
@@ -0,0 +1,97 @@
+package threadsafepq;
+
+import java.io.Serializable;
+
+/**
+ * A handle to an element offered to a PipelinedPriorityQueue, through which the priority of the element can be
+ * changed or the element removed after it was inserted.
+ * <p>
+ * If the queue has a slot index, the handle holds the slot the element is recorded in, which follows the element
+ * from node to node, so an update or removal applies to the node of this element even if equal elements are
+ * queued. Only an element displaced by an insert of an equal element may swap its slot with that element, which
+ * leaves the queue holding the same elements either way. If the heap is rebuilt, as by trimToSize, addAll or
+ * retainAll, the slot no longer follows the element, and the handle finds an equal element through the index
+ * instead, keeping its slot from then on. Without a slot index, the element is found by scanning the heap.
+ * A handle should only be used by one thread at a time.
+ *
+ * @param <E> the type of the element
+ */
+public class Handle<E> implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 59L;
+    /**
+     * Represents the queue the element was offered to.
+     */
+    private final PipelinedPriorityQueue<E> queue;
+    /**
+     * Represents the element as it was last offered or updated through this handle.
+     */
+    private volatile E value;
+    /**
+     * Represents the slot the element is recorded in, or null if the queue has no slot index.
+     */
+    private volatile SlotIndex.Slot slot;
+
+    /**
+     * Constructs a Handle to an element of a queue
+     *
+     * @param queue the queue the element was offered to
+     * @param value the element
+     * @param slot  the slot the element is recorded in, or null if the queue has no slot index
+     */
+    Handle(PipelinedPriorityQueue<E> queue, E value, SlotIndex.Slot slot) {
+        this.queue = queue;
+        this.value = value;
+        this.slot = slot;
+    }
+
+    /**
+     * Returns the element as it was last offered or updated through this handle
+     * @return the element of this handle
+     */
+    public E getValue() {
+        return value;
+    }
+
+    /**
+     * Replaces the element of this handle in the queue with the specified element, which is ordered by its own
+     * priority from then on. The element moves down the heap if its priority decreased, and up the heap if it
+     * now outranks its parent.
+     *
+     * @param newValue the element replacing the current one
+     * @return true if the element was updated, false if it is no longer in the queue
+     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the queue
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean updatePriority(E newValue) {
+        if (newValue == null) throw new NullPointerException("Specified element is null");
+        if (slot == null) {
+            if (!queue.replace(value, newValue)) return false;
+        } else {
+            SlotIndex.Slot moved = queue.replace(slot, value, newValue);
+            if (moved == null) return false;
+            slot = moved;
+        }
+        value = newValue;
+        return true;
+    }
+
+    /**
+     * Removes the element of this handle from the queue
+     *
+     * @return true if the element was removed, false if it is no longer in the queue
+     */
+    public boolean remove() {
+        return slot == null ? queue.remove(value) : queue.remove(slot, value);
+    }
+
+    @Override
+    public String toString() {
+        return "Handle{" +
+                "value=" + value +
+                '}';
+    }
+}
@@ -0,0 +1,78 @@
+package threadsafepq;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * A single instance of IntTokenArrayElement represents a single level
+ * of the pipelined heap used in PipelinedIntPriorityQueue. It is the primitive
+ * counterpart of TokenArrayElement, so the value travelling between levels is never boxed.
+ */
+public class IntTokenArrayElement extends PrimitiveTokenArrayElement {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 47L;
+    /**
+     * Represents the primitive value currently being carried through this level.
+     */
+    private int value;
+
+    /**
+     * Constructs a single instance of IntTokenArrayElement
+     *
+     * @param value     value carried by this level
+     * @param position  position of a node in the binary tree
+     * @param tokenLock TokenLock used to control concurrent access with this instance
+     */
+    public IntTokenArrayElement(int value, int position, TokenArrayElement.TokenLock tokenLock) {
+        super(position, tokenLock);
+        this.value = value;
+    }
+
+    /**
+     * Returns the value associated with this IntTokenArrayElement
+     * @return the value associated with this IntTokenArrayElement
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Sets the value associated with this IntTokenArrayElement
+     * @param value the new value to be associated with this IntTokenArrayElement
+     */
+    public void setValue(int value) {
+        this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        IntTokenArrayElement that = (IntTokenArrayElement) o;
+        return new EqualsBuilder()
+                .append(getPosition(), that.getPosition())
+                .append(value, that.value)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(value)
+                .append(getPosition())
+                .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "IntTokenArrayElement{" +
+                "value=" + value +
+                ", position=" + getPosition() +
+                '}';
+    }
+}
@@ -0,0 +1,284 @@
+package threadsafepq;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A BinaryArray that is being grown by moving the nodes of a smaller source BinaryArray into a larger target
+ * one a chunk at a time, while the heap stays in use.
+ * <p>
+ * Both arrays use the same indices, so a node that has not been moved yet is read from the source, with its
+ * capacity raised by the number of new nodes in its subtree, and nodes past the end of the source read as
+ * inactive. A node is moved to the target before it is first written. Every level is moved in order by threads
+ * holding the lock of that level, which also own the per-level progress of the move.
+ * <p>
+ * Nodes of different levels may share a word of the moved bitset while being written by threads holding
+ * different level locks, so the bitset is updated with compare-and-set.
+ *
+ * @param <E> the type of values stored in the heap
+ */
+public class MigratingBinaryArray<E> implements BinaryArray<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 56L;
+    /**
+     * Number of bits in a single word of the moved bitset, as a shift.
+     */
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    /**
+     * Represents the BinaryArray the nodes are moved out of.
+     */
+    private final BinaryArray<E> source;
+    /**
+     * Represents the BinaryArray the nodes are moved into.
+     */
+    private final BinaryArray<E> target;
+    /**
+     * Represents the maximum number of children of each node.
+     */
+    private final int arity;
+    /**
+     * Represents the index of the first node of each level of the target, followed by its length.
+     */
+    private final int[] levelStarts;
+    /**
+     * Represents the index of the next node to move on each level.
+     */
+    private final AtomicIntegerArray cursors;
+    /**
+     * Represents the number of levels that still have nodes to move.
+     */
+    private final AtomicInteger pendingLevels;
+    /**
+     * Represents whether each node has been moved to the target, one bit per node.
+     */
+    private final AtomicLongArray movedBits;
+
+    /**
+     * Constructs a MigratingBinaryArray that moves the nodes of the source into the target
+     *
+     * @param source the BinaryArray holding the nodes of the heap
+     * @param target a BinaryArray returned by newEmpty of the source, at least as long as the source
+     * @param arity  maximum number of children of each node
+     * @throws IllegalArgumentException if the target is shorter than the source
+     */
+    public MigratingBinaryArray(BinaryArray<E> source, BinaryArray<E> target, int arity) {
+        if (target.length() < source.length())
+            throw new IllegalArgumentException("Target cannot be shorter than the source");
+        this.source = source;
+        this.target = target;
+        this.arity = arity;
+        int levels = BinaryTreeUtils.convertSizeToNumLevels(target.length(), arity);
+        this.levelStarts = new int[levels + 1];
+        for (int level = 0; level < levels; level++) {
+            levelStarts[level + 1] = Math.min(BinaryTreeUtils.convertNumLevelsToSize(level + 1, arity),
+                    target.length());
+        }
+        this.cursors = new AtomicIntegerArray(levelStarts);
+        this.pendingLevels = new AtomicInteger(levels);
+        this.movedBits = new AtomicLongArray(((target.length() - 1) >> ADDRESS_BITS_PER_WORD) + 1);
+    }
+
+    /**
+     * Returns the BinaryArray the nodes are moved into, which holds the whole heap once every level is moved
+     * @return the target BinaryArray
+     */
+    public BinaryArray<E> getTarget() {
+        return target;
+    }
+
+    /**
+     * Returns true if every node has been moved to the target
+     * @return true if the move is complete
+     */
+    public boolean isComplete() {
+        return pendingLevels.get() == 0;
+    }
+
+    /**
+     * Returns the number of levels of the target
+     * @return the number of levels of the target
+     */
+    public int levels() {
+        return levelStarts.length - 1;
+    }
+
+    /**
+     * Returns true if the given level still has nodes to move. This may be stale unless the caller holds
+     * the lock of that level.
+     * @param level zero-based level of the heap
+     * @return true if the level still has nodes to move
+     */
+    public boolean isPending(int level) {
+        return cursors.get(level) < levelStarts[level + 1];
+    }
+
+    /**
+     * Moves up to the given number of nodes of a level to the target. The caller must hold the lock of that level.
+     * @param level     zero-based level of the heap
+     * @param maxNodes maximum number of nodes to move
+     */
+    public void moveChunk(int level, int maxNodes) {
+        int cursor = cursors.get(level);
+        int levelEnd = levelStarts[level + 1];
+        if (cursor >= levelEnd) return;
+        int chunkEnd = (int) Math.min((long) cursor + maxNodes, levelEnd);
+        for (int i = cursor; i < chunkEnd; i++) {
+            if (!isMoved(i)) move(i);
+        }
+        cursors.set(level, chunkEnd);
+        if (chunkEnd == levelEnd) pendingLevels.decrementAndGet();
+    }
+
+    /**
+     * Moves every remaining node to the target. The caller must hold the lock of every level.
+     */
+    public void complete() {
+        for (int level = 0; level < levels(); level++) {
+            moveChunk(level, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Returns true if the node at the given index has been moved to the target
+     * @param i index of the node
+     * @return true if the node has been moved
+     */
+    private boolean isMoved(int i) {
+        return (movedBits.get(i >> ADDRESS_BITS_PER_WORD) & (1L << i)) != 0;
+    }
+
+    /**
+     * Copies the node at the given index to the target, raising its capacity by the number of new nodes in
+     * its subtree, and marks it as moved
+     * @param i index of the node
+     */
+    private void move(int i) {
+        if (i < source.length()) {
+            target.moveNode(i, source, getCapacity(i));
+        } else {
+            target.setActive(i, false);
+            target.setValue(i, null);
+            target.setCapacity(i, getCapacity(i));
+        }
+
+        int wordIndex = i >> ADDRESS_BITS_PER_WORD;
+        long word;
+        do {
+            word = movedBits.get(wordIndex);
+        } while (!movedBits.compareAndSet(wordIndex, word, word | (1L << i)));
+    }
+
+    /**
+     * Returns the BinaryArray the node at the given index should be written to, moving the node first if needed
+     * @param i index of the node
+     * @return the target BinaryArray
+     */
+    private BinaryArray<E> writable(int i) {
+        if (!isMoved(i)) move(i);
+        return target;
+    }
+
+    @Override
+    public int length() {
+        return target.length();
+    }
+
+    @Override
+    public boolean isActive(int i) {
+        if (isMoved(i)) return target.isActive(i);
+        return i < source.length() && source.isActive(i);
+    }
+
+    @Override
+    public void setActive(int i, boolean active) {
+        writable(i).setActive(i, active);
+    }
+
+    @Override
+    public E getValue(int i) {
+        if (isMoved(i)) return target.getValue(i);
+        return i < source.length() ? source.getValue(i) : null;
+    }
+
+    @Override
+    public void setValue(int i, E value) {
+        writable(i).setValue(i, value);
+    }
+
+    @Override
+    public int getCapacity(int i) {
+        if (isMoved(i)) return target.getCapacity(i);
+        int capacity = i < source.length() ? source.getCapacity(i) : 0;
+        return capacity + BinaryTreeUtils.countSubtree(i, target.length(), arity)
+                - BinaryTreeUtils.countSubtree(i, source.length(), arity);
+    }
+
+    @Override
+    public void setCapacity(int i, int capacity) {
+        writable(i).setCapacity(i, capacity);
+    }
+
+    @Override
+    public void incrementCapacity(int i) {
+        writable(i).incrementCapacity(i);
+    }
+
+    @Override
+    public void decrementCapacity(int i) {
+        writable(i).decrementCapacity(i);
+    }
+
+    /**
+     * Moves every remaining node to the target and clears it. The caller must hold the lock of every level.
+     */
+    @Override
+    public void clear() {
+        complete();
+        target.clear();
+    }
+
+    /**
+     * Moves every remaining node to the target and returns a copy of it. The caller must hold the lock of
+     * every level.
+     * @param newLength length of the new BinaryArray, at least the length of this BinaryArray
+     * @return a new BinaryArray holding the nodes of this BinaryArray
+     */
+    @Override
+    public BinaryArray<E> copyOf(int newLength) {
+        complete();
+        return target.copyOf(newLength);
+    }
+
+    @Override
+    public BinaryArray<E> newEmpty(int length) {
+        return target.newEmpty(length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MigratingBinaryArray<?> that = (MigratingBinaryArray<?>) o;
+        return new EqualsBuilder()
+                .append(source, that.source)
+                .append(target, that.target)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(source)
+                .append(target)
+                .toHashCode();
+    }
+}
@@ -0,0 +1,85 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The consumers of a blocking queue sleeping until the queue becomes non-empty. Producers only take the lock
+ * guarding the wait when a consumer is waiting: a consumer counts itself as waiting before it checks whether
+ * the queue is empty, and a producer makes its elements visible before it signals, so either the consumer sees
+ * the new elements or the producer sees the consumer.
+ */
+final class NotEmptyWaiters implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 63L;
+    /**
+     * Represents the Reentrantlock used to put consumers to sleep while the queue is empty
+     */
+    private final Lock notEmptyLock = new ReentrantLock();
+    /**
+     * Represents the Condition used to force a thread to sleep until the queue becomes non-empty.
+     */
+    private final Condition notEmptyCondition = notEmptyLock.newCondition();
+    /**
+     * Represents the number of consumers holding or waiting on notEmptyCondition, so that producers only take
+     * notEmptyLock when there is a consumer to wake.
+     */
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    /**
+     * Sleeps until the queue is non-empty or the wait time elapses. If the consumer is interrupted while elements
+     * are queued, it may have been the one woken for them, so it signals another waiting consumer before rethrowing.
+     *
+     * @param isEmpty returns true while the queue is empty
+     * @param timed   true if the wait is bounded by nanos
+     * @param nanos   the longest time to wait, in nanoseconds, if timed
+     * @return the time left to wait, in nanoseconds, if timed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    long await(BooleanSupplier isEmpty, boolean timed, long nanos) throws InterruptedException {
+        notEmptyLock.lockInterruptibly();
+        waitingConsumers.incrementAndGet();
+        try {
+            while (isEmpty.getAsBoolean() && (!timed || nanos > 0)) {
+                if (timed) {
+                    nanos = notEmptyCondition.awaitNanos(nanos);
+                } else {
+                    notEmptyCondition.await();
+                }
+            }
+            return nanos;
+        } catch (InterruptedException ex) {
+            if (!isEmpty.getAsBoolean()) notEmptyCondition.signal();
+            throw ex;
+        } finally {
+            waitingConsumers.decrementAndGet();
+            notEmptyLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes up to the given number of consumers sleeping until the queue is non-empty, if there are any.
+     * The elements must already be visible in the queue when this is called.
+     *
+     * @param n number of elements added to the queue
+     */
+    void signal(int n) {
+        if (waitingConsumers.get() == 0) return;
+        notEmptyLock.lock();
+        try {
+            int wakeups = Math.min(n, waitingConsumers.get());
+            for (int i = 0; i < wakeups; i++) {
+                notEmptyCondition.signal();
+            }
+        } finally {
+            notEmptyLock.unlock();
+        }
+    }
+}
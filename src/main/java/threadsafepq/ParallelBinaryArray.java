@@ -0,0 +1,176 @@
+package threadsafepq;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A BinaryArray that keeps the values, capacities and active flags of all nodes in parallel arrays
+ * (struct-of-arrays) instead of one BinaryArrayElement object per node. This removes an object header
+ * and a pointer dereference per node, and packs the active flags into a bitset.
+ * <p>
+ * Nodes of different levels may share a word of the bitset while being written by threads holding
+ * different level locks, so the bitset is updated with compare-and-set.
+ *
+ * @param <E> the type of values stored in the heap
+ */
+public class ParallelBinaryArray<E> implements BinaryArray<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 50L;
+    /**
+     * Number of bits in a single word of the active bitset, as a shift.
+     */
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    /**
+     * Represents the values of the nodes.
+     */
+    private final Object[] values;
+    /**
+     * Represents the number of inactive nodes sub-rooted at each node.
+     */
+    private final int[] capacities;
+    /**
+     * Represents the active flag of each node, one bit per node.
+     */
+    private final AtomicLongArray activeBits;
+
+    /**
+     * Constructs a ParallelBinaryArray of inactive nodes
+     *
+     * @param length number of nodes
+     */
+    public ParallelBinaryArray(int length) {
+        this(new Object[length], new int[length], new AtomicLongArray(wordCount(length)));
+    }
+
+    /**
+     * Constructs a ParallelBinaryArray backed by the given arrays
+     *
+     * @param values     values of the nodes
+     * @param capacities capacities of the nodes
+     * @param activeBits active flags of the nodes
+     */
+    private ParallelBinaryArray(Object[] values, int[] capacities, AtomicLongArray activeBits) {
+        this.values = values;
+        this.capacities = capacities;
+        this.activeBits = activeBits;
+    }
+
+    /**
+     * Returns the number of words needed to hold one bit per node
+     * @param length number of nodes
+     * @return the number of words in the bitset
+     */
+    private static int wordCount(int length) {
+        return ((length - 1) >> ADDRESS_BITS_PER_WORD) + 1;
+    }
+
+    @Override
+    public int length() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isActive(int i) {
+        return (activeBits.get(i >> ADDRESS_BITS_PER_WORD) & (1L << i)) != 0;
+    }
+
+    @Override
+    public void setActive(int i, boolean active) {
+        int wordIndex = i >> ADDRESS_BITS_PER_WORD;
+        long mask = 1L << i;
+        long word;
+        long updated;
+        do {
+            word = activeBits.get(wordIndex);
+            updated = active ? (word | mask) : (word & ~mask);
+            if (updated == word) return;
+        } while (!activeBits.compareAndSet(wordIndex, word, updated));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E getValue(int i) {
+        return (E) values[i];
+    }
+
+    @Override
+    public void setValue(int i, E value) {
+        values[i] = value;
+    }
+
+    @Override
+    public int getCapacity(int i) {
+        return capacities[i];
+    }
+
+    @Override
+    public void setCapacity(int i, int capacity) {
+        capacities[i] = capacity;
+    }
+
+    @Override
+    public void incrementCapacity(int i) {
+        capacities[i]++;
+    }
+
+    @Override
+    public void decrementCapacity(int i) {
+        capacities[i]--;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        for (int i = 0; i < activeBits.length(); i++) {
+            activeBits.set(i, 0L);
+        }
+    }
+
+    @Override
+    public BinaryArray<E> copyOf(int newLength) {
+        AtomicLongArray bits = new AtomicLongArray(wordCount(newLength));
+        for (int i = 0; i < activeBits.length(); i++) {
+            bits.set(i, activeBits.get(i));
+        }
+        return new ParallelBinaryArray<>(
+                Arrays.copyOf(values, newLength),
+                Arrays.copyOf(capacities, newLength),
+                bits);
+    }
+
+    @Override
+    public BinaryArray<E> newEmpty(int length) {
+        return new ParallelBinaryArray<>(length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        ParallelBinaryArray<?> that = (ParallelBinaryArray<?>) o;
+        if (activeBits.length() != that.activeBits.length()) return false;
+        for (int i = 0; i < activeBits.length(); i++) {
+            if (activeBits.get(i) != that.activeBits.get(i)) return false;
+        }
+        return new EqualsBuilder()
+                .append(values, that.values)
+                .append(capacities, that.capacities)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(values)
+                .append(capacities)
+                .toHashCode();
+    }
+}
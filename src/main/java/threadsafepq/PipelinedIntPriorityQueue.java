@@ -0,0 +1,175 @@
+package threadsafepq;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A pipelined priority queue specialised for primitive int keys. It uses the same token-array
+ * pipelining as PipelinedPriorityQueue, but the heap is stored in parallel primitive arrays and the
+ * value travelling down the pipeline is held in an IntTokenArrayElement, so offer(int), pollInt()
+ * and peekInt() never allocate or box. Keys are ordered by their natural (ascending) ordering,
+ * i.e. the smallest key is the head of the queue.
+ */
+public class PipelinedIntPriorityQueue extends PrimitivePipelinedPriorityQueue<IntTokenArrayElement> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 48L;
+    /**
+     * Represents the keys stored in the nodes of the heap. For each node at index i,
+     * its left child is stored at index 2i + 1, while its right child is stored at index 2i + 2.
+     */
+    private int[] values;
+
+    /**
+     * Creates a PipelinedIntPriorityQueue with the default initial capacity (11).
+     */
+    public PipelinedIntPriorityQueue() {
+        init(DEFAULT_CAPACITY_NUM_ELEMENTS);
+    }
+
+    /**
+     * Creates a PipelinedIntPriorityQueue with the specified initial capacity.
+     *
+     * @param initialCapacity the initial capacity for this priority queue
+     * @throws IllegalArgumentException if initialCapacity is less than 1
+     */
+    public PipelinedIntPriorityQueue(int initialCapacity) {
+        if (initialCapacity <= 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
+        init(initialCapacity);
+    }
+
+    /**
+     * Inserts the specified key into this priority queue.
+     * As the queue is unbounded, this method will never return false.
+     *
+     * @param e the key to add
+     * @return true
+     */
+    public boolean add(int e) {
+        return offer(e);
+    }
+
+    /**
+     * Inserts the specified key into this priority queue without boxing it.
+     * As the queue is unbounded, this method will never return false.
+     *
+     * @param e the key to add
+     * @return true
+     */
+    public boolean offer(int e) {
+        lockTop();
+        tokenArray[0].setValue(e);
+        enqueue();
+        return true;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue.
+     *
+     * @return the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int peekInt() {
+        tokenArray[0].lock();
+        try {
+            if (!active[0]) throw new NoSuchElementException("Queue is empty");
+            return values[0];
+        } finally {
+            tokenArray[0].unlock();
+        }
+    }
+
+    /**
+     * Retrieves and removes the head of this queue.
+     *
+     * @return the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public int pollInt() {
+        if (!lockHead()) throw new NoSuchElementException("Queue is empty");
+        int value = values[0];
+        dequeue();
+        return value;
+    }
+
+    /**
+     * Retrieves and removes the head of this queue, or returns the specified key if this queue is empty.
+     * Unlike pollInt(), this lets concurrent consumers drain the queue without relying on exceptions.
+     *
+     * @param valueIfEmpty the key to return if this queue is empty
+     * @return the head of this queue, or valueIfEmpty if this queue is empty
+     */
+    public int pollInt(int valueIfEmpty) {
+        if (!lockHead()) return valueIfEmpty;
+        int value = values[0];
+        dequeue();
+        return value;
+    }
+
+    /**
+     * Returns an array containing all of the keys in this queue, in no particular order.
+     *
+     * @return an array containing all of the keys in this queue
+     */
+    public int[] toArray() {
+        IntTokenArrayElement[] tokens = lockAllLevels();
+        int[] result = new int[size()];
+        int taken = 0;
+        for (int i = 0; i < active.length && taken < result.length; i++) {
+            if (active[i]) {
+                result[taken++] = values[i];
+            }
+        }
+        unlockAllLevels(tokens);
+        return result;
+    }
+
+    @Override
+    IntTokenArrayElement newToken() {
+        return new IntTokenArrayElement(0, 0, new TokenArrayElement.TokenLock(true));
+    }
+
+    @Override
+    IntTokenArrayElement[] newTokenArray(int length) {
+        return new IntTokenArrayElement[length];
+    }
+
+    @Override
+    void copyKeys(int capacity) {
+        values = values == null ? new int[capacity] : Arrays.copyOf(values, capacity);
+    }
+
+    @Override
+    void storeCarried(int level, int position) {
+        values[position] = tokenArray[level].getValue();
+    }
+
+    @Override
+    boolean carriedOutranks(int level, int position) {
+        return values[position] > tokenArray[level].getValue();
+    }
+
+    @Override
+    void swapCarried(int level, int position) {
+        int value = tokenArray[level].getValue();
+        tokenArray[level].setValue(values[position]);
+        values[position] = value;
+    }
+
+    @Override
+    void passCarried(int level) {
+        tokenArray[level + 1].setValue(tokenArray[level].getValue());
+    }
+
+    @Override
+    boolean outranks(int a, int b) {
+        return values[a] < values[b];
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        values[to] = values[from];
+    }
+}
@@ -0,0 +1,489 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A relaxed priority queue (MultiQueue) striped across a number of PipelinedPriorityQueue shards.
+ * Every insert goes to a random shard, and every poll samples a number of random shards and removes the
+ * head with the highest priority among them ("power of d choices"). Operations therefore spread over the
+ * roots of all shards instead of serializing on the root of a single heap, at the cost of ordering:
+ * a poll may return an element that is not the overall head of the queue.
+ * <p>
+ * The expected rank error of a poll, i.e. the number of queued elements with a higher priority than the
+ * element returned, grows with the number of shards and shrinks with the number of choices. Sampling
+ * every shard on each poll gives the smallest rank error this queue can offer.
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class PipelinedMultiQueue<E> implements Serializable, BlockingQueue<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 52L;
+    /**
+     * Default number of shards sampled by a poll.
+     */
+    private static final int DEFAULT_CHOICES = 2;
+    /**
+     * Represents the consumers sleeping until the queue becomes non-empty.
+     */
+    private final NotEmptyWaiters notEmptyWaiters = new NotEmptyWaiters();
+    /**
+     * Represents the shards of this queue.
+     */
+    private final PipelinedPriorityQueue<E>[] shards;
+    /**
+     * Represents the number of shards sampled by a poll.
+     */
+    private final int choices;
+    /**
+     * Represents the user-defined comparator passed in the construction of the queue.
+     * This is used to determine the relative priorities of the heads of the shards.
+     */
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Creates a PipelinedMultiQueue with the specified number of shards that orders its elements
+     * according to their natural ordering, sampling two shards per poll.
+     *
+     * @param numShards the number of shards
+     * @throws IllegalArgumentException if numShards is less than 1
+     */
+    public PipelinedMultiQueue(int numShards) {
+        this(numShards, Math.min(DEFAULT_CHOICES, Math.max(numShards, 1)), null);
+    }
+
+    /**
+     * Creates a PipelinedMultiQueue with the specified number of shards and choices that orders its
+     * elements according to the specified comparator.
+     *
+     * @param numShards  the number of shards
+     * @param choices    the number of shards sampled by a poll, between 1 and numShards
+     * @param comparator the comparator that will be used to order this priority queue. If null, the natural ordering of the elements will be used.
+     * @throws IllegalArgumentException if numShards is less than 1, or choices is not between 1 and numShards
+     */
+    public PipelinedMultiQueue(int numShards, int choices, Comparator<? super E> comparator) {
+        if (numShards <= 0) throw new IllegalArgumentException("Number of shards must be greater than 0");
+        if (choices <= 0 || choices > numShards)
+            throw new IllegalArgumentException("Choices must be between 1 and the number of shards");
+        @SuppressWarnings("unchecked")
+        PipelinedPriorityQueue<E>[] shards = (PipelinedPriorityQueue<E>[]) new PipelinedPriorityQueue<?>[numShards];
+        this.shards = shards;
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = PipelinedPriorityQueue.<E>builder().comparator(comparator).build();
+        }
+        this.choices = choices;
+        this.comparator = comparator;
+    }
+
+    /**
+     * Returns the number of shards of this queue
+     * @return the number of shards of this queue
+     */
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the number of shards sampled by a poll
+     * @return the number of shards sampled by a poll
+     */
+    public int getChoices() {
+        return choices;
+    }
+
+    /**
+     * Inserts the specified element into a random shard of this queue.
+     * As the queue is unbounded, this method will never return false.
+     *
+     * @param e the element to add
+     * @return true
+     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        shards[ThreadLocalRandom.current().nextInt(shards.length)].offer(e);
+        notEmptyWaiters.signal(1);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this queue.
+     * As the queue is unbounded, this method will never return false.
+     *
+     * @param e the element to add
+     * @return true
+     */
+    public boolean add(E e) {
+        return offer(e);
+    }
+
+    /**
+     * Inserts the specified element into this queue.
+     * As the queue is unbounded, this method will never block or return false.
+     *
+     * @param e       the element to add
+     * @param timeout This parameter is ignored as the method never blocks
+     * @param unit    This parameter is ignored as the method never blocks
+     * @return true
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    /**
+     * Inserts the specified element into this queue.
+     * As the queue is unbounded, this method will never block.
+     *
+     * @param e the element to add
+     */
+    public void put(E e) {
+        offer(e);
+    }
+
+    /**
+     * Retrieves and removes an element close to the head of this queue, or returns null if this queue is empty.
+     * The element is the highest-priority head among a random sample of shards; if every sampled shard is
+     * empty, the remaining shards are tried in turn.
+     *
+     * @return an element close to the head of this queue, or null if this queue is empty
+     */
+    public E poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PipelinedPriorityQueue<E> best = null;
+        E bestHead = null;
+        for (int i = 0; i < choices; i++) {
+            PipelinedPriorityQueue<E> shard = shards[random.nextInt(shards.length)];
+            E head = shard.peek();
+            if (head != null && (bestHead == null || hasPriorityOver(head, bestHead))) {
+                best = shard;
+                bestHead = head;
+            }
+        }
+
+        if (best != null) {
+            E value = best.poll();
+            if (value != null) return value;
+        }
+
+        int start = random.nextInt(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            E value = shards[(start + i) % shards.length].poll();
+            if (value != null) return value;
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves and removes an element close to the head of this queue, waiting if necessary until an element becomes available.
+     * A consumer that is woken but then interrupted passes its wakeup on to another waiting consumer.
+     *
+     * @return an element close to the head of this queue
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        E value;
+        while ((value = poll()) == null) {
+            notEmptyWaiters.await(this::isEmpty, false, 0);
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves and removes an element close to the head of this queue, waiting up to the specified wait time if necessary for an element to become available.
+     * A consumer that is woken but then interrupted passes its wakeup on to another waiting consumer.
+     *
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    a TimeUnit determining how to interpret the timeout parameter
+     * @return an element close to the head of this queue, or null if the specified waiting time elapses before an element is available
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        E value;
+        while ((value = poll()) == null) {
+            if (nanos <= 0) return null;
+            nanos = notEmptyWaiters.await(this::isEmpty, true, nanos);
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves, but does not remove, the highest-priority head among all shards, or returns null if this queue is empty.
+     *
+     * @return the head of this queue, or null if this queue is empty
+     */
+    public E peek() {
+        E bestHead = null;
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            E head = shard.peek();
+            if (head != null && (bestHead == null || hasPriorityOver(head, bestHead))) {
+                bestHead = head;
+            }
+        }
+        return bestHead;
+    }
+
+    /**
+     * Retrieves, but does not remove, the head of this queue.
+     * This method differs from peek only in that it throws an exception if this queue is empty.
+     *
+     * @return the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public E element() {
+        E head = peek();
+        if (head == null) throw new NoSuchElementException("Queue is empty");
+        return head;
+    }
+
+    /**
+     * Retrieves and removes an element close to the head of this queue.
+     * This method differs from poll only in that it throws an exception if this queue is empty.
+     *
+     * @return an element close to the head of this queue
+     * @throws NoSuchElementException if this queue is empty
+     */
+    public E remove() {
+        E value = poll();
+        if (value == null) throw new NoSuchElementException("Queue is empty");
+        return value;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this queue, if it is present.
+     * The shards are tried in turn, and the search stops at the first shard that removes the element.
+     *
+     * @param o element to be removed from this queue, if present
+     * @return true if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            if (shard.remove(o)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if this queue contains no elements.
+     *
+     * @return true if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            if (!shard.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of elements in this queue, summed over all shards.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        int size = 0;
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Always returns Integer.MAX_VALUE because a PipelinedMultiQueue is not capacity constrained.
+     *
+     * @return Integer.MAX_VALUE
+     */
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Removes all of the elements from this queue, one shard at a time.
+     */
+    public void clear() {
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            shard.clear();
+        }
+    }
+
+    /**
+     * Removes all available elements from this queue and adds them to the given collection.
+     *
+     * @param c the collection to transfer elements into
+     * @return the number of elements transferred
+     * @throws NullPointerException     if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this queue
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of available elements from this queue and adds them to the given collection.
+     *
+     * @param c           the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws NullPointerException     if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this queue
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            ++n;
+        }
+        return n;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in no particular order.
+     * Each shard is copied atomically, but the shards are not copied at the same instant.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        List<Object> result = new ArrayList<>();
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            result.addAll(Arrays.asList(shard.toArray()));
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in no particular order.
+     * The runtime type of the returned array is that of the specified array.
+     *
+     * @param a the array into which the elements of the queue are to be stored, if big enough
+     * @return an array containing all of the elements in this queue
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] elements = toArray();
+        if (a.length < elements.length) {
+            return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+        }
+        System.arraycopy(elements, 0, a, 0, elements.length);
+        if (a.length > elements.length) {
+            a[elements.length] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in this queue, in no particular order.
+     * The iterator does not remove elements from the queue.
+     *
+     * @return an iterator over the elements in this queue
+     */
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        return (Iterator<E>) Arrays.asList(toArray()).iterator();
+    }
+
+    /**
+     * Returns true if any shard of this queue contains the specified element.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return true if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            if (shard.contains(o)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if this queue contains all of the elements in the specified collection.
+     *
+     * @param c collection to be checked for containment in this queue
+     * @return true if this queue contains all of the elements in the specified collection
+     */
+    public boolean containsAll(Collection<?> c) {
+        for (Object o : c) {
+            if (!contains(o)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Inserts every element of the specified collection into this queue.
+     *
+     * @param c collection containing elements to be added to this queue
+     * @return true
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        for (E e : c) {
+            add(e);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all of this queue's elements that are also contained in the specified collection, one shard at a time.
+     *
+     * @param c collection containing elements to be removed from this queue
+     * @return true if this queue changed as a result of the call
+     * @throws ClassCastException if the types of one or more elements in this collection are incompatible with the specified collection
+     * @throws NullPointerException if this collection contains one or more null elements and the specified collection does not support null elements, or if the specified collection is null
+     */
+    public boolean removeAll(Collection<?> c) {
+        if (c == null) throw new NullPointerException("Specified collection is null");
+        if (c == this) {
+            boolean changed = !isEmpty();
+            clear();
+            return changed;
+        }
+        boolean changed = false;
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            changed |= shard.removeAll(c);
+        }
+        return changed;
+    }
+
+    /**
+     * Retains only the elements in this queue that are contained in the specified collection, one shard at a time.
+     *
+     * @param c collection containing elements to be retained in this queue
+     * @return true if this queue changed as a result of the call
+     * @throws ClassCastException if the types of one or more elements in this collection are incompatible with the specified collection
+     * @throws NullPointerException if this collection contains one or more null elements and the specified collection does not support null elements, or if the specified collection is null
+     */
+    public boolean retainAll(Collection<?> c) {
+        if (c == null) throw new NullPointerException("Specified collection is null");
+        if (c == this) return false;
+        boolean changed = false;
+        for (PipelinedPriorityQueue<E> shard : shards) {
+            changed |= shard.retainAll(c);
+        }
+        return changed;
+    }
+
+    /**
+     * Returns true if the first value should be dequeued before the second value.
+     * This implementation will use natural ordering if no comparator is provided.
+     * @param a the first value
+     * @param b the second value
+     * @return true if a has a strictly higher priority than b
+     */
+    @SuppressWarnings("unchecked")
+    private boolean hasPriorityOver(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b) < 0;
+        }
+        return ((Comparable<? super E>) a).compareTo(b) < 0;
+    }
+}
@@ -6,11 +6,13 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E> {
 
@@ -27,29 +29,96 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      */
     private static final int DEFAULT_CAPACITY_NUM_LEVELS = 4;
     /**
-     * Represents the Reentrantlock used to determine whether the queue is empty
+     * Default maximum number of children of each node in the heap of this queue.
      */
-    private final Lock notEmptyLock = new ReentrantLock();
+    private static final int DEFAULT_ARITY = 2;
     /**
-     * Represents the Condition used to force a thread to sleep until the queue becomes non-empty.
+     * Maximum number of nodes an iterator or spliterator copies while holding the lock of their level.
      */
-    private final Condition notEmptyCondition = notEmptyLock.newCondition();
+    private static final int TRAVERSAL_CHUNK = 256;
+    /**
+     * Number of times an operation through the slot index retries the nodes recorded for an element that hold
+     * another value, as the element has been displaced by an insert and not landed yet, before it falls back to
+     * looking the element up with every level locked.
+     */
+    private static final int STALE_RETRIES = 64;
+    /**
+     * Represents the consumers sleeping until the queue becomes non-empty.
+     */
+    private final NotEmptyWaiters notEmptyWaiters = new NotEmptyWaiters();
     /**
      * Represents the array of TokenArrayElements used to help with the pipelining of operations in this queue.
      * This array has a length equal to the number of levels in the binary tree used in the heap.
      */
     private TokenArrayElement<E>[] tokenArray;
     /**
-     * Represents the array of BinaryArrayElements used to store the nodes of the values
-     * inserted into this queue. For each node at index i in this array, its left child is stored
-     * at index 2i + 1, while its right child is stored at index 2i + 2.
+     * Represents the storage of the nodes of the values inserted into this queue.
+     * For each node at index i in this array, its children are stored at indices
+     * d*i + 1 to d*i + d, where d is the arity of the heap. With the default arity of 2, the left child
+     * is stored at index 2i + 1, while the right child is stored at index 2i + 2.
+     */
+    private BinaryArray<E> binaryArray;
+    /**
+     * Represents the layout used to create and grow binaryArray.
+     */
+    private StorageMode storageMode;
+    /**
+     * Represents the strategy used to create the Lock of every level in tokenArray.
      */
-    private BinaryArrayElement<E>[] binaryArray;
+    private TokenLockStrategy tokenLockStrategy;
     /**
      * Represents the user-defined comparator passed in the construction of the queue.
      * This is used to determine the relative priorities of different nodes.
      */
     private Comparator<? super E> comparator;
+    /**
+     * Represents the maximum number of children of each node in the heap.
+     */
+    private int arity;
+    /**
+     * Represents the number of nodes at the top of the heap that a relaxed poll picks from at random,
+     * or 0 if every poll removes the root.
+     */
+    private int sprayWidth;
+    /**
+     * Represents the slots through which an offer of a new head can be handed straight to a concurrent poll,
+     * or null if elimination is disabled.
+     */
+    private EliminationArray<E> eliminationArray;
+    /**
+     * Represents the index from each element to the nodes holding it, or null if elements are not indexed.
+     */
+    private SlotIndex<E> slotIndex;
+    /**
+     * Represents the number of times the capacities of every node have been recomputed. A removal that updates
+     * the capacities of the ancestors of a node after releasing it skips the update if this has changed, as the
+     * removal was then already counted. Only written while holding every level.
+     */
+    private int capacityEpoch;
+    /**
+     * Represents the number of nodes of a level that an offer or poll moves to the larger array during an
+     * incremental resize, or 0 if a resize copies the whole heap at once.
+     */
+    private int resizeChunk;
+    /**
+     * Represents the fraction of the capacity below which the size must fall for the heap to shrink
+     * automatically, or 0 if it never shrinks on its own.
+     */
+    private double shrinkLoadFactor;
+    /**
+     * Represents the capacity this queue was constructed with, below which it never shrinks on its own.
+     */
+    private int minCapacity;
+    /**
+     * Represents the number of polls of the head since the heap last grew or shrank. Only written while
+     * holding the first level.
+     */
+    private int pollsSinceResize;
+    /**
+     * Represents the free slots of a bounded queue, one permit per element that can still be added,
+     * or null if the queue is not bounded.
+     */
+    private Semaphore slots;
     /**
      * Represents the size of this priority queue i.e. number of active nodes in the binaryArray
      */
@@ -66,7 +135,7 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      * that orders its elements according to their natural ordering.
      */
     public PipelinedPriorityQueue() {
-        init(DEFAULT_CAPACITY_NUM_ELEMENTS, DEFAULT_CAPACITY_NUM_LEVELS, null);
+        init(DEFAULT_CAPACITY_NUM_ELEMENTS, DEFAULT_CAPACITY_NUM_LEVELS, null, StorageMode.ELEMENTS, TokenLockStrategy.FAIR, DEFAULT_ARITY);
     }
 
     /**
@@ -76,9 +145,9 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      */
     public PipelinedPriorityQueue(Collection<? extends E> c) {
         if (c == null) throw new IllegalArgumentException("Input collection cannot be null");
-        int capacity = c.size();
+        int capacity = Math.max(c.size(), 1);
         int levels = BinaryTreeUtils.convertSizeToNumLevels(capacity);
-        init(capacity, levels, null);
+        init(capacity, levels, null, StorageMode.ELEMENTS, TokenLockStrategy.FAIR, DEFAULT_ARITY);
         addAll(c);
     }
 
@@ -92,7 +161,7 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     public PipelinedPriorityQueue(int initialCapacity) {
         if (initialCapacity <= 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
         int levels = BinaryTreeUtils.convertSizeToNumLevels(initialCapacity);
-        init(initialCapacity, levels, null);
+        init(initialCapacity, levels, null, StorageMode.ELEMENTS, TokenLockStrategy.FAIR, DEFAULT_ARITY);
     }
 
     /**
@@ -106,7 +175,58 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     public PipelinedPriorityQueue(int initialCapacity, Comparator<? super E> comparator) {
         if (initialCapacity <= 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
         int levels = BinaryTreeUtils.convertSizeToNumLevels(initialCapacity);
-        init(initialCapacity, levels, comparator);
+        init(initialCapacity, levels, comparator, StorageMode.ELEMENTS, TokenLockStrategy.FAIR, DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates a PriorityBlockingQueue with the specified initial capacity that orders
+     * its elements according to the specified comparator, storing its heap using the specified storage mode.
+     *
+     * @param initialCapacity the initial capacity for this priority queue
+     * @param comparator      the comparator that will be used to order this priority queue. If null, the natural ordering of the elements will be used.
+     * @param storageMode     the layout of the nodes of the heap in memory
+     * @throws IllegalArgumentException if initialCapacity is less than 1
+     * @throws NullPointerException     if storageMode is null
+     */
+    public PipelinedPriorityQueue(int initialCapacity, Comparator<? super E> comparator, StorageMode storageMode) {
+        if (initialCapacity <= 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
+        if (storageMode == null) throw new NullPointerException("Storage mode cannot be null");
+        int levels = BinaryTreeUtils.convertSizeToNumLevels(initialCapacity);
+        init(initialCapacity, levels, comparator, storageMode, TokenLockStrategy.FAIR, DEFAULT_ARITY);
+    }
+
+    /**
+     * Creates a PriorityBlockingQueue configured by the specified builder.
+     *
+     * @param builder the builder holding the configuration of this priority queue
+     */
+    private PipelinedPriorityQueue(Builder<E> builder) {
+        int levels = BinaryTreeUtils.convertSizeToNumLevels(builder.initialCapacity, builder.arity);
+        init(builder.initialCapacity, levels, builder.comparator, builder.storageMode, builder.tokenLockStrategy,
+                builder.arity);
+        this.sprayWidth = builder.sprayWidth;
+        this.resizeChunk = builder.resizeChunk;
+        this.shrinkLoadFactor = builder.shrinkLoadFactor;
+        if (builder.bound > 0) {
+            this.slots = new Semaphore(builder.bound);
+        }
+        if (builder.eliminationSlots > 0) {
+            this.eliminationArray = new EliminationArray<>(builder.eliminationSlots, EliminationArray.DEFAULT_SPINS);
+        }
+        if (builder.slotIndex) {
+            this.slotIndex = new SlotIndex<>();
+        }
+    }
+
+    /**
+     * Returns a new Builder for a PipelinedPriorityQueue, starting from the same defaults as the
+     * no-argument constructor.
+     *
+     * @param <E> the type of elements held in the queue
+     * @return a new Builder
+     */
+    public static <E> Builder<E> builder() {
+        return new Builder<>();
     }
 
     /**
@@ -114,14 +234,22 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      *
      * @param capacity   capacity of this PipelinedPriorityQueue
      * @param levels     number of levels in the heap of this PipelinedPriorityQueue
-     * @param comparator comparator used to order this PipelinedPriorityQueue
+     * @param comparator  comparator used to order this PipelinedPriorityQueue
+     * @param storageMode layout of the nodes of the heap of this PipelinedPriorityQueue
+     * @param tokenLockStrategy strategy used to create the Lock of every level of this PipelinedPriorityQueue
+     * @param arity      maximum number of children of each node in the heap of this PipelinedPriorityQueue
      */
-    private void init(int capacity, int levels, Comparator<? super E> comparator) {
-        this.binaryArray = new BinaryArrayElement[capacity];
+    private void init(int capacity, int levels, Comparator<? super E> comparator,
+                      StorageMode storageMode, TokenLockStrategy tokenLockStrategy, int arity) {
+        this.storageMode = storageMode;
+        this.tokenLockStrategy = tokenLockStrategy;
+        this.arity = arity;
+        this.binaryArray = storageMode.create(capacity, comparator, arity);
         this.comparator = comparator;
         this.size = new AtomicInteger(0);
+        this.minCapacity = capacity;
         this.tokenArray = new TokenArrayElement[levels];
-        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(capacity);
+        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(capacity, arity);
         initInternalArrays();
     }
 
@@ -134,35 +262,12 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     }
 
     /**
-     * Initialises the BinaryArrayElement array.
+     * Marks every node of the binary array as inactive and recomputes the capacities.
      */
     private void initBinaryArray() {
-        initBinaryArrayElement(0);
-    }
-
-    /**
-     * Recursive post-order traversal to initialise elements in the binary array
-     * @param i index of element to be initialised
-     */
-    private void initBinaryArrayElement(int i) {
-        if (i >= binaryArray.length) return;
-        initBinaryArrayElement(getLeftIndex(i));
-        initBinaryArrayElement(getRightIndex(i));
-
-        int capacity = 1;
-
-        BinaryArrayElement<E> leftChild = getLeft(i);
-        if (leftChild != null) {
-            capacity += leftChild.getCapacity();
-        }
-
-        BinaryArrayElement<E> rightChild = getRight(i);
-        if (rightChild != null) {
-            capacity += rightChild.getCapacity();
-        }
-
-        BinaryArrayElement<E> element = new BinaryArrayElement<>(false, null, capacity, comparator);
-        binaryArray[i] = element;
+        binaryArray.clear();
+        if (slotIndex != null) slotIndex.clear();
+        recomputeCapacities();
     }
 
     /**
@@ -172,7 +277,7 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
         for (int i = 0; i < tokenArray.length; i++) {
             TokenArrayElement<E> element = new TokenArrayElement<E>(
                     null, 1, comparator,
-                    new TokenArrayElement.TokenLock(true));
+                    tokenLockStrategy.newLock());
             tokenArray[i] = element;
         }
     }
@@ -180,34 +285,95 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
 
     /**
      * Inserts the specified element into this priority queue.
-     * As the queue is unbounded, this method will never return false.
+     * Unless the queue is bounded, this method will never throw IllegalStateException.
      *
      * @param e the element to add
      * @return true
-     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
-     * @throws NullPointerException if the specified element is null
+     * @throws ClassCastException    if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
+     * @throws NullPointerException  if the specified element is null
+     * @throws IllegalStateException if the queue is bounded and full
      */
     public boolean add(E e) {
-        return offer(e);
+        if (!offer(e)) throw new IllegalStateException("Queue full");
+        return true;
     }
 
     /**
      * Inserts the specified element into this priority queue.
-     * As the queue is unbounded, this method will never return false.
+     * Unless the queue is bounded, this method will never return false.
      *
      * @param e the element to add
-     * @return true
+     * @return true if the element was added, false if the queue is bounded and full
      * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
      * @throws NullPointerException if the specified element is null
      */
     public boolean offer(E e) {
         if (e == null) throw new NullPointerException("Specified element is null");
+        requireComparable(e);
+        if (slots != null && !slots.tryAcquire()) return false;
+        insert(e);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element into this priority queue and returns a handle through which its priority can
+     * later be changed or the element removed. Unless the queue is bounded, this method will never return null.
+     * If the slot index is enabled, the element is recorded in a slot shared with the handle, which follows the
+     * element from node to node, so the handle addresses its own node even if equal elements are queued.
+     * Otherwise the handle finds the element by scanning the heap.
+     *
+     * @param e the element to add
+     * @return a handle to the element, or null if the queue is bounded and full
+     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
+     * @throws NullPointerException if the specified element is null
+     */
+    public Handle<E> offerWithHandle(E e) {
+        if (e == null) throw new NullPointerException("Specified element is null");
+        requireComparable(e);
+        if (slots != null && !slots.tryAcquire()) return null;
+        // the slot stays retired if the element is handed straight to a poll
+        SlotIndex.Slot slot = slotIndex == null ? null : new SlotIndex.Slot(SlotIndex.RETIRED);
+        insert(e, slot);
+        return new Handle<>(this, e, slot);
+    }
+
+    /**
+     * Inserts the specified element into the heap. If the queue is bounded, the caller must have acquired
+     * a slot for the element.
+     *
+     * @param e the element to add
+     */
+    private void insert(E e) {
+        insert(e, null);
+    }
+
+    /**
+     * Inserts the specified element into the heap, recording it in the given slot of the slot index once it is
+     * placed. If the queue is bounded, the caller must have acquired a slot for the element.
+     *
+     * @param e    the element to add
+     * @param slot the slot to record the element in, or null to record it in a new one
+     */
+    private void insert(E e, SlotIndex.Slot slot) {
         tokenArray[0].lock();
         if (tokenArray.length > 1) tokenArray[1].lock();
+        // an element that would become the new head can go straight to a waiting poll
+        if (eliminationArray != null
+                && (!binaryArray.isActive(0) || !hasPriorityOver(binaryArray.getValue(0), e))
+                && eliminationArray.handOff(e)) {
+            if (tokenArray.length > 1) tokenArray[1].unlock();
+            tokenArray[0].unlock();
+            // the element never occupied its slot
+            releaseSlots(1);
+            return;
+        }
+        helpResize();
         tokenArray[0].setValue(e);
         tokenArray[0].setPosition(0);
+        tokenArray[0].setOrigin(-1);
+        tokenArray[0].setSlot(slot);
 
-        if (binaryArray[0].getCapacity() < 1) {
+        if (binaryArray.getCapacity(0) < 1) {
             resize();
         }
 
@@ -224,33 +390,65 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
             level++;
             if (level + 1 < tokenArray.length) tokenArray[level + 1].lock();
         }
-
-        return true;
     }
 
     /**
-     * Inserts the specified element into this priority queue.
-     * As the queue is unbounded, this method will never block or return false.
+     * Inserts the specified element into this priority queue, waiting up to the specified wait time for
+     * space to become available if the queue is bounded and full. Unless the queue is bounded, this method
+     * will never block or return false.
+     * If the current thread is interrupted while waiting, its interrupt status is set again and the element
+     * is not added.
      *
      * @param e       the element to add
-     * @param timeout This parameter is ignored as the method never blocks
-     * @param unit    This parameter is ignored as the method never blocks
-     * @return true
+     * @param timeout how long to wait before giving up, in units of unit
+     * @param unit    a TimeUnit determining how to interpret the timeout parameter
+     * @return true if the element was added, false if the waiting time elapsed or the thread was interrupted
+     * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
+     * @throws NullPointerException if the specified element is null
      */
     public boolean offer(E e, long timeout, TimeUnit unit) {
-        return offer(e);
+        if (e == null) throw new NullPointerException("Specified element is null");
+        requireComparable(e);
+        if (slots != null) {
+            try {
+                if (!slots.tryAcquire(timeout, unit)) return false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        insert(e);
+        return true;
     }
 
     /**
-     * Inserts the specified element into this priority queue.
-     * As the queue is unbounded, this method will never block.
+     * Inserts the specified element into this priority queue, waiting for space to become available if the
+     * queue is bounded and full. Unless the queue is bounded, this method will never block.
+     * This method cannot be interrupted, so that it keeps the signature of the unbounded queue: if the current
+     * thread is interrupted while waiting, it keeps waiting, and its interrupt status is still set when the element
+     * has been added. Use the timed offer to give up on a full queue.
      *
      * @param e the element to add
      * @throws ClassCastException   if the specified element cannot be compared with elements currently in the priority queue according to the priority queue's ordering
      * @throws NullPointerException if the specified element is null
      */
     public void put(E e) {
-        offer(e);
+        if (e == null) throw new NullPointerException("Specified element is null");
+        requireComparable(e);
+        // an interrupt while waiting is not lost, acquireUninterruptibly sets the interrupt status again on return
+        if (slots != null) slots.acquireUninterruptibly();
+        insert(e);
+    }
+
+    /**
+     * Throws ClassCastException if an element cannot be ordered by this queue. This is checked before any level
+     * is locked, as a comparison failing inside the pipeline would leave its levels locked.
+     *
+     * @param e the element to check
+     * @throws ClassCastException if there is no comparator and the element is not Comparable
+     */
+    private void requireComparable(E e) {
+        if (comparator == null && !(e instanceof Comparable)) throw new ClassCastException(e.getClass().getName());
     }
 
     /**
@@ -260,7 +458,7 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      */
     public E peek() {
         tokenArray[0].lock();
-        E value = binaryArray[0].getValue();
+        E value = binaryArray.getValue(0);
         tokenArray[0].unlock();
         return value;
     }
@@ -285,26 +483,151 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
 
     /**
      * Retrieves and removes the head of this queue, or returns null if this queue is empty.
+     * If relaxed polling is enabled, this may instead remove an element close to the head of this queue.
+     * If elimination is enabled and the head is contended, this first waits briefly for a concurrent offer
+     * of a new head to hand its element over.
      *
      * @return the head of this queue, or null if this queue is empty
      */
     public E poll() {
-        tokenArray[0].lock();
+        if (sprayWidth > 1) {
+            E value = relaxedPoll();
+            if (value != null) {
+                if (shouldShrink()) {
+                    compact(true);
+                }
+                return value;
+            }
+        }
+
+        if (eliminationArray == null) {
+            tokenArray[0].lock();
+        } else if (!tokenArray[0].tryLock()) {
+            E value = eliminationArray.awaitElement();
+            if (value != null) return value;
+            tokenArray[0].lock();
+        }
         if (tokenArray.length > 1) tokenArray[1].lock();
-        E value = binaryArray[0].getValue();
-        binaryArray[0].setActive(false);
-        binaryArray[0].incrementCapacity();
-        tokenArray[0].setPosition(0);
+        helpResize();
+        if (!binaryArray.isActive(0)) {
+            if (tokenArray.length > 1) tokenArray[1].unlock();
+            tokenArray[0].unlock();
+            return null;
+        }
+        pollsSinceResize++;
+        E value = removeAt(0, 0);
+        if (shouldShrink()) {
+            compact(true);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the number of polls that waited for an offer to hand over its element
+     * @return the number of polls that waited for an offer, 0 if elimination is disabled
+     */
+    public long getEliminationAttempts() {
+        return eliminationArray == null ? 0 : eliminationArray.getAttempts();
+    }
+
+    /**
+     * Returns the number of polls that received their element straight from an offer
+     * @return the number of polls that received their element straight from an offer, 0 if elimination is disabled
+     */
+    public long getEliminationHits() {
+        return eliminationArray == null ? 0 : eliminationArray.getHits();
+    }
+
+    /**
+     * Removes a random active node among the first sprayWidth nodes of the heap, locking only its level
+     * and the level below it. The node is the better of two random nodes of that level, which keeps the
+     * rank of the removed element lower than a single random pick. The freed node is then added to the
+     * capacities of its ancestors from the root down, as for any removal below the root.
+     *
+     * @return the removed value, or null if both chosen nodes were inactive
+     */
+    private E relaxedPoll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(sprayWidth);
+        int level = BinaryTreeUtils.findLevel(index, arity) - 1;
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (level >= tokens.length) return null;
+        int levelStart = BinaryTreeUtils.convertNumLevelsToSize(level, arity);
+        int levelEnd = Math.min(BinaryTreeUtils.convertNumLevelsToSize(level + 1, arity), sprayWidth);
+        int other = levelStart + random.nextInt(levelEnd - levelStart);
+
+        TokenArrayElement<E> token = tokens[level];
+        token.lock();
+        // no resize can replace tokenArray while one of its existing levels is held, but a compaction may
+        // have dropped this level before it was locked
+        tokens = tokenArray;
+        if (level >= tokens.length || tokens[level] != token) {
+            token.unlock();
+            return null;
+        }
+        if (level + 1 < tokens.length) tokens[level + 1].lock();
+        if (!hasNode(index) || !binaryArray.isActive(index)) {
+            index = other;
+        } else if (hasNode(other) && binaryArray.isActive(other)
+                && hasPriorityOver(binaryArray.getValue(other), binaryArray.getValue(index))) {
+            index = other;
+        }
+        if (!hasNode(index) || !binaryArray.isActive(index)) {
+            if (level + 1 < tokens.length) tokens[level + 1].unlock();
+            tokens[level].unlock();
+            return null;
+        }
+        int epoch = capacityEpoch;
+        if (level == 0) pollsSinceResize++;
+        E value = removeAt(index, level);
+        if (level > 0) incrementAncestorCapacities(index, level, epoch, true);
+        return value;
+    }
+
+    /**
+     * Removes the value of an active node and sifts the hole down the heap. The caller must hold the
+     * level of the node and the level below it, both of which are released by this method.
+     *
+     * @param index index of the node in the binary array
+     * @param level level of the node in the token array
+     * @return the removed value
+     */
+    private E removeAt(int index, int level) {
+        return removeAt(index, level, 0, null);
+    }
+
+    /**
+     * Removes the value of an active node and sifts the hole down the heap, collecting the values moved from a
+     * node at or after a cursor to a node before it. The caller must hold the level of the node and the level
+     * below it, both of which are released by this method.
+     *
+     * @param index  index of the node in the binary array
+     * @param level  level of the node in the token array
+     * @param cursor index of the first node an iteration has not read yet
+     * @param moved  the collection the values moved behind the cursor are added to, or null
+     * @return the removed value
+     */
+    private E removeAt(int index, int level, int cursor, Collection<E> moved) {
+        E value = binaryArray.getValue(index);
+        if (slotIndex != null) slotIndex.remove(value, index);
+        binaryArray.setActive(index, false);
+        binaryArray.setValue(index, null);
+        binaryArray.incrementCapacity(index);
+        tokenArray[level].setPosition(index);
 
-        int level = 0;
         while (level < tokenArray.length) {
             boolean result = localDequeue(level);
             if (result) {
                 decrementSize();
-                tokenArray[level].unlock();
+                // release the lower level first, a resize may extend tokenArray once this level is free
                 if (level + 1 < tokenArray.length) tokenArray[level + 1].unlock();
+                tokenArray[level].unlock();
                 break;
             }
+            if (moved != null && tokenArray[level + 1].getPosition() >= cursor
+                    && tokenArray[level].getPosition() < cursor) {
+                moved.add(binaryArray.getValue(tokenArray[level].getPosition()));
+            }
             tokenArray[level].unlock();
             level++;
             if (level + 1 < tokenArray.length) tokenArray[level + 1].lock();
@@ -314,33 +637,38 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
 
     /**
      * Retrieves and removes the head of this queue, waiting if necessary until an element becomes available.
+     * The lock guarding the wait is released before polling, so consumers that were woken dequeue through the
+     * pipelined levels concurrently, and a consumer that finds the head taken by another goes back to waiting.
      *
      * @return the head of this queue
      * @throws InterruptedException if interrupted while waiting
      */
     public E take() throws InterruptedException {
-        notEmptyLock.lock();
-        while (size.get() == 0) {
-            notEmptyCondition.await();
+        E value;
+        while ((value = poll()) == null) {
+            notEmptyWaiters.await(this::isEmpty, false, 0);
         }
-
-        E head = poll();
-        assert head != null;
-        notEmptyLock.unlock();
-        return head;
+        return value;
     }
 
     /**
-     * Throws an UnsupportedOperationException as this method is not supported
-     * by this implementation of BlockingQueue.
+     * Retrieves and removes the head of this queue, waiting up to the specified wait time if necessary for an element
+     * to become available. Each inserted element wakes at most one waiting consumer, and a consumer that is woken but
+     * then interrupted passes its wakeup on to another waiting consumer.
      *
      * @param timeout how long to wait before giving up, in units of unit
      * @param unit    a TimeUnit determining how to interpret the timeout parameter
      * @return the head of this queue, or null if the specified waiting time elapses before an element is available
-     * @throws UnsupportedOperationException every time because this class does not support this operation
+     * @throws InterruptedException if interrupted while waiting
      */
     public E poll(long timeout, TimeUnit unit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        long nanos = unit.toNanos(timeout);
+        E value;
+        while ((value = poll()) == null) {
+            if (nanos <= 0) return null;
+            nanos = notEmptyWaiters.await(this::isEmpty, true, nanos);
+        }
+        return value;
     }
 
     /**
@@ -362,161 +690,908 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     }
 
     /**
-     * Throws an UnsupportedOperationException as this method is not supported
-     * by this implementation of BlockingQueue.
+     * Removes a single instance of the specified element from this queue, if it is present.
+     * <p>
+     * If elements are indexed, the nodes holding the element are looked up in the slot index, and only the level
+     * of the node and the level below it are locked to remove it, like a poll of the root. The hole is sifted down
+     * through the pipeline and the capacities of the ancestors of the node are then updated top-down, so the
+     * removal takes logarithmic time and runs concurrently with offers and polls. An element still moving down
+     * the heap from an insert is retried a bounded number of times, after which every level is locked, so that
+     * every insert in progress has landed, and the element is looked up again. Without the slot index, every
+     * level is locked and the heap is scanned.
      *
      * @param o element to be removed from this queue, if present
-     * @return if this queue changed as a result of the call
-     * @throws UnsupportedOperationException every time because this class does not support this operation
+     * @return true if this queue changed as a result of the call
      */
     public boolean remove(Object o) {
-        throw new UnsupportedOperationException();
+        if (o == null) return false;
+        if (slotIndex == null) return removeByScan(o);
+        for (int attempt = 0; attempt < STALE_RETRIES; attempt++) {
+            int[] candidates = slotIndex.slotsOf(o);
+            if (candidates == null) return false;
+            for (int index : candidates) {
+                if (removeIndexed(index, null, o, 0, null)) return true;
+            }
+            // every node recorded for the element holds another value, so it has not landed yet
+            Thread.yield();
+        }
+        return removeByScan(o);
     }
 
     /**
-     * Returns true if this collection contains no elements.
+     * Removes the value of a node found in the slot index or by an iterator if it is still equal to the specified
+     * element, and still recorded in the given slot if there is one. The node is checked once its level and the
+     * level below it are held.
      *
-     * @return true if this collection contains no elements
+     * @param index  index of the node in the binary array
+     * @param slot   the slot the node must be recorded in, or null
+     * @param o      element to be removed
+     * @param cursor index of the first node an iteration has not read yet
+     * @param moved  the collection the values moved behind the cursor are added to, or null
+     * @return true if the element was removed
      */
-    public boolean isEmpty() {
-        return (size.get() == 0);
+    private boolean removeIndexed(int index, SlotIndex.Slot slot, Object o, int cursor, Collection<E> moved) {
+        int level = BinaryTreeUtils.findLevel(index, arity) - 1;
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (level >= tokens.length) return false;
+        TokenArrayElement<E> token = tokens[level];
+        token.lock();
+        // a compaction may have dropped this level before it was locked
+        tokens = tokenArray;
+        if (level >= tokens.length || tokens[level] != token) {
+            token.unlock();
+            return false;
+        }
+        if (level + 1 < tokens.length) tokens[level + 1].lock();
+        if (!hasNode(index) || !binaryArray.isActive(index) || !o.equals(binaryArray.getValue(index))
+                || (slot != null && slot.getIndex() != index)) {
+            if (level + 1 < tokens.length) tokens[level + 1].unlock();
+            tokens[level].unlock();
+            return false;
+        }
+        int epoch = capacityEpoch;
+        removeAt(index, level, cursor, moved);
+        if (level > 0) incrementAncestorCapacities(index, level, epoch, false);
+        return true;
     }
 
     /**
-     * Returns the number of elements in this collection.
+     * Adds the node freed by the removal of a value below the root to the capacities of the ancestors of the
+     * node where the value was, locking their levels hand-over-hand from the root down. Nothing is updated if
+     * the capacities were recomputed since the removal, as they already count the freed node. Until then the
+     * capacities of the ancestors are too low, which is safe, as an insert never descends into a subtree with
+     * fewer free nodes than its capacity.
      *
-     * @return the number of elements in this collection
+     * @param index index of the node the value was removed from
+     * @param level level of the node in the token array
+     * @param epoch the capacity epoch when the value was removed
+     * @param poll  true if the value was removed by a relaxed poll, which counts towards shrinking the heap
      */
-    public int size() {
-        return size.get();
+    private void incrementAncestorCapacities(int index, int level, int epoch, boolean poll) {
+        int[] ancestors = new int[level];
+        for (int l = level - 1, node = index; l >= 0; l--) {
+            node = (node - 1) / arity;
+            ancestors[l] = node;
+        }
+        // a resize holds the root, so the token array can only be read once the root is held
+        tokenArray[0].lock();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (poll) pollsSinceResize++;
+        if (capacityEpoch != epoch) {
+            tokens[0].unlock();
+            return;
+        }
+        binaryArray.incrementCapacity(ancestors[0]);
+        for (int l = 1; l < level; l++) {
+            tokens[l].lock();
+            tokens[l - 1].unlock();
+            binaryArray.incrementCapacity(ancestors[l]);
+        }
+        tokens[level - 1].unlock();
     }
 
     /**
-     * Always returns Integer.MAX_VALUE because a PriorityBlockingQueue is not capacity constrained.
+     * Removes the element recorded in a slot of the slot index from this queue. The node recorded in the slot
+     * is checked once its level is held; if the element was displaced by an insert and has not landed yet, the
+     * removal is tried again. If the heap has been rebuilt since the element was placed, the slot no longer
+     * follows it, and a single instance of the element is removed as remove(Object) does.
      *
-     * @return Integer.MAX_VALUE
+     * @param slot  the slot the element was recorded in
+     * @param value the element
+     * @return true if the element was removed, false if it is no longer in this queue
      */
-    public int remainingCapacity() {
-        return Integer.MAX_VALUE;
+    boolean remove(SlotIndex.Slot slot, E value) {
+        for (int attempt = 0; attempt < STALE_RETRIES; attempt++) {
+            int index = slot.getIndex();
+            if (index == SlotIndex.RETIRED) return false;
+            if (index == SlotIndex.DROPPED) break;
+            if (removeIndexed(index, slot, value, 0, null)) return true;
+            Thread.yield();
+        }
+        return remove(value);
     }
 
     /**
-     * Removes all of the elements from this queue.
-     * The queue will be empty after this method returns.
+     * Replaces a single instance of an element with another element, moving the new element to the place its
+     * priority gives it in the heap.
+     * <p>
+     * If elements are indexed, the nodes holding the element are looked up in the slot index, and the level of
+     * the node is locked along with the levels above and below it. The active nodes do not change, so no
+     * capacity is updated. If the new element does not outrank the parent of the node, it takes the place of the
+     * old one and is sifted down through the pipeline, locking the levels below hand-over-hand as a removal does.
+     * Otherwise it is sifted up in place: as levels are only ever locked from the root down, the path to the node
+     * is walked from the root hand-over-hand to the first ancestor the new element outranks, whose level is held
+     * down to the level of the node while the ancestors below it move down one node. No node is freed, so a
+     * bounded queue never gives up the slot of the element. An element still moving down the heap from an insert
+     * is retried a bounded number of times, after which it is looked up again and replaced with every level
+     * locked. Without the slot index, the heap is scanned and the new element sifted up or down with every level
+     * locked.
+     *
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return true if the element was replaced, false if it is not in this queue
      */
-    public void clear() {
-        lockAllLevels();
-        initBinaryArray();
-        size.set(0);
-        unlockAllLevels();
+    boolean replace(E oldValue, E newValue) {
+        if (slotIndex == null) return replaceByScan(oldValue, newValue);
+        return replaceEqual(oldValue, newValue) != null;
     }
 
     /**
-     * Removes all available elements from this queue and adds them to the given collection.
-     * This operation may be more efficient than repeatedly polling this queue.
-     * A failure encountered while attempting to add elements to collection c may result in elements being
-     * in neither, either or both collections when the associated exception is thrown.
-     * Attempts to drain a queue to itself result in IllegalArgumentException. Further,
-     * the behavior of this operation is undefined if the specified collection is modified
-     * while the operation is in progress.
+     * Replaces the element recorded in a slot of the slot index with another element, as replace(Object, Object)
+     * does, but in the node recorded in the slot rather than in any node holding an equal element. The slot
+     * moves to the new element. If the heap has been rebuilt since the element was placed, the slot no longer
+     * follows it, and a single instance of the element is replaced instead.
      *
-     * @param c the collection to transfer elements into
-     * @return the number of elements transferred
-     * @throws ClassCastException            if the class of an element of this queue prevents it from being added to the specified collection
-     * @throws NullPointerException          if the specified collection is null
-     * @throws IllegalArgumentException      if the specified collection is this queue, or some property of an element of this queue prevents it from being added to the specified collection
+     * @param slot     the slot the element was recorded in
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return the slot the new element is recorded in, or null if the element is no longer in this queue
      */
-    public int drainTo(Collection<? super E> c) {
-        if (c == null)
-            throw new NullPointerException();
-        if (c == this)
-            throw new IllegalArgumentException();
-        return drainTo(c, c.size());
+    SlotIndex.Slot replace(SlotIndex.Slot slot, E oldValue, E newValue) {
+        for (int attempt = 0; attempt < STALE_RETRIES; attempt++) {
+            int index = slot.getIndex();
+            if (index == SlotIndex.RETIRED) return null;
+            if (index == SlotIndex.DROPPED) break;
+            SlotIndex.Slot moved = replaceIndexed(index, slot, oldValue, newValue);
+            if (moved != null) return moved;
+            // the element was displaced by an insert and has not landed yet
+            Thread.yield();
+        }
+        return replaceEqual(oldValue, newValue);
     }
 
     /**
-     * Removes all available elements from this queue and adds them to the given collection.
-     * This operation may be more efficient than repeatedly polling this queue.
-     * A failure encountered while attempting to add elements to collection c may result in elements being
-     * in neither, either or both collections when the associated exception is thrown.
-     * Attempts to drain a queue to itself result in IllegalArgumentException. Further,
-     * the behavior of this operation is undefined if the specified collection is modified
-     * while the operation is in progress.
+     * Replaces a single instance of an element found through the slot index with another element
      *
-     * @param c           the collection to transfer elements into
-     * @param maxElements the maximum number of elements to transfer
-     * @return the number of elements transferred
-     * @throws ClassCastException            if the class of an element of this queue prevents it from being added to the specified collection
-     * @throws NullPointerException          if the specified collection is null
-     * @throws IllegalArgumentException      if the specified collection is this queue, or some property of an element of this queue prevents it from being added to the specified collection
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return the slot the new element is recorded in, or null if the element is not in this queue
      */
-    public int drainTo(Collection<? super E> c, int maxElements) {
-        if (c == null)
-            throw new NullPointerException();
-        if (c == this)
-            throw new IllegalArgumentException();
-        if (maxElements <= 0)
-            return 0;
-        int n = 0;
+    private SlotIndex.Slot replaceEqual(E oldValue, E newValue) {
+        for (int attempt = 0; attempt < STALE_RETRIES; attempt++) {
+            int[] candidates = slotIndex.slotsOf(oldValue);
+            if (candidates == null) return null;
+            for (int index : candidates) {
+                SlotIndex.Slot moved = replaceIndexed(index, null, oldValue, newValue);
+                if (moved != null) return moved;
+            }
+            // every node recorded for the element holds another value, so it has not landed yet
+            Thread.yield();
+        }
         lockAllLevels();
-        E e;
-        while (n < maxElements && (e = poll()) != null) {
-            c.add(e);
-            ++n;
+        try {
+            int index = findLocked(oldValue);
+            return index < 0 ? null : replaceLocked(index, oldValue, newValue);
+        } finally {
+            unlockAllLevels();
         }
-        unlockAllLevels();
-        return n;
     }
 
     /**
-     * Returns an array containing all of the elements in this collection.
-     * The returned array will be "safe" in that no references to it are maintained by this collection.
-     * (In other words, this method must allocate a new array even if this collection is backed by an array).
-     * The caller is thus free to modify the returned array.
+     * Replaces the value of a node found in the slot index if it is still equal to the specified element, and
+     * still recorded in the given slot if there is one. The node is checked once the level above it, its level
+     * and the level below it are held. The slot of the node moves to the new element.
      *
-     * @return an array containing all of the elements in this collection
+     * @param index    index of the node in the binary array
+     * @param slot     the slot the node must be recorded in, or null
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return the slot the new element is recorded in, or null if the node no longer holds the element
      */
-    public Object[] toArray() {
-        lockAllLevels();
-        Object[] result = new Object[size.get()];
-        int taken = 0;
-        int runner = 0;
-        while (taken < size.get() && runner < binaryArray.length) {
-            if (binaryArray[runner].getValue() != null) {
-                result[taken] = binaryArray[runner].getValue();
-                taken++;
+    private SlotIndex.Slot replaceIndexed(int index, SlotIndex.Slot slot, E oldValue, E newValue) {
+        int level = BinaryTreeUtils.findLevel(index, arity) - 1;
+        int top = Math.max(level - 1, 0);
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (level >= tokens.length) return null;
+        TokenArrayElement<E> token = tokens[top];
+        token.lock();
+        // a compaction may have dropped these levels before they were locked
+        tokens = tokenArray;
+        if (level >= tokens.length || tokens[top] != token) {
+            token.unlock();
+            return null;
+        }
+        int bottom = Math.min(level + 1, tokens.length - 1);
+        for (int l = top + 1; l <= bottom; l++) {
+            tokens[l].lock();
+        }
+        if (!hasNode(index) || !binaryArray.isActive(index) || !oldValue.equals(binaryArray.getValue(index))
+                || (slot != null && slot.getIndex() != index)) {
+            for (int l = bottom; l >= top; l--) {
+                tokens[l].unlock();
             }
-            runner++;
+            return null;
         }
 
-        if (taken != size.get()) {
-            throw new IllegalStateException("toArray() unsuccessful");
+        boolean raised;
+        boolean outranksParent;
+        try {
+            raised = hasPriorityOver(newValue, binaryArray.getValue(index));
+            outranksParent = raised && level > 0
+                    && hasPriorityOver(newValue, binaryArray.getValue((index - 1) / arity));
+        } catch (RuntimeException ex) {
+            for (int l = bottom; l >= top; l--) {
+                tokens[l].unlock();
+            }
+            throw ex;
         }
-        unlockAllLevels();
-        return result;
+
+        if (outranksParent) {
+            for (int l = bottom; l >= top; l--) {
+                tokens[l].unlock();
+            }
+            return siftUpIndexed(index, level, slot, oldValue, newValue);
+        }
+
+        SlotIndex.Slot moved = slotIndex.detach(binaryArray.getValue(index), index);
+        binaryArray.setValue(index, newValue);
+        moved = slotIndex.add(newValue, index, moved);
+        if (level > 0) tokens[top].unlock();
+        if (raised) {
+            // the children of the node already rank below the element it replaced
+            if (level + 1 < tokens.length) tokens[level + 1].unlock();
+            tokens[level].unlock();
+        } else {
+            siftDown(index, level);
+        }
+        return moved;
     }
 
     /**
-     * Returns an array containing all of the elements in this queue.
-     * The runtime type of the returned array is that of the specified array.
-     * If the queue fits in the specified array, it is returned therein.
+     * Replaces the value of a node with an element that outranked its parent, moving the element up the path
+     * from the root to the node. The path is walked from the root, locking its levels hand-over-hand, until an
+     * ancestor the element outranks is found. That level and every level down to the node are then held, the
+     * node is checked again, and the ancestors from there down move one node towards it. Operations that
+     * entered the pipeline behind the walk meet the element on their way down, as they would a value placed by
+     * an insert. The slot of the node moves with the new element.
+     *
+     * @param index    index of the node in the binary array
+     * @param level    level of the node in the token array
+     * @param slot     the slot the node must be recorded in, or null
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return the slot the new element is recorded in, or null if the node no longer holds the element
+     */
+    private SlotIndex.Slot siftUpIndexed(int index, int level, SlotIndex.Slot slot, E oldValue, E newValue) {
+        int[] path = new int[level + 1];
+        path[level] = index;
+        for (int l = level; l > 0; l--) {
+            path[l - 1] = (path[l] - 1) / arity;
+        }
+        // a resize holds the root, so the token array can only be read once the root is held
+        tokenArray[0].lock();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (level >= tokens.length) {
+            tokens[0].unlock();
+            return null;
+        }
+        int target = 0;
+        try {
+            while (target < level && binaryArray.isActive(path[target])
+                    && !hasPriorityOver(newValue, binaryArray.getValue(path[target]))) {
+                tokens[target + 1].lock();
+                tokens[target].unlock();
+                target++;
+            }
+        } catch (RuntimeException ex) {
+            tokens[target].unlock();
+            throw ex;
+        }
+        for (int l = target + 1; l <= level; l++) {
+            tokens[l].lock();
+        }
+        if (!binaryArray.isActive(path[target]) || !hasNode(index) || !binaryArray.isActive(index)
+                || !oldValue.equals(binaryArray.getValue(index)) || (slot != null && slot.getIndex() != index)) {
+            for (int l = level; l >= target; l--) {
+                tokens[l].unlock();
+            }
+            return null;
+        }
+
+        // taken out first, as an ancestor equal to the old element moves into the node below
+        SlotIndex.Slot moved = slotIndex.detach(oldValue, index);
+        for (int l = level; l > target; l--) {
+            E value = binaryArray.getValue(path[l - 1]);
+            binaryArray.setValue(path[l], value);
+            slotIndex.move(value, path[l - 1], path[l]);
+        }
+        binaryArray.setValue(path[target], newValue);
+        moved = slotIndex.add(newValue, path[target], moved);
+        for (int l = level; l >= target; l--) {
+            tokens[l].unlock();
+        }
+        return moved;
+    }
+
+    /**
+     * Moves the value of a node down the heap while one of its children has priority over it, swapping it with
+     * the best child. The caller must hold the level of the node and the level below it, which are released
+     * hand-over-hand as the value moves down.
+     *
+     * @param index index of the node in the binary array
+     * @param level level of the node in the token array
+     */
+    private void siftDown(int index, int level) {
+        while (true) {
+            E value = binaryArray.getValue(index);
+            int best = -1;
+            int lastChild = getLastChildIndex(index);
+            for (int child = getChildIndex(index, 0); child <= lastChild; child++) {
+                if (!binaryArray.isActive(child)) continue;
+                if (best < 0 || hasPriorityOver(binaryArray.getValue(child), binaryArray.getValue(best))) {
+                    best = child;
+                }
+            }
+            if (best < 0 || !hasPriorityOver(binaryArray.getValue(best), value)) {
+                if (level + 1 < tokenArray.length) tokenArray[level + 1].unlock();
+                tokenArray[level].unlock();
+                return;
+            }
+
+            E child = binaryArray.getValue(best);
+            binaryArray.setValue(index, child);
+            binaryArray.setValue(best, value);
+            if (slotIndex != null) {
+                slotIndex.move(child, best, index);
+                slotIndex.move(value, index, best);
+            }
+            tokenArray[level].unlock();
+            index = best;
+            level++;
+            if (level + 1 < tokenArray.length) tokenArray[level + 1].lock();
+        }
+    }
+
+    /**
+     * Replaces a single instance of an element by scanning the heap with every level locked, then sifts the new
+     * element up or down in place. No lock hand-offs are needed, as the heap is quiescent.
+     *
+     * @param oldValue the element to replace
+     * @param newValue the element replacing it
+     * @return true if the element was replaced
+     */
+    private boolean replaceByScan(E oldValue, E newValue) {
+        lockAllLevels();
+        try {
+            int index = findLocked(oldValue);
+            if (index < 0) return false;
+            replaceLocked(index, oldValue, newValue);
+            return true;
+        } finally {
+            unlockAllLevels();
+        }
+    }
+
+    /**
+     * Replaces the value of an active node with another element and sifts the new element up or down in place,
+     * updating the slot index if there is one. The path is found before any value moves, so an element that
+     * cannot be compared leaves the heap unchanged. Every level must be held.
+     *
+     * @param index    index of the node in the binary array
+     * @param oldValue the element held by the node
+     * @param newValue the element replacing it
+     * @return the slot the new element is recorded in, or null if elements are not indexed
+     */
+    private SlotIndex.Slot replaceLocked(int index, E oldValue, E newValue) {
+        int[] path = new int[tokenArray.length + 1];
+        int length = 0;
+        path[length++] = index;
+        if (hasPriorityOver(newValue, binaryArray.getValue(index))) {
+            int node = index;
+            while (node > 0 && hasPriorityOver(newValue, binaryArray.getValue((node - 1) / arity))) {
+                node = (node - 1) / arity;
+                path[length++] = node;
+            }
+        } else {
+            for (int node = index; ; ) {
+                int best = -1;
+                int lastChild = getLastChildIndex(node);
+                for (int child = getChildIndex(node, 0); child <= lastChild; child++) {
+                    if (!binaryArray.isActive(child)) continue;
+                    if (best < 0 || hasPriorityOver(binaryArray.getValue(child), binaryArray.getValue(best))) {
+                        best = child;
+                    }
+                }
+                if (best < 0 || !hasPriorityOver(binaryArray.getValue(best), newValue)) break;
+                node = best;
+                path[length++] = node;
+            }
+        }
+
+        // every value on the path moves one node towards the node of the old element
+        SlotIndex.Slot slot = slotIndex == null ? null : slotIndex.detach(oldValue, index);
+        for (int i = 1; i < length; i++) {
+            E value = binaryArray.getValue(path[i]);
+            binaryArray.setValue(path[i - 1], value);
+            if (slotIndex != null) slotIndex.move(value, path[i], path[i - 1]);
+        }
+        int target = path[length - 1];
+        binaryArray.setValue(target, newValue);
+        return slotIndex == null ? null : slotIndex.add(newValue, target, slot);
+    }
+
+    /**
+     * Returns the index of an active node holding an element equal to the given object. Every level must be
+     * held, so that no insert is in progress and the slot index, if there is one, is exact.
+     *
+     * @param o the object to look up
+     * @return the index of the node, or -1 if there is none
+     */
+    private int findLocked(Object o) {
+        if (slotIndex != null) {
+            int[] candidates = slotIndex.slotsOf(o);
+            if (candidates == null) return -1;
+            for (int index : candidates) {
+                if (hasNode(index) && binaryArray.isActive(index) && o.equals(binaryArray.getValue(index))) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        for (int index = 0; index < binaryArray.length(); index++) {
+            if (binaryArray.isActive(index) && o.equals(binaryArray.getValue(index))) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a single instance of the specified element with every level locked, looking it up in the slot
+     * index if there is one and otherwise scanning the heap.
+     *
+     * @param o element to be removed
+     * @return true if the element was removed
+     */
+    private boolean removeByScan(Object o) {
+        lockAllLevels();
+        int index = findLocked(o);
+        if (index < 0) {
+            unlockAllLevels();
+            return false;
+        }
+
+        if (slotIndex != null) slotIndex.remove(binaryArray.getValue(index), index);
+        binaryArray.setActive(index, false);
+        binaryArray.setValue(index, null);
+        binaryArray.incrementCapacity(index);
+        int level = BinaryTreeUtils.findLevel(index, arity) - 1;
+        tokenArray[level].setPosition(index);
+        while (level < tokenArray.length && !localDequeue(level)) {
+            level++;
+        }
+        for (int node = index; node > 0; ) {
+            node = (node - 1) / arity;
+            binaryArray.incrementCapacity(node);
+        }
+        decrementSize();
+        unlockAllLevels();
+        return true;
+    }
+
+    /**
+     * Returns true if this collection contains no elements.
+     *
+     * @return true if this collection contains no elements
+     */
+    public boolean isEmpty() {
+        return (size.get() == 0);
+    }
+
+    /**
+     * Returns the number of elements in this collection.
+     *
+     * @return the number of elements in this collection
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can accept without blocking, or
+     * Integer.MAX_VALUE if the queue is not bounded.
+     *
+     * @return the remaining capacity of this queue
+     */
+    public int remainingCapacity() {
+        return slots == null ? Integer.MAX_VALUE : slots.availablePermits();
+    }
+
+    /**
+     * Shrinks the storage of this queue to the number of elements it currently holds, releasing the nodes
+     * and levels of the heap that are no longer needed. The remaining elements are rebuilt into a heap in
+     * linear time. The queue grows again as usual when elements are added.
+     */
+    public void trimToSize() {
+        compact(false);
+    }
+
+    /**
+     * Returns true if automatic shrinking is enabled and the heap has been polled at least as many times as
+     * it has nodes since it last changed size, while the size is below the shrink load factor. This reads the
+     * state of the heap without locking it, so it is only a hint that compact checks again.
+     *
+     * @return true if the heap should be compacted
+     */
+    private boolean shouldShrink() {
+        if (shrinkLoadFactor <= 0) return false;
+        int length = binaryArray.length();
+        return length > minCapacity
+                && pollsSinceResize >= length
+                && size.get() < shrinkLoadFactor * length;
+    }
+
+    /**
+     * Replaces the storage of the heap with a smaller one holding the current elements and drops the levels
+     * that are no longer needed. An automatic compaction leaves room for twice the current size, never below
+     * the initial capacity, and only happens if the conditions of shouldShrink still hold once every level is
+     * locked; otherwise the storage is trimmed to the current size. Every level is released as soon as it has
+     * been rewritten.
+     *
+     * @param automatic true if triggered by the shrink policy rather than by trimToSize
+     */
+    private void compact(boolean automatic) {
+        lockAllLevels();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        int n = size.get();
+        int newLength = automatic
+                ? (int) Math.max(Math.min(2L * n, Integer.MAX_VALUE), minCapacity)
+                : Math.max(n, 1);
+        if (newLength >= binaryArray.length() || (automatic && !shouldShrink())) {
+            unlockAllLevels();
+            return;
+        }
+
+        Object[] heap = new Object[n];
+        int count = 0;
+        for (int i = 0; i < binaryArray.length() && count < n; i++) {
+            if (binaryArray.isActive(i)) heap[count++] = binaryArray.getValue(i);
+        }
+        try {
+            heapify(heap);
+        } catch (RuntimeException ex) {
+            unlockAllLevels();
+            throw ex;
+        }
+
+        binaryArray = binaryArray.newEmpty(newLength);
+        treeHeight = BinaryTreeUtils.convertSizeToNumLevels(binaryArray.length(), arity);
+        // the dropped levels are unlocked with the others once the heap has been rewritten
+        tokenArray = Arrays.copyOf(tokens, treeHeight);
+        pollsSinceResize = 0;
+        rewriteTopDown(heap, tokens);
+    }
+
+    /**
+     * Removes all of the elements from this queue.
+     * The queue will be empty after this method returns.
+     */
+    public void clear() {
+        lockAllLevels();
+        initBinaryArray();
+        int removed = size.getAndSet(0);
+        unlockAllLevels();
+        releaseSlots(removed);
+    }
+
+    /**
+     * Removes all available elements from this queue and adds them to the given collection.
+     * This operation may be more efficient than repeatedly polling this queue.
+     * A failure encountered while attempting to add elements to collection c may result in elements being
+     * in neither, either or both collections when the associated exception is thrown.
+     * Attempts to drain a queue to itself result in IllegalArgumentException. Further,
+     * the behavior of this operation is undefined if the specified collection is modified
+     * while the operation is in progress.
+     *
+     * @param c the collection to transfer elements into
+     * @return the number of elements transferred
+     * @throws ClassCastException            if the class of an element of this queue prevents it from being added to the specified collection
+     * @throws NullPointerException          if the specified collection is null
+     * @throws IllegalArgumentException      if the specified collection is this queue, or some property of an element of this queue prevents it from being added to the specified collection
+     */
+    public int drainTo(Collection<? super E> c) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes at most the given number of available elements from this queue and adds them to the given
+     * collection in priority order.
+     * <p>
+     * When only a few elements are drained compared to the size of the queue, this behaves like pollBatch.
+     * Otherwise the heap is drained in a single structural pass: with every level locked, all elements are
+     * copied out and the ones that stay in the queue are selected and heapified in linear time. The heap is
+     * then rewritten level by level from the root down, releasing each level as soon as it has been written,
+     * so producers can follow the rewrite down the heap instead of waiting for the whole drain. The drained
+     * elements are sorted and added to the collection after every level has been released.
+     * <p>
+     * A failure encountered while attempting to add elements to collection c may result in elements being
+     * in neither, either or both collections when the associated exception is thrown.
+     * Attempts to drain a queue to itself result in IllegalArgumentException. Further,
+     * the behavior of this operation is undefined if the specified collection is modified
+     * while the operation is in progress.
+     *
+     * @param c           the collection to transfer elements into
+     * @param maxElements the maximum number of elements to transfer
+     * @return the number of elements transferred
+     * @throws ClassCastException            if the class of an element of this queue prevents it from being added to the specified collection
+     * @throws NullPointerException          if the specified collection is null
+     * @throws IllegalArgumentException      if the specified collection is this queue, or some property of an element of this queue prevents it from being added to the specified collection
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        if (maxElements <= 0)
+            return 0;
+
+        lockAllLevels();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        int n = size.get();
+        int k = Math.min(maxElements, n);
+        if (k == 0) {
+            unlockAllLevels();
+            return 0;
+        }
+        Object[] drained;
+        Object[] remaining;
+        try {
+            if (k < n && (long) k * (32 - Integer.numberOfLeadingZeros(n)) < n) {
+                drained = removeTop(k);
+                remaining = null;
+            } else {
+                Object[] all = new Object[n];
+                int count = 0;
+                for (int i = 0; i < binaryArray.length() && count < n; i++) {
+                    if (binaryArray.isActive(i)) all[count++] = binaryArray.getValue(i);
+                }
+                selectTop(all, k);
+                drained = Arrays.copyOf(all, k);
+                remaining = Arrays.copyOfRange(all, k, n);
+                heapify(remaining);
+            }
+        } catch (RuntimeException ex) {
+            unlockAllLevels();
+            throw ex;
+        }
+
+        if (remaining == null) {
+            unlockAllLevels();
+        } else {
+            size.addAndGet(-k);
+            releaseSlots(k);
+            rewriteTopDown(remaining, tokens);
+            // the quickselect leaves the drained elements unordered
+            Arrays.sort(drained, (Comparator<Object>) comparator);
+        }
+
+        for (Object e : drained) {
+            c.add((E) e);
+        }
+        return k;
+    }
+
+    /**
+     * Removes the k highest-priority elements of this queue, or all of them if there are fewer,
+     * and adds them to the given collection in priority order.
+     * Unlike k calls to poll, this locks every level of the heap once for the whole batch: the heap is
+     * then quiescent, so each removal sifts down without any further lock hand-offs and the size is
+     * updated once. The elements are added to the collection after the heap has been unlocked.
+     * A failure encountered while attempting to add elements to collection sink may result in elements
+     * being in neither or both collections when the associated exception is thrown.
+     *
+     * @param k    the maximum number of elements to remove
+     * @param sink the collection to transfer elements into
+     * @return the number of elements transferred
+     * @throws NullPointerException     if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this queue
+     */
+    @SuppressWarnings("unchecked")
+    public int pollBatch(int k, Collection<? super E> sink) {
+        if (sink == null)
+            throw new NullPointerException();
+        if (sink == this)
+            throw new IllegalArgumentException();
+        if (k <= 0)
+            return 0;
+
+        Object[] batch;
+        lockAllLevels();
+        try {
+            batch = removeTop(k);
+        } finally {
+            unlockAllLevels();
+        }
+
+        for (Object e : batch) {
+            sink.add((E) e);
+        }
+        return batch.length;
+    }
+
+    /**
+     * Removes the k highest-priority elements of the heap, or all of them if there are fewer, sifting
+     * each hole down without lock hand-offs. The caller must hold every level.
+     *
+     * @param k the maximum number of elements to remove
+     * @return the removed elements in priority order
+     */
+    @SuppressWarnings("unchecked")
+    private Object[] removeTop(int k) {
+        Object[] batch = new Object[Math.min(k, size.get())];
+        int n = 0;
+        while (n < batch.length && binaryArray.isActive(0)) {
+            batch[n++] = binaryArray.getValue(0);
+            if (slotIndex != null) slotIndex.remove((E) batch[n - 1], 0);
+            binaryArray.setActive(0, false);
+            binaryArray.setValue(0, null);
+            binaryArray.incrementCapacity(0);
+            tokenArray[0].setPosition(0);
+
+            int level = 0;
+            while (level < tokenArray.length && !localDequeue(level)) {
+                level++;
+            }
+        }
+        size.addAndGet(-n);
+        releaseSlots(n);
+        return n == batch.length ? batch : Arrays.copyOf(batch, n);
+    }
+
+    /**
+     * Rearranges an array so that its first k entries are its k highest-priority values, in no particular
+     * order, using a three-way quickselect.
+     *
+     * @param values the values to rearrange
+     * @param k      the number of highest-priority values to move to the front
+     */
+    @SuppressWarnings("unchecked")
+    private void selectTop(Object[] values, int k) {
+        int lo = 0;
+        int hi = values.length - 1;
+        while (lo < hi) {
+            E pivot = (E) values[lo + ThreadLocalRandom.current().nextInt(hi - lo + 1)];
+            // [lo, lt) has priority over the pivot, [lt, gt] ties with it, (gt, hi] is outranked by it
+            int lt = lo;
+            int gt = hi;
+            int i = lo;
+            while (i <= gt) {
+                if (hasPriorityOver((E) values[i], pivot)) {
+                    swap(values, lt++, i++);
+                } else if (hasPriorityOver(pivot, (E) values[i])) {
+                    swap(values, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (k < lt) {
+                hi = lt - 1;
+            } else if (k > gt + 1) {
+                lo = gt + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two entries of an array.
+     *
+     * @param values the array
+     * @param i      index of the first entry
+     * @param j      index of the second entry
+     */
+    private static void swap(Object[] values, int i, int j) {
+        Object temp = values[i];
+        values[i] = values[j];
+        values[j] = temp;
+    }
+
+    /**
+     * Replaces the contents of the binary array with a heap stored contiguously from index 0, writing one
+     * level at a time from the root down and unlocking each level as soon as it has been written. The
+     * capacity of every node is derived from the layout, so no bottom-up pass is needed.
+     * The caller must hold every level of the specified token array, which must be the current one.
+     *
+     * @param heap   the values of the new heap, with the children of index i at indices d*i + 1 to d*i + d
+     * @param tokens the token array whose levels are held by the caller
+     */
+    @SuppressWarnings("unchecked")
+    private void rewriteTopDown(Object[] heap, TokenArrayElement<E>[] tokens) {
+        int length = binaryArray.length();
+        int levelStart = 0;
+        capacityEpoch++;
+        if (slotIndex != null) slotIndex.clear();
+        for (int level = 0; level < tokens.length; level++) {
+            int levelEnd = Math.min(BinaryTreeUtils.convertNumLevelsToSize(level + 1, arity), length);
+            for (int i = levelStart; i < levelEnd; i++) {
+                boolean active = i < heap.length;
+                binaryArray.setValue(i, active ? (E) heap[i] : null);
+                binaryArray.setActive(i, active);
+                if (active && slotIndex != null) slotIndex.add((E) heap[i], i);
+                binaryArray.setCapacity(i, BinaryTreeUtils.countSubtree(i, length, arity)
+                        - BinaryTreeUtils.countSubtree(i, heap.length, arity));
+            }
+            tokens[level].unlock();
+            levelStart = Math.max(levelStart, levelEnd);
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this collection.
+     * The returned array will be "safe" in that no references to it are maintained by this collection.
+     * (In other words, this method must allocate a new array even if this collection is backed by an array).
+     * The caller is thus free to modify the returned array.
+     *
+     * @return an array containing all of the elements in this collection
+     */
+    public Object[] toArray() {
+        lockAllLevels();
+        Object[] result = new Object[size.get()];
+        int taken = 0;
+        int runner = 0;
+        while (taken < size.get() && runner < binaryArray.length()) {
+            if (binaryArray.isActive(runner)) {
+                result[taken] = binaryArray.getValue(runner);
+                taken++;
+            }
+            runner++;
+        }
+
+        if (taken != size.get()) {
+            throw new IllegalStateException("toArray() unsuccessful");
+        }
+        unlockAllLevels();
+        return result;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue.
+     * The runtime type of the returned array is that of the specified array.
+     * If the queue fits in the specified array, it is returned therein.
      * If the queue fits with unfilled elements, the element in the array immediately following the end of the collection is set to null
      * Otherwise a new array is allocated with the runtime type of the specified array and the size of this queue.
      *
      * @param a the array into which the elements of the queue are to be stored, if big enough
      * @return an array containing all of the elements in this queue
      */
+    @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
         lockAllLevels();
         if (a.length < size.get()) {
-            return (T[])toArray();
+            T[] result = (T[]) Arrays.copyOf(toArray(), size.get(), a.getClass());
+            unlockAllLevels();
+            return result;
         }
 
         int taken = 0;
         int runner = 0;
-        while (taken < size.get() && runner <binaryArray.length) {
-            if (binaryArray[runner].getValue() != null) {
-                a[taken] = (T)binaryArray[taken].getValue();
+        while (taken < size.get() && runner < binaryArray.length()) {
+            if (binaryArray.isActive(runner)) {
+                a[taken] = (T) binaryArray.getValue(runner);
                 taken++;
             }
             runner++;
@@ -536,40 +1611,149 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
 
     /**
      * Returns an iterator over the elements in this queue. The
-     * iterator does not return the elements in any particular order.
-     * The returned <tt>Iterator</tt> is a "weakly consistent"
-     * iterator that will never throw {@link
-     * ConcurrentModificationException}, and guarantees to traverse
-     * elements as they existed upon construction of the iterator, and
-     * may (but is not guaranteed to) reflect any modifications
-     * subsequent to construction.
+     * iterator does not return the elements in any particular order
+     * and does not remove them from the queue.
+     * The returned <tt>Iterator</tt> never throws {@link
+     * ConcurrentModificationException}, but it is only a best-effort view:
+     * it is not "weakly consistent" as the iterators of
+     * {@code java.util.concurrent} are. It walks the nodes of the heap
+     * in index order, copying up to a chunk of nodes of one level at a time
+     * while holding only the lock of that level, so offers and polls carry on
+     * through the other levels. Without concurrent writers every element is
+     * returned exactly once, but an element moved to another level by a
+     * concurrent operation may be missed or returned twice, even if it stays
+     * in the queue for the whole traversal. {@link #toArray()} and
+     * {@link #sortedIterator()} give an exact view of the queue.
      *
      * @return an iterator over the elements in this queue
      */
     public Iterator<E> iterator() {
-        return new PipelinedIterator<>();
+        return new PipelinedIterator();
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements in this queue, with the same best-effort traversal
+     * as {@link #iterator()}. The spliterator splits the range of node indices it covers in half, so a parallel
+     * stream scans different parts of the heap on different threads, each locking one level at a time.
+     * The spliterator reports {@link Spliterator#CONCURRENT} and {@link Spliterator#NONNULL}.
+     *
+     * @return a Spliterator over the elements in this queue
+     */
+    public Spliterator<E> spliterator() {
+        return new PipelinedSpliterator(0, binaryArray.length());
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in priority order, without removing them.
+     * The nodes of the heap are copied in a single pass while every level is held, as in {@link #toArray()}, and
+     * the elements are then produced lazily from the copy, so the iterator sees the queue as it was when it was
+     * created. A small heap of node indices holds the frontier of the nodes not returned yet whose parents have
+     * been: returning an element moves its children into the frontier, so the first k elements cost
+     * O(k log k) comparisons instead of sorting the whole queue. {@code remove} removes a single instance of
+     * the element last returned from the queue, as remove(Object) does.
+     *
+     * @return an iterator over the elements in this queue in priority order
+     */
+    public Iterator<E> sortedIterator() {
+        return new SortedIterator(snapshotNodes());
+    }
+
+    /**
+     * Returns a sequential stream of the elements in this queue in priority order, backed by
+     * {@link #sortedIterator()}. Short-circuiting operations such as {@code limit(k)} only order the elements
+     * they consume, so the next k elements of a large queue are found without sorting all of them.
+     *
+     * @return a stream of the elements in this queue in priority order
+     */
+    public Stream<E> sortedStream() {
+        SortedIterator iterator = new SortedIterator(snapshotNodes());
+        int characteristics = Spliterator.ORDERED | Spliterator.NONNULL;
+        // a spliterator over an iterator only reports the natural ordering as its comparator
+        if (comparator == null) characteristics |= Spliterator.SORTED;
+        return StreamSupport.stream(Spliterators.spliterator(iterator, iterator.remaining, characteristics), false);
+    }
+
+    /**
+     * Copies the values of the nodes of the heap while every level is held, so no operation is in flight.
+     *
+     * @return the value of each node by index, or null for an inactive node
+     */
+    private Object[] snapshotNodes() {
+        lockAllLevels();
+        try {
+            Object[] nodes = new Object[binaryArray.length()];
+            for (int i = 0; i < nodes.length; i++) {
+                if (binaryArray.isActive(i)) nodes[i] = binaryArray.getValue(i);
+            }
+            return nodes;
+        } finally {
+            unlockAllLevels();
+        }
+    }
+
+    /**
+     * Copies the values of the active nodes from index from up to, but excluding, index to into a buffer, holding
+     * only the lock of their level. The nodes must all be on the same level.
+     *
+     * @param from    index of the first node to read
+     * @param to      index after the last node to read
+     * @param buffer  the array the values are copied to, from index 0
+     * @param indices the array the indices of the nodes of the values are copied to, from index 0
+     * @return the number of values copied
+     */
+    private int readNodes(int from, int to, Object[] buffer, int[] indices) {
+        int level = BinaryTreeUtils.findLevel(from, arity) - 1;
+        TokenArrayElement<E>[] tokens = tokenArray;
+        if (level >= tokens.length) return 0;
+        TokenArrayElement<E> token = tokens[level];
+        token.lock();
+        try {
+            // a compaction may have dropped this level before it was locked
+            tokens = tokenArray;
+            if (level >= tokens.length || tokens[level] != token) return 0;
+            int count = 0;
+            int end = Math.min(to, binaryArray.length());
+            for (int i = from; i < end; i++) {
+                if (!binaryArray.isActive(i)) continue;
+                buffer[count] = binaryArray.getValue(i);
+                indices[count++] = i;
+            }
+            return count;
+        } finally {
+            token.unlock();
+        }
     }
 
     /**
      * Returns {@code true} if this queue contains the specified element.
      * More formally, returns {@code true} if and only if this queue contains
      * at least one element {@code e} such that {@code o.equals(e)}.
+     * <p>
+     * If elements are indexed, this is a lookup in the slot index that takes no lock, so it runs in constant
+     * time alongside offers and polls. An element still moving down the heap from an insert is already found.
+     * Otherwise every level is locked and the heap is scanned.
      *
      * @param o object to be checked for containment in this queue
      * @return <tt>true</tt> if this queue contains the specified element
      */
     public boolean contains(Object o) {
+        if (o == null) return false;
+        if (slotIndex != null) return slotIndex.contains(o);
         lockAllLevels();
-        for (BinaryArrayElement e : binaryArray) {
-            if (e.getValue() == null) continue;
-            if (e.getValue().equals(o)) return true;
+        try {
+            for (int i = 0; i < binaryArray.length(); i++) {
+                if (binaryArray.isActive(i) && o.equals(binaryArray.getValue(i))) return true;
+            }
+            return false;
+        } finally {
+            unlockAllLevels();
         }
-        unlockAllLevels();
-        return false;
     }
 
     /**
      * Returns true if this collection contains all of the elements in the specified collection.
+     * If elements are indexed, each element is looked up in the slot index without locking. Otherwise every
+     * level is locked and the heap is scanned once for all of the elements.
      *
      * @param c collection to be checked for containment in this collection
      * @return if this collection contains all of the elements in the specified collection
@@ -578,69 +1762,198 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     public boolean containsAll(Collection<?> c) {
 
         // preliminary filtering for input
-        Iterator<E> iterator = (Iterator<E>) c.iterator();
-        while (iterator.hasNext()) {
-            E next = iterator.next();
-            if (next == null) throw new NullPointerException("Found null element in input collection!");
+        for (Object e : c) {
+            if (e == null) throw new NullPointerException("Found null element in input collection!");
         }
 
-        lockAllLevels();
-        if (c.size() > size.get()) return false;
+        if (slotIndex != null) {
+            for (Object e : c) {
+                if (!slotIndex.contains(e)) return false;
+            }
+            return true;
+        }
 
-        Set inputSet = new HashSet(c);
-        int count = 0;
-        for (BinaryArrayElement e : binaryArray) {
-            if (e.getValue() == null) continue;
-            if (inputSet.contains(e.getValue())) count++;
+        Set<Object> missing = new HashSet<>(c);
+        if (missing.isEmpty()) return true;
+        lockAllLevels();
+        try {
+            for (int i = 0; i < binaryArray.length() && !missing.isEmpty(); i++) {
+                if (binaryArray.isActive(i)) missing.remove(binaryArray.getValue(i));
+            }
+        } finally {
+            unlockAllLevels();
         }
-        unlockAllLevels();
-        return inputSet.size() == count;
+        return missing.isEmpty();
     }
 
     /**
-     * <p>This implementation iterates over the specified collection, and adds
-     * each object returned by the iterator to this collection, in turn.
+     * Adds all of the elements in the specified collection to this queue.
      * <p>
-     * <p>Note that this implementation will throw an
-     * <tt>UnsupportedOperationException</tt> unless <tt>add</tt> is
-     * overridden (assuming the specified collection is non-empty).
-     *
-     * @throws ClassCastException            if the class of an element of the specified collection prevents it from being added to this collection
-     * @throws NullPointerException          if the specified collection contains a null element and this collection does not permit null elements, or if the specified collection is null
-     * @throws IllegalArgumentException      if some property of an element of the specified collection prevents it from being added to this collection
-     * @throws IllegalStateException         if not all the elements can be added at this time due to insertion restrictions
+     * If the queue is empty, or the collection is large compared to the queue, the heap is rebuilt in bulk:
+     * with every level locked, the elements already in the queue and the new elements are heapified bottom-up
+     * in linear time and the capacities of the nodes are recomputed once. Otherwise each element is added in
+     * turn through the pipeline, as that costs less than rebuilding a much larger heap.
+     *
+     * @param c collection containing elements to be added to this queue
+     * @return true if this queue changed as a result of the call
+     * @throws ClassCastException       if the class of an element of the specified collection prevents it from being added to this queue
+     * @throws NullPointerException     if the specified collection contains a null element, or if the specified collection is null
+     * @throws IllegalArgumentException if the specified collection is this queue
      * @see #add(Object)
-     * @return true
      */
+    @SuppressWarnings("unchecked")
     public boolean addAll(Collection<? extends E> c) {
-        for (E e : c) {
-            add(e);
+        if (c == null) throw new NullPointerException("Specified collection is null");
+        if (c == this) throw new IllegalArgumentException("Cannot add a queue to itself");
+        Object[] elements = c.toArray();
+        if (elements.length == 0) return false;
+        for (Object e : elements) {
+            if (e == null) throw new NullPointerException("Specified collection contains a null element");
+            if (comparator == null && !(e instanceof Comparable)) throw new ClassCastException(e.getClass().getName());
         }
+
+        long merged = (long) size.get() + elements.length;
+        if (merged > Integer.MAX_VALUE) throw new IllegalStateException("Queue capacity exceeded");
+        // a bounded queue only takes the bulk path if every element fits, otherwise add fails once it is full
+        if ((long) elements.length * (32 - Integer.numberOfLeadingZeros((int) merged)) < size.get()
+                || (slots != null && !slots.tryAcquire(elements.length))) {
+            for (Object e : elements) {
+                add((E) e);
+            }
+            return true;
+        }
+
+        lockAllLevels();
+        int lockedLevels = tokenArray.length;
+        try {
+            Object[] heap = new Object[size.get() + elements.length];
+            int n = 0;
+            for (int i = 0; i < binaryArray.length() && n < size.get(); i++) {
+                if (binaryArray.isActive(i)) heap[n++] = binaryArray.getValue(i);
+            }
+            System.arraycopy(elements, 0, heap, n, elements.length);
+            // nothing has been modified yet if the comparator throws
+            try {
+                heapify(heap);
+            } catch (RuntimeException ex) {
+                releaseSlots(elements.length);
+                throw ex;
+            }
+
+            if (heap.length > binaryArray.length()) {
+                grow(Math.max(heap.length, nextCapacity(binaryArray.length())));
+                // the levels added by grow are reachable through the new token array, so they are held as well
+                for (int i = lockedLevels; i < tokenArray.length; i++) {
+                    tokenArray[i].lock();
+                }
+                lockedLevels = tokenArray.length;
+            }
+            binaryArray.clear();
+            if (slotIndex != null) slotIndex.clear();
+            for (int i = 0; i < heap.length; i++) {
+                binaryArray.setValue(i, (E) heap[i]);
+                binaryArray.setActive(i, true);
+                if (slotIndex != null) slotIndex.add((E) heap[i], i);
+            }
+            recomputeCapacities();
+            size.set(heap.length);
+        } finally {
+            for (int i = 0; i < lockedLevels; i++) {
+                tokenArray[i].unlock();
+            }
+        }
+
+        signalNotEmpty(elements.length);
         return true;
     }
 
     /**
-     * Throws an UnsupportedOperationException() because this method is not supported
-     * by this PipelinedPriorityQueue.
+     * Removes all of this queue's elements that are also contained in the specified collection.
+     * <p>
+     * If elements are indexed and the collection is small compared to the queue, each element is removed in
+     * turn through remove(Object). Otherwise the heap is filtered in a single structural pass: with every level
+     * locked, the remaining elements are heapified in linear time and the heap is rewritten from the root down,
+     * releasing each level as soon as it has been written.
      *
-     * @throws UnsupportedOperationException every time because this class does not support this operation
+     * @param c collection containing elements to be removed from this queue
+     * @return true if this queue changed as a result of the call
      * @throws ClassCastException if the types of one or more elements in this collection are incompatible with the specified collection
      * @throws NullPointerException if this collection contains one or more null elements and the specified collection does not support null elements, or if the specified collection is null
      */
     public boolean removeAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
+        if (c == null) throw new NullPointerException("Specified collection is null");
+        if (c == this) {
+            boolean changed = !isEmpty();
+            clear();
+            return changed;
+        }
+        int n = size.get();
+        if (slotIndex != null && (long) c.size() * (32 - Integer.numberOfLeadingZeros(n)) < n) {
+            boolean changed = false;
+            for (Object o : c) {
+                while (remove(o)) {
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+        return filter(c, false);
     }
 
     /**
-     * Throws an UnsupportedOperationException() because this method is not supported
-     * by this PipelinedPriorityQueue.
+     * Retains only the elements in this queue that are contained in the specified collection.
+     * The heap is filtered in a single structural pass: with every level locked, the retained elements are
+     * heapified in linear time and the heap is rewritten from the root down, releasing each level as soon as
+     * it has been written.
      *
-     * @throws UnsupportedOperationException every time because this class does not support this operation
+     * @param c collection containing elements to be retained in this queue
+     * @return true if this queue changed as a result of the call
      * @throws ClassCastException if the types of one or more elements in this collection are incompatible with the specified collection
      * @throws NullPointerException if this collection contains one or more null elements and the specified collection does not support null elements, or if the specified collection is null
      */
     public boolean retainAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
+        if (c == null) throw new NullPointerException("Specified collection is null");
+        if (c == this) return false;
+        return filter(c, true);
+    }
+
+    /**
+     * Keeps only the elements of the heap whose containment in the specified collection matches retain,
+     * rebuilding the heap in linear time if any element was removed.
+     *
+     * @param c      the collection the elements are checked against
+     * @param retain true to keep the elements contained in c, false to keep the others
+     * @return true if any element was removed
+     */
+    private boolean filter(Collection<?> c, boolean retain) {
+        lockAllLevels();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        int n = size.get();
+        Object[] kept = new Object[n];
+        int count = 0;
+        try {
+            int found = 0;
+            for (int i = 0; i < binaryArray.length() && found < n; i++) {
+                if (!binaryArray.isActive(i)) continue;
+                found++;
+                E value = binaryArray.getValue(i);
+                if (c.contains(value) == retain) kept[count++] = value;
+            }
+            if (count == n) {
+                unlockAllLevels();
+                return false;
+            }
+            kept = Arrays.copyOf(kept, count);
+            heapify(kept);
+        } catch (RuntimeException ex) {
+            unlockAllLevels();
+            throw ex;
+        }
+
+        size.addAndGet(count - n);
+        releaseSlots(n - count);
+        rewriteTopDown(kept, tokens);
+        return true;
     }
 
     /**
@@ -651,42 +1964,46 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
     private boolean localEnqueue(int i) {
         int position = tokenArray[i].getPosition();
         E value = tokenArray[i].getValue();
-        BinaryArrayElement<E> element = binaryArray[position];
 
-        if (!element.isActive()) {
-            element.setValue(value);
-            element.setActive(true);
-            element.decrementCapacity();
+        if (!binaryArray.isActive(position)) {
+            binaryArray.setValue(position, value);
+            binaryArray.setActive(position, true);
+            binaryArray.decrementCapacity(position);
+            if (slotIndex != null) recordPlaced(tokenArray[i], value, position);
             return true;
-        } else if (tokenArray[i].isGreaterThan(binaryArray[position].getValue())) {
+        } else if (tokenArray[i].isGreaterThan(binaryArray.getValue(position))) {
             E temp = tokenArray[i].getValue();
-            tokenArray[i].setValue(binaryArray[position].getValue());
-            element.setValue(temp);
+            tokenArray[i].setValue(binaryArray.getValue(position));
+            binaryArray.setValue(position, temp);
+            // the displaced value keeps its entry in the slot index until it lands
+            if (slotIndex != null) recordPlaced(tokenArray[i], temp, position);
+            tokenArray[i].setOrigin(position);
+            tokenArray[i].setSlot(null);
         }
 
-        element.decrementCapacity();
+        binaryArray.decrementCapacity(position);
         tokenArray[i + 1].setValue(tokenArray[i].getValue());
+        tokenArray[i + 1].setOrigin(tokenArray[i].getOrigin());
+        tokenArray[i + 1].setSlot(tokenArray[i].getSlot());
         tokenArray[i].setValue(null);
+        tokenArray[i].setSlot(null);
 
-        BinaryArrayElement<E> left = getLeft(position);
-        BinaryArrayElement<E> right = getRight(position);
-        if (left == null && right == null) {
+        int firstChild = getChildIndex(position, 0);
+        if (!hasNode(firstChild)) {
             return true;//check
         }
 
-        int next;
-        if (left == null) {
-            next = getRightIndex(position);
-        } else if (right == null) {
-            next = getLeftIndex(position);
-        } else if (left.getValue() == null) {
-            next = getLeftIndex(position);
-        } else if (right.getValue() == null) {
-            next = getRightIndex(position);
-        } else if (left.getCapacity() > right.getCapacity()) {
-            next = getLeftIndex(position);
-        } else {
-            next = getRightIndex(position);
+        // prefer an inactive child, otherwise the child with the most room in its subtree
+        int next = firstChild;
+        int lastChild = getLastChildIndex(position);
+        for (int child = firstChild; child <= lastChild; child++) {
+            if (!binaryArray.isActive(child)) {
+                next = child;
+                break;
+            }
+            if (binaryArray.getCapacity(child) >= binaryArray.getCapacity(next)) {
+                next = child;
+            }
         }
         tokenArray[i + 1].setPosition(next);
 
@@ -700,156 +2017,270 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      */
     private boolean localDequeue(int i) {
         int current = tokenArray[i].getPosition();
-        BinaryArrayElement<E> leftChild = getLeft(current);
-        BinaryArrayElement<E> rightChild = getRight(current);
-
-        if ((leftChild == null || !leftChild.isActive())
-                && (rightChild == null || !rightChild.isActive())) {
-            return true;
+        int greatestChildPosition = -1;
+        int lastChild = getLastChildIndex(current);
+        for (int child = getChildIndex(current, 0); child <= lastChild; child++) {
+            if (!binaryArray.isActive(child)) continue;
+            if (greatestChildPosition < 0
+                    || hasPriorityOver(binaryArray.getValue(child), binaryArray.getValue(greatestChildPosition))) {
+                greatestChildPosition = child;
+            }
         }
 
-        BinaryArrayElement<E> greatestChild;
-        int greatestChildPosition;
-
-        if (leftChild == null || leftChild.getValue() == null) {
-            greatestChild = rightChild;
-            greatestChildPosition = getRightIndex(current);
-        } else if (rightChild == null || rightChild.getValue() == null || leftChild.isGreaterThan(rightChild.getValue())) {
-            greatestChild = leftChild;
-            greatestChildPosition = getLeftIndex(current);
-        } else {
-            greatestChild = rightChild;
-            greatestChildPosition = getRightIndex(current);
+        if (greatestChildPosition < 0) {
+            return true;
         }
 
-        binaryArray[current].setActive(true);
-        binaryArray[current].setValue(greatestChild.getValue());
-        greatestChild.setActive(false);
-        greatestChild.setValue(null);
-        greatestChild.incrementCapacity();
+        binaryArray.setActive(current, true);
+        binaryArray.setValue(current, binaryArray.getValue(greatestChildPosition));
+        if (slotIndex != null) slotIndex.move(binaryArray.getValue(current), greatestChildPosition, current);
+        binaryArray.setActive(greatestChildPosition, false);
+        binaryArray.setValue(greatestChildPosition, null);
+        binaryArray.incrementCapacity(greatestChildPosition);
         tokenArray[i + 1].setPosition(greatestChildPosition);
         return false;
     }
 
     /**
-     * Returns the left child of an element given its index in the binary array
-     * @param index index of the element in the binary array
-     * @return its left child, null if there is no left child
+     * Records in the slot index that the value carried by a level of the token array was placed in a node:
+     * a new element is added in the slot given to the insert, and a displaced value moves from its origin.
+     *
+     * @param token the level carrying the value
+     * @param value the value placed
+     * @param position index of the node the value was placed in
      */
-    private BinaryArrayElement<E> getLeft(int index) {
-        int leftIndex = index * 2 + 1;
-        if (leftIndex >= binaryArray.length) {
-            return null;
+    private void recordPlaced(TokenArrayElement<E> token, E value, int position) {
+        if (token.getOrigin() < 0) {
+            slotIndex.add(value, position, token.getSlot());
+        } else {
+            slotIndex.move(value, token.getOrigin(), position);
         }
-        return binaryArray[index * 2 + 1];
     }
 
     /**
-     * Returns the right child of an element given its index in the binary array
-     * @param index index of the element in the binary array
-     * @return its right child, null if there is no right child
+     * Returns true if the first value should be dequeued before the second value.
+     * This implementation will use natural ordering if no comparator is provided.
+     * @param a the first value
+     * @param b the second value
+     * @return true if a has a strictly higher priority than b
      */
-    private BinaryArrayElement<E> getRight(int index) {
-        int rightIndex = index * 2 + 2;
-        if (rightIndex >= binaryArray.length) {
-            return null;
+    @SuppressWarnings("unchecked")
+    private boolean hasPriorityOver(E a, E b) {
+        if (comparator != null) {
+            return comparator.compare(a, b) < 0;
         }
-        return binaryArray[index * 2 + 2];
+        return ((Comparable<? super E>) a).compareTo(b) < 0;
     }
 
     /**
-     * Returns the left child's index of an element given its index in the binary array
+     * Returns true if a node exists at the given index of the binary array
+     * @param index index of the node in the binary array
+     * @return true if the index is within the bounds of the heap
+     */
+    private boolean hasNode(int index) {
+        return index < binaryArray.length();
+    }
+
+    /**
+     * Returns the index of the k-th child of an element given its index in the binary array
      * @param index index of the element in the binary array
-     * @return its left child's index (which may be out of bounds of the heap)
+     * @param k     zero-based position of the child among its siblings, less than the arity of the heap
+     * @return the child's index (which may be out of bounds of the heap), capped at Integer.MAX_VALUE
      */
-    private int getLeftIndex(int index) {
-        return index * 2 + 1;
+    private int getChildIndex(int index, int k) {
+        return (int) Math.min((long) index * arity + 1 + k, Integer.MAX_VALUE);
     }
 
     /**
-     * Returns the right child's index of an element given its index in the binary array
+     * Returns the index of the last child of an element that exists in the binary array
      * @param index index of the element in the binary array
-     * @return its right child's index (which may be out of bounds of the heap)
+     * @return the last child's index, less than the index of the first child if the element is a leaf
      */
-    private int getRightIndex(int index) {
-        return index * 2 + 2;
+    private int getLastChildIndex(int index) {
+        return Math.min(getChildIndex(index, arity - 1), binaryArray.length() - 1);
     }
 
     /**
      * Increases the capacity of the array. If the current size of the heap is less than 64, then the
-     * capacity is doubled, otherwise it is grown by 50%.
+     * capacity is doubled, otherwise it is grown by 50%. Segmented storage instead grows by a single level.
+     * With incremental resizing, the nodes are not copied here: the larger array is installed behind a
+     * MigratingBinaryArray and later operations move the nodes over a chunk at a time.
      */
     private void resize() {
         int tokenArrayLength = tokenArray.length;
         for (int i = 2; i < tokenArrayLength; i++) {
             tokenArray[i].lock();
         }
+        pollsSinceResize = 0;
+
+        if (binaryArray instanceof MigratingBinaryArray) {
+            // the previous incremental resize has not finished, so finish it while every level is held
+            MigratingBinaryArray<E> migration = (MigratingBinaryArray<E>) binaryArray;
+            migration.complete();
+            binaryArray = migration.getTarget();
+        }
+
+        if (binaryArray.isSegmented()) {
+            // appending a level keeps the existing capacities correct
+            grow(BinaryTreeUtils.convertNumLevelsToSize(treeHeight + 1, arity));
+        } else if (resizeChunk > 0) {
+            BinaryArray<E> target = binaryArray.newEmpty(nextCapacity(binaryArray.length()));
+            binaryArray = new MigratingBinaryArray<>(binaryArray, target, arity);
+            addLevels();
+        } else {
+            grow(nextCapacity(binaryArray.length()));
+            recomputeCapacities();
+        }
+        // the caller expects to hold the second level, which did not exist before growing
+        if (tokenArrayLength == 1) tokenArray[1].lock();
+
+        for (int i = 2; i < tokenArrayLength; i++) {
+            tokenArray[i].unlock();
+        }
+    }
 
-        int oldCapacity = binaryArray.length;
+    /**
+     * Moves one chunk of nodes of an incremental resize in progress to the larger array, and installs that
+     * array once every node has been moved. The caller must hold the first two levels, which are moved
+     * first; deeper levels are only moved if their lock can be taken without waiting.
+     */
+    private void helpResize() {
+        if (!(binaryArray instanceof MigratingBinaryArray)) return;
+        MigratingBinaryArray<E> migration = (MigratingBinaryArray<E>) binaryArray;
+        if (migration.isComplete()) {
+            binaryArray = migration.getTarget();
+            return;
+        }
+
+        int levels = migration.levels();
+        int held = Math.min(2, levels);
+        for (int level = 0; level < held; level++) {
+            if (migration.isPending(level)) {
+                migration.moveChunk(level, resizeChunk);
+                return;
+            }
+        }
+        if (levels == held) return;
+        int start = ThreadLocalRandom.current().nextInt(levels - held);
+        for (int k = 0; k < levels - held; k++) {
+            int level = held + (start + k) % (levels - held);
+            if (migration.isPending(level) && tokenArray[level].tryLock()) {
+                migration.moveChunk(level, resizeChunk);
+                tokenArray[level].unlock();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the capacity the binary array grows to when it is full. If the current capacity is less
+     * than 64, then the capacity is doubled, otherwise it is grown by 50%.
+     * @param oldCapacity current length of the binary array
+     * @return the new length of the binary array
+     */
+    private int nextCapacity(int oldCapacity) {
         // Double size if small; else grow by 50%
         int newCapacity = ((oldCapacity < 64) ?
                 ((oldCapacity + 1) * 2) :
                 ((oldCapacity / 2) * 3));
         if (newCapacity < 0) // overflow
             newCapacity = Integer.MAX_VALUE;
+        return newCapacity;
+    }
 
-        BinaryArrayElement<E>[] oldBinaryArray = binaryArray;
-        binaryArray = new BinaryArrayElement[newCapacity];
-        initBinaryArray();
-        for (int i = 0; i < oldCapacity; i++) {
-            binaryArray[i] = oldBinaryArray[i];
-        }
+    /**
+     * Replaces the binary array with a copy of the specified length and adds a token for every new level
+     * of the heap. The new tokens are unlocked and the capacities of the nodes are not recomputed.
+     * The caller must hold every level of the token array.
+     * @param newCapacity new length of the binary array
+     */
+    private void grow(int newCapacity) {
+        binaryArray = binaryArray.copyOf(newCapacity);
+        addLevels();
+    }
 
-        updateCapacities(0);
+    /**
+     * Adds a token for every level of the binary array that the token array does not cover yet.
+     * The new tokens are unlocked. The caller must hold every level of the token array.
+     */
+    private void addLevels() {
         //resize token array same as current
-        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(newCapacity);
+        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(binaryArray.length(), arity);
 
-        TokenArrayElement<E>[] temp = new TokenArrayElement[treeHeight];
+        @SuppressWarnings("unchecked")
+        TokenArrayElement<E>[] temp = (TokenArrayElement<E>[]) new TokenArrayElement<?>[Math.max(treeHeight, tokenArray.length)];
         for (int i = 0; i < tokenArray.length; i++) {
             temp[i] = tokenArray[i];
         }
 
-        for (int i = tokenArray.length; i < treeHeight; i++) {
+        for (int i = tokenArray.length; i < temp.length; i++) {
             temp[i] = new TokenArrayElement(null, 1, comparator,
-                    new TokenArrayElement.TokenLock(true));
+                    tokenLockStrategy.newLock());
         }
         tokenArray = temp;
+    }
 
-        for (int i = 2; i < tokenArrayLength; i++) {
-            tokenArray[i].unlock();
+    /**
+     * Rearranges an array into a heap in linear time by sifting down every parent node, starting from the last one.
+     * @param heap the values to rearrange, with the children of index i at indices d*i + 1 to d*i + d
+     */
+    @SuppressWarnings("unchecked")
+    private void heapify(Object[] heap) {
+        if (heap.length < 2) return;
+        for (int i = (heap.length - 2) / arity; i >= 0; i--) {
+            E value = (E) heap[i];
+            int current = i;
+            while (true) {
+                int firstChild = getChildIndex(current, 0);
+                if (firstChild >= heap.length) break;
+                int lastChild = Math.min(getChildIndex(current, arity - 1), heap.length - 1);
+                int best = firstChild;
+                for (int child = firstChild + 1; child <= lastChild; child++) {
+                    if (hasPriorityOver((E) heap[child], (E) heap[best])) best = child;
+                }
+                if (!hasPriorityOver((E) heap[best], value)) break;
+                heap[current] = heap[best];
+                current = best;
+            }
+            heap[current] = value;
         }
     }
 
+    /**
+     * Recomputes the capacities of all the nodes inside the binary array and starts a new capacity epoch,
+     * so that removals whose ancestors have not been updated yet do not count themselves twice.
+     * The caller must hold every level.
+     */
+    private void recomputeCapacities() {
+        capacityEpoch++;
+        updateCapacities(0);
+    }
+
     /**
      * Recursive post-order traversal to update the capacities of all the nodes inside the binary array
      * @param i index of the current node in the binary array
      */
     private void updateCapacities(int i) {
-        if (i < 0 || i >= binaryArray.length) return;
-        updateCapacities(getLeftIndex(i));
-        updateCapacities(getRightIndex(i));
-
-        int capacity = binaryArray[i].isActive() ? 0 : 1;
-
-        BinaryArrayElement<E> leftChild = getLeft(i);
-        if (leftChild != null) {
-            capacity += leftChild.getCapacity();
+        if (i < 0 || i >= binaryArray.length()) return;
+        int capacity = binaryArray.isActive(i) ? 0 : 1;
+        int lastChild = getLastChildIndex(i);
+        for (int child = getChildIndex(i, 0); child <= lastChild; child++) {
+            updateCapacities(child);
+            capacity += binaryArray.getCapacity(child);
         }
 
-        BinaryArrayElement<E> rightChild = getRight(i);
-        if (rightChild != null) {
-            capacity += rightChild.getCapacity();
-        }
-
-        binaryArray[i].setCapacity(capacity);
+        binaryArray.setCapacity(i, capacity);
     }
 
     /**
      * Locks all nodes in the token array
      */
     private void lockAllLevels() {
-        for (TokenArrayElement tae : tokenArray) {
-            tae.lock();
+        // a resize in progress holds the root, so the token array can only be read once the root is held
+        tokenArray[0].lock();
+        TokenArrayElement<E>[] tokens = tokenArray;
+        for (int i = 1; i < tokens.length; i++) {
+            tokens[i].lock();
         }
     }
 
@@ -864,14 +2295,21 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
 
     /**
      * Increments the size of this PipelinedPriorityQueue i.e. number of active nodes in the heap.
-     * This also signals any sleeping threads that are waiting for this queue to be non-empty.
+     * This also wakes one of the threads sleeping until this queue is non-empty, including when the queue was empty.
      */
     private void incrementSize() {
-        if (size.incrementAndGet() > 1) {
-            notEmptyLock.lock();
-            notEmptyCondition.signal();
-            notEmptyLock.unlock();
-        }
+        size.incrementAndGet();
+        signalNotEmpty(1);
+    }
+
+    /**
+     * Wakes up to the given number of threads sleeping until this queue is non-empty.
+     * The size must be raised before this is called.
+     *
+     * @param n number of elements added to this queue
+     */
+    private void signalNotEmpty(int n) {
+        notEmptyWaiters.signal(n);
     }
 
     /**
@@ -879,6 +2317,17 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
      */
     private void decrementSize() {
         size.decrementAndGet();
+        releaseSlots(1);
+    }
+
+    /**
+     * Frees the given number of slots of a bounded queue, waking producers waiting for space.
+     * Does nothing if the queue is not bounded.
+     *
+     * @param n the number of elements removed from the queue
+     */
+    private void releaseSlots(int n) {
+        if (slots != null && n > 0) slots.release(n);
     }
 
     @Override
@@ -895,6 +2344,8 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
                 .append(comparator, that.comparator)
                 .append(size, that.size)
                 .append(treeHeight, that.treeHeight)
+                .append(arity, that.arity)
+                .append(sprayWidth, that.sprayWidth)
                 .isEquals();
     }
 
@@ -906,20 +2357,521 @@ public class PipelinedPriorityQueue<E> implements Serializable, BlockingQueue<E>
                 .append(comparator)
                 .append(size)
                 .append(treeHeight)
+                .append(arity)
+                .append(sprayWidth)
                 .toHashCode();
     }
 
-    private class PipelinedIterator<T> implements Iterator<T> {
+    /**
+     * Builder for a PipelinedPriorityQueue, used to select the optional behaviours of the queue.
+     *
+     * @param <E> the type of elements held in the queue
+     */
+    public static class Builder<E> {
+
+        /**
+         * Represents the initial capacity of the queue.
+         */
+        private int initialCapacity = DEFAULT_CAPACITY_NUM_ELEMENTS;
+        /**
+         * Represents the comparator used to order the queue, null for natural ordering.
+         */
+        private Comparator<? super E> comparator;
+        /**
+         * Represents the layout of the nodes of the heap of the queue.
+         */
+        private StorageMode storageMode = StorageMode.ELEMENTS;
+        /**
+         * Represents the strategy used to create the Lock of every level of the queue.
+         */
+        private TokenLockStrategy tokenLockStrategy = TokenLockStrategy.FAIR;
+        /**
+         * Represents the maximum number of children of each node in the heap of the queue.
+         */
+        private int arity = DEFAULT_ARITY;
+        /**
+         * Represents the number of nodes at the top of the heap that a relaxed poll picks from, 0 for strict polling.
+         */
+        private int sprayWidth;
+        /**
+         * Represents the number of elimination slots, 0 to disable elimination.
+         */
+        private int eliminationSlots;
+        /**
+         * Represents the number of nodes moved per operation during an incremental resize, 0 to copy at once.
+         */
+        private int resizeChunk;
+        /**
+         * Represents the load factor below which the heap shrinks automatically, 0 to never shrink.
+         */
+        private double shrinkLoadFactor;
+        /**
+         * Represents the maximum number of elements in the queue, 0 if it is not bounded.
+         */
+        private int bound;
+        /**
+         * Represents whether the elements of the queue are indexed by the nodes holding them.
+         */
+        private boolean slotIndex;
+
+        /**
+         * Sets the initial capacity of the queue
+         *
+         * @param initialCapacity the initial capacity of the queue
+         * @return this Builder
+         * @throws IllegalArgumentException if initialCapacity is less than 1
+         */
+        public Builder<E> initialCapacity(int initialCapacity) {
+            if (initialCapacity <= 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
+            this.initialCapacity = initialCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the comparator used to order the queue
+         *
+         * @param comparator the comparator used to order the queue. If null, the natural ordering of the elements will be used.
+         * @return this Builder
+         */
+        public Builder<E> comparator(Comparator<? super E> comparator) {
+            this.comparator = comparator;
+            return this;
+        }
+
+        /**
+         * Sets the layout of the nodes of the heap of the queue
+         *
+         * @param storageMode the layout of the nodes of the heap in memory
+         * @return this Builder
+         * @throws NullPointerException if storageMode is null
+         */
+        public Builder<E> storageMode(StorageMode storageMode) {
+            if (storageMode == null) throw new NullPointerException("Storage mode cannot be null");
+            this.storageMode = storageMode;
+            return this;
+        }
+
+        /**
+         * Sets the strategy used to create the Lock of every level of the queue
+         *
+         * @param tokenLockStrategy the strategy used to create the Lock of every level
+         * @return this Builder
+         * @throws NullPointerException if tokenLockStrategy is null
+         */
+        public Builder<E> tokenLockStrategy(TokenLockStrategy tokenLockStrategy) {
+            if (tokenLockStrategy == null) throw new NullPointerException("Token lock strategy cannot be null");
+            this.tokenLockStrategy = tokenLockStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of children of each node in the heap of the queue. A higher arity
+         * means fewer levels, hence fewer token hand-offs per operation, at the cost of comparing more
+         * children at each level.
+         *
+         * @param arity the maximum number of children of each node, e.g. 2, 4 or 8
+         * @return this Builder
+         * @throws IllegalArgumentException if arity is less than 2
+         */
+        public Builder<E> arity(int arity) {
+            if (arity < 2) throw new IllegalArgumentException("Arity must be at least 2");
+            this.arity = arity;
+            return this;
+        }
+
+        /**
+         * Enables relaxed polling, in the style of a SprayList. Instead of always removing the root, a poll
+         * removes a random element among the top p*log2(p) nodes of the heap, where p is the expected number
+         * of concurrent consumers, so that consumers lock different levels instead of all queueing on the root.
+         * A poll falls back to removing the root if it lands on an empty node. With a single consumer every
+         * poll removes the root.
+         *
+         * @param expectedConsumers the expected number of threads polling concurrently
+         * @return this Builder
+         * @throws IllegalArgumentException if expectedConsumers is less than 1
+         */
+        public Builder<E> relaxedPolling(int expectedConsumers) {
+            if (expectedConsumers < 1) throw new IllegalArgumentException("Expected consumers must be at least 1");
+            int log2 = 32 - Integer.numberOfLeadingZeros(expectedConsumers - 1);
+            this.sprayWidth = (int) Math.min((long) expectedConsumers * log2, Integer.MAX_VALUE);
+            return this;
+        }
+
+        /**
+         * Enables elimination between offers and polls. A poll that finds the head of the heap locked waits
+         * briefly in one of the specified number of slots, and an offer of an element that would become the new
+         * head hands it to such a poll instead of inserting it. Neither operation then touches the heap.
+         * Roughly one slot per pair of concurrent consumers is a reasonable starting point.
+         *
+         * @param slots the number of elimination slots
+         * @return this Builder
+         * @throws IllegalArgumentException if slots is less than 1
+         */
+        public Builder<E> elimination(int slots) {
+            if (slots < 1) throw new IllegalArgumentException("Number of slots must be greater than 0");
+            this.eliminationSlots = slots;
+            return this;
+        }
+
+        /**
+         * Enables incremental resizing. When the heap is full, a larger array is allocated but the nodes are not
+         * copied straight away: until every node has been moved, each offer and poll moves up to the specified
+         * number of nodes of one level, so no single operation pays for the whole copy. The move of a level only
+         * happens while holding its lock, and only if that lock is free. Segmented storage never copies nodes
+         * and ignores this setting.
+         *
+         * @param chunkSize the maximum number of nodes moved by a single operation
+         * @return this Builder
+         * @throws IllegalArgumentException if chunkSize is less than 1
+         */
+        public Builder<E> incrementalResize(int chunkSize) {
+            if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be greater than 0");
+            this.resizeChunk = chunkSize;
+            return this;
+        }
+
+        /**
+         * Enables automatic shrinking. Once the head has been polled at least as many times as the heap has nodes
+         * since it last grew or shrank, a poll that leaves fewer elements than the specified fraction of the
+         * capacity compacts the heap to twice the number of elements, but never below the initial capacity.
+         * Waiting for that many polls keeps the cost of compacting constant per operation, and stops a queue
+         * that only dips briefly from shrinking and growing back repeatedly.
+         *
+         * @param loadFactor the fraction of the capacity below which the heap shrinks, at most 0.5
+         * @return this Builder
+         * @throws IllegalArgumentException if loadFactor is not greater than 0 and at most 0.5
+         */
+        public Builder<E> shrinkBelow(double loadFactor) {
+            if (!(loadFactor > 0 && loadFactor <= 0.5))
+                throw new IllegalArgumentException("Load factor must be greater than 0 and at most 0.5");
+            this.shrinkLoadFactor = loadFactor;
+            return this;
+        }
+
+        /**
+         * Bounds the number of elements in the queue. When the queue is full, offer returns false, add throws
+         * IllegalStateException, put waits and the timed offer waits up to its timeout for an element to be removed.
+         * Free space is counted by a non-fair Semaphore, so producers claim a slot with a compare-and-set rather
+         * than queueing on a lock, and only producers that find the queue full are ever parked.
+         *
+         * @param maxElements the maximum number of elements in the queue
+         * @return this Builder
+         * @throws IllegalArgumentException if maxElements is less than 1
+         */
+        public Builder<E> bound(int maxElements) {
+            if (maxElements < 1) throw new IllegalArgumentException("Bound must be greater than 0");
+            this.bound = maxElements;
+            return this;
+        }
+
+        /**
+         * Enables the slot index, which maps every element to the nodes of the heap holding it. It is updated as
+         * values move between nodes, so remove(Object) and removeAll can find an element without scanning the
+         * heap and remove it in logarithmic time, locking only the levels it passes through. This costs a hash
+         * map update for every node an element is written to, and requires elements whose equals and hashCode
+         * are consistent and do not change while they are in the queue.
+         *
+         * @return this Builder
+         */
+        public Builder<E> slotIndex() {
+            this.slotIndex = true;
+            return this;
+        }
+
+        /**
+         * Creates a PipelinedPriorityQueue using the configuration of this Builder
+         *
+         * @return a new, empty PipelinedPriorityQueue
+         */
+        public PipelinedPriorityQueue<E> build() {
+            return new PipelinedPriorityQueue<>(this);
+        }
+    }
+
+    /**
+     * Iterator over a copy of the nodes of the heap in priority order. The frontier is a binary heap of the
+     * indices of the nodes whose parents have been returned, ordered by their values. Since an inactive node
+     * has no active children, only active nodes enter the frontier.
+     */
+    private class SortedIterator implements Iterator<E> {
+
+        /**
+         * Represents the value of each node of the heap when the iterator was created, or null for an inactive node.
+         */
+        private final Object[] nodes;
+        /**
+         * Represents the indices of the nodes in the frontier, as a binary heap ordered by their values.
+         */
+        private int[] frontier = new int[16];
+        /**
+         * Represents the number of indices in the frontier.
+         */
+        private int frontierSize;
+        /**
+         * Represents the number of elements not returned yet.
+         */
+        private int remaining;
+        /**
+         * Represents the element last returned by next, or null if it was removed or next was never called.
+         */
+        private E lastReturned;
+
+        /**
+         * Constructs a SortedIterator over a copy of the nodes of the heap
+         *
+         * @param nodes the value of each node, or null for an inactive node
+         */
+        private SortedIterator(Object[] nodes) {
+            this.nodes = nodes;
+            for (Object value : nodes) {
+                if (value != null) remaining++;
+            }
+            if (nodes.length > 0 && nodes[0] != null) push(0);
+        }
 
         @Override
         public boolean hasNext() {
-            return peek() != null;
+            return frontierSize > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (frontierSize == 0) throw new NoSuchElementException();
+            int index = frontier[0];
+            int last = frontier[--frontierSize];
+            if (frontierSize > 0) siftDown(last);
+            int lastChild = Math.min(getChildIndex(index, arity - 1), nodes.length - 1);
+            for (int child = getChildIndex(index, 0); child <= lastChild; child++) {
+                if (nodes[child] != null) push(child);
+            }
+            remaining--;
+            lastReturned = (E) nodes[index];
+            return lastReturned;
+        }
+
+        /**
+         * Removes a single instance of the element last returned by next from the queue, as remove(Object) does.
+         *
+         * @throws IllegalStateException if next has not been called, or remove has already been called since
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            PipelinedPriorityQueue.this.remove(lastReturned);
+            lastReturned = null;
+        }
+
+        /**
+         * Adds the index of a node to the frontier
+         *
+         * @param index index of an active node
+         */
+        @SuppressWarnings("unchecked")
+        private void push(int index) {
+            if (frontierSize == frontier.length) frontier = Arrays.copyOf(frontier, frontierSize * 2);
+            int k = frontierSize++;
+            E value = (E) nodes[index];
+            while (k > 0) {
+                int parent = (k - 1) >>> 1;
+                if (!hasPriorityOver(value, (E) nodes[frontier[parent]])) break;
+                frontier[k] = frontier[parent];
+                k = parent;
+            }
+            frontier[k] = index;
+        }
+
+        /**
+         * Places the index of a node in the frontier, starting from its root, which has been removed
+         *
+         * @param index index of an active node
+         */
+        @SuppressWarnings("unchecked")
+        private void siftDown(int index) {
+            E value = (E) nodes[index];
+            int k = 0;
+            int half = frontierSize >>> 1;
+            while (k < half) {
+                int child = 2 * k + 1;
+                int right = child + 1;
+                if (right < frontierSize
+                        && hasPriorityOver((E) nodes[frontier[right]], (E) nodes[frontier[child]])) {
+                    child = right;
+                }
+                if (!hasPriorityOver((E) nodes[frontier[child]], value)) break;
+                frontier[k] = frontier[child];
+                k = child;
+            }
+            frontier[k] = index;
+        }
+    }
+
+    /**
+     * Best-effort iterator over the nodes of the heap, backed by a PipelinedSpliterator.
+     * Like the iterator of {@link PriorityQueue}, it keeps the values that its own removals move from nodes it
+     * has not read yet to nodes it has already read, and returns them once every node has been read.
+     */
+    private class PipelinedIterator implements Iterator<E> {
+
+        /**
+         * Represents the traversal of the nodes of the heap.
+         */
+        private final PipelinedSpliterator nodes = new PipelinedSpliterator(0, binaryArray.length());
+        /**
+         * Represents the values moved behind the nodes read so far by removals through this iterator.
+         */
+        private final ArrayDeque<E> forgetMeNot = new ArrayDeque<>();
+        /**
+         * Represents the element returned by the next call to next, or null if it has not been read yet.
+         */
+        private E next;
+        /**
+         * Represents the index of the node next was read from, or -1 if it was taken from forgetMeNot.
+         */
+        private int nextIndex;
+        /**
+         * Represents the element last returned by next, or null if it was removed or next was never called.
+         */
+        private E lastReturned;
+        /**
+         * Represents the index of the node lastReturned was read from, or -1 if it was taken from forgetMeNot.
+         */
+        private int lastIndex;
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            if (nodes.tryAdvance(e -> next = e)) {
+                nextIndex = nodes.lastIndex;
+            } else {
+                next = forgetMeNot.poll();
+                nextIndex = -1;
+            }
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            lastReturned = next;
+            lastIndex = nextIndex;
+            next = null;
+            return lastReturned;
+        }
+
+        /**
+         * Removes the element last returned by next from the queue. If it is still in the node it was read from,
+         * that node is removed, otherwise a single instance of the element is removed as remove(Object) does.
+         *
+         * @throws IllegalStateException if next has not been called, or remove has already been called since
+         */
+        @Override
+        public void remove() {
+            if (lastReturned == null) throw new IllegalStateException();
+            if (lastIndex < 0 || !removeIndexed(lastIndex, null, lastReturned, nodes.index, forgetMeNot)) {
+                PipelinedPriorityQueue.this.remove(lastReturned);
+            }
+            lastReturned = null;
+        }
+    }
+
+    /**
+     * Best-effort spliterator over a range of the nodes of the heap, which copies the values of up to
+     * TRAVERSAL_CHUNK nodes of a single level at a time while holding the lock of that level.
+     */
+    private class PipelinedSpliterator implements Spliterator<E> {
+
+        /**
+         * Represents the index of the next node to read.
+         */
+        private int index;
+        /**
+         * Represents the index after the last node covered by this spliterator.
+         */
+        private int fence;
+        /**
+         * Represents the values read from the last chunk of nodes, or null if no chunk was read yet.
+         */
+        private Object[] buffer;
+        /**
+         * Represents the number of values in buffer.
+         */
+        private int count;
+        /**
+         * Represents the indices of the nodes of the values in buffer.
+         */
+        private int[] indices;
+        /**
+         * Represents the position in buffer of the next value to return.
+         */
+        private int position;
+        /**
+         * Represents the index of the node of the value last returned.
+         */
+        private int lastIndex = -1;
+
+        /**
+         * Constructs a PipelinedSpliterator
+         *
+         * @param origin index of the first node covered
+         * @param fence  index after the last node covered
+         */
+        private PipelinedSpliterator(int origin, int fence) {
+            this.index = origin;
+            this.fence = fence;
+        }
+
+        /**
+         * Reads chunks of nodes until one holds a value or every node has been read.
+         *
+         * @return true if a value is available in buffer
+         */
+        private boolean fill() {
+            while (position == count) {
+                if (index >= fence) return false;
+                int levelEnd = BinaryTreeUtils.convertNumLevelsToSize(BinaryTreeUtils.findLevel(index, arity), arity);
+                int end = (int) Math.min(Math.min(fence, levelEnd), (long) index + TRAVERSAL_CHUNK);
+                if (buffer == null) {
+                    buffer = new Object[TRAVERSAL_CHUNK];
+                    indices = new int[TRAVERSAL_CHUNK];
+                }
+                count = readNodes(index, end, buffer, indices);
+                position = 0;
+                index = end;
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) throw new NullPointerException();
+            if (!fill()) return false;
+            E value = (E) buffer[position];
+            lastIndex = indices[position];
+            buffer[position++] = null;
+            action.accept(value);
+            return true;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            int remaining = fence - index;
+            if (remaining <= TRAVERSAL_CHUNK) return null;
+            int middle = index + remaining / 2;
+            Spliterator<E> suffix = new PipelinedSpliterator(middle, fence);
+            fence = middle;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) fence - index + count - position;
         }
 
         @Override
-        public T next() {
-            if (peek() == null) throw new NoSuchElementException();
-            return (T) poll();
+        public int characteristics() {
+            return Spliterator.CONCURRENT | Spliterator.NONNULL;
         }
     }
 }
@@ -0,0 +1,406 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pipelined heap shared by the priority queues specialised for primitive keys. It uses the same token-array
+ * pipelining as PipelinedPriorityQueue: this class holds the token array, the active flags and capacities of the
+ * nodes, and moves inserts and removals down the levels, while subclasses hold the keys in a primitive array and
+ * carry them through the levels in their own token elements, so no key is ever boxed. Keys are ordered by their
+ * natural (ascending) ordering, i.e. the smallest key is the head of the queue.
+ *
+ * @param <T> the type of token element carrying keys through the levels
+ */
+abstract class PrimitivePipelinedPriorityQueue<T extends PrimitiveTokenArrayElement> implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 61L;
+    /**
+     * Default number of elements in this queue.
+     */
+    static final int DEFAULT_CAPACITY_NUM_ELEMENTS = 11;
+    /**
+     * Represents the array of token elements used to help with the pipelining of operations in this queue.
+     * This array has a length equal to the number of levels in the binary tree used in the heap.
+     */
+    T[] tokenArray;
+    /**
+     * True at index i if the node at index i is a non-empty entry in the heap, false otherwise.
+     */
+    boolean[] active;
+    /**
+     * Represents the number of inactive nodes sub-rooted at each node of the heap.
+     */
+    private int[] capacities;
+    /**
+     * Represents the size of this priority queue i.e. number of active nodes in the heap
+     */
+    private AtomicInteger size;
+    /**
+     * Represents the height of the heap and is consequently equal to the length of tokenArray.
+     */
+    private int treeHeight;
+
+    /**
+     * Initialises all fields inside this queue
+     *
+     * @param capacity capacity of this queue
+     */
+    void init(int capacity) {
+        copyKeys(capacity);
+        this.capacities = new int[capacity];
+        this.active = new boolean[capacity];
+        this.size = new AtomicInteger(0);
+        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(capacity);
+        this.tokenArray = newTokenArray(treeHeight);
+        for (int i = 0; i < tokenArray.length; i++) {
+            tokenArray[i] = newToken();
+        }
+        updateCapacities(0);
+    }
+
+    /**
+     * Returns a new, unlocked token element for a level of the heap
+     * @return the token element
+     */
+    abstract T newToken();
+
+    /**
+     * Returns a new array of token elements
+     * @param length number of levels
+     * @return the array, holding no token elements yet
+     */
+    abstract T[] newTokenArray(int length);
+
+    /**
+     * Replaces the array of keys with a copy of the specified length, or allocates it if there is none yet
+     * @param capacity new length of the array of keys
+     */
+    abstract void copyKeys(int capacity);
+
+    /**
+     * Stores the key carried by a level in a node
+     * @param level    index of the level inside token array
+     * @param position index of the node in the heap
+     */
+    abstract void storeCarried(int level, int position);
+
+    /**
+     * Returns true if the key carried by a level is smaller than the key of a node
+     * @param level    index of the level inside token array
+     * @param position index of the node in the heap
+     * @return true if the carried key should take the place of the key of the node
+     */
+    abstract boolean carriedOutranks(int level, int position);
+
+    /**
+     * Exchanges the key carried by a level with the key of a node
+     * @param level    index of the level inside token array
+     * @param position index of the node in the heap
+     */
+    abstract void swapCarried(int level, int position);
+
+    /**
+     * Hands the key carried by a level to the level below it
+     * @param level index of the level inside token array
+     */
+    abstract void passCarried(int level);
+
+    /**
+     * Returns true if the key of a node is smaller than the key of another node
+     * @param a index of the first node in the heap
+     * @param b index of the second node in the heap
+     * @return true if the key of the first node is smaller
+     */
+    abstract boolean outranks(int a, int b);
+
+    /**
+     * Copies the key of a node to another node
+     * @param from index of the node to copy from
+     * @param to   index of the node to copy to
+     */
+    abstract void moveKey(int from, int to);
+
+    /**
+     * Locks the first two levels of the pipeline, as an insert does before it sets the key carried by the root.
+     */
+    final void lockTop() {
+        tokenArray[0].lock();
+        if (tokenArray.length > 1) tokenArray[1].lock();
+    }
+
+    /**
+     * Pipelines the key carried by the root down the heap until it finds an inactive node.
+     * The caller must hold the first two levels, which are released by this method.
+     */
+    final void enqueue() {
+        tokenArray[0].setPosition(0);
+
+        if (capacities[0] < 1) {
+            resize();
+        }
+
+        int level = 0;
+        while (level < tokenArray.length) {
+            boolean result = localEnqueue(level);
+            if (result) {
+                size.incrementAndGet();
+                if (level + 1 < tokenArray.length) tokenArray[level + 1].unlock();
+                tokenArray[level].unlock();
+                break;
+            }
+            tokenArray[level].unlock();
+            level++;
+            if (level + 1 < tokenArray.length) tokenArray[level + 1].lock();
+        }
+    }
+
+    /**
+     * Locks the first two levels of the pipeline if the heap is non-empty.
+     *
+     * @return true if the levels are now held by the current thread, false if the heap is empty
+     */
+    final boolean lockHead() {
+        lockTop();
+        if (!active[0]) {
+            if (tokenArray.length > 1) tokenArray[1].unlock();
+            tokenArray[0].unlock();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the root of the heap and pipelines the resulting hole down the tree.
+     * The caller must hold the first two levels, which are released by this method, and the root must be active.
+     */
+    final void dequeue() {
+        active[0] = false;
+        capacities[0]++;
+        tokenArray[0].setPosition(0);
+
+        int level = 0;
+        while (level < tokenArray.length) {
+            boolean result = localDequeue(level);
+            if (result) {
+                size.decrementAndGet();
+                tokenArray[level].unlock();
+                if (level + 1 < tokenArray.length) tokenArray[level + 1].unlock();
+                break;
+            }
+            tokenArray[level].unlock();
+            level++;
+            if (level + 1 < tokenArray.length) tokenArray[level + 1].lock();
+        }
+    }
+
+    /**
+     * Returns true if this queue contains no keys.
+     *
+     * @return true if this queue contains no keys
+     */
+    public boolean isEmpty() {
+        return (size.get() == 0);
+    }
+
+    /**
+     * Returns the number of keys in this queue.
+     *
+     * @return the number of keys in this queue
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Removes all of the keys from this queue.
+     * The queue will be empty after this method returns.
+     */
+    public void clear() {
+        T[] tokens = lockAllLevels();
+        Arrays.fill(active, false);
+        updateCapacities(0);
+        size.set(0);
+        unlockAllLevels(tokens);
+    }
+
+    /**
+     * Attemps to enqueue the key carried by the token array to the specified position inside that token element
+     * @param i index of the node inside token array
+     * @return true if local enqueue was successful, false otherwise
+     */
+    private boolean localEnqueue(int i) {
+        int position = tokenArray[i].getPosition();
+
+        if (!active[position]) {
+            storeCarried(i, position);
+            active[position] = true;
+            capacities[position]--;
+            return true;
+        } else if (carriedOutranks(i, position)) {
+            swapCarried(i, position);
+        }
+
+        capacities[position]--;
+        passCarried(i);
+
+        int left = getLeftIndex(position);
+        int right = getRightIndex(position);
+        if (left >= active.length && right >= active.length) {
+            return true;
+        }
+
+        int next;
+        if (left >= active.length) {
+            next = right;
+        } else if (right >= active.length) {
+            next = left;
+        } else if (!active[left]) {
+            next = left;
+        } else if (!active[right]) {
+            next = right;
+        } else if (capacities[left] > capacities[right]) {
+            next = left;
+        } else {
+            next = right;
+        }
+        tokenArray[i + 1].setPosition(next);
+
+        return false;
+    }
+
+    /**
+     * Attemps to dequeue a key from the token array to the specified position inside that token element
+     * @param i index of the node inside token array
+     * @return true if local dequeue was successful, false otherwise
+     */
+    private boolean localDequeue(int i) {
+        int current = tokenArray[i].getPosition();
+        int left = getLeftIndex(current);
+        int right = getRightIndex(current);
+        boolean leftActive = left < active.length && active[left];
+        boolean rightActive = right < active.length && active[right];
+
+        if (!leftActive && !rightActive) {
+            return true;
+        }
+
+        int greatestChild;
+        if (!leftActive) {
+            greatestChild = right;
+        } else if (!rightActive || outranks(left, right)) {
+            greatestChild = left;
+        } else {
+            greatestChild = right;
+        }
+
+        active[current] = true;
+        moveKey(greatestChild, current);
+        active[greatestChild] = false;
+        capacities[greatestChild]++;
+        tokenArray[i + 1].setPosition(greatestChild);
+        return false;
+    }
+
+    /**
+     * Returns the left child's index of a node given its index in the heap
+     * @param index index of the node in the heap
+     * @return its left child's index (which may be out of bounds of the heap)
+     */
+    private int getLeftIndex(int index) {
+        return index * 2 + 1;
+    }
+
+    /**
+     * Returns the right child's index of a node given its index in the heap
+     * @param index index of the node in the heap
+     * @return its right child's index (which may be out of bounds of the heap)
+     */
+    private int getRightIndex(int index) {
+        return index * 2 + 2;
+    }
+
+    /**
+     * Increases the capacity of the heap. If the current size of the heap is less than 64, then the
+     * capacity is doubled, otherwise it is grown by 50%. The caller must hold the first two levels.
+     */
+    private void resize() {
+        int tokenArrayLength = tokenArray.length;
+        for (int i = 2; i < tokenArrayLength; i++) {
+            tokenArray[i].lock();
+        }
+
+        int oldCapacity = active.length;
+        // Double size if small; else grow by 50%
+        int newCapacity = ((oldCapacity < 64) ?
+                ((oldCapacity + 1) * 2) :
+                ((oldCapacity / 2) * 3));
+        if (newCapacity < 0) // overflow
+            newCapacity = Integer.MAX_VALUE;
+
+        copyKeys(newCapacity);
+        capacities = Arrays.copyOf(capacities, newCapacity);
+        active = Arrays.copyOf(active, newCapacity);
+        updateCapacities(0);
+
+        this.treeHeight = BinaryTreeUtils.convertSizeToNumLevels(newCapacity);
+        T[] temp = Arrays.copyOf(tokenArray, treeHeight);
+        for (int i = tokenArrayLength; i < treeHeight; i++) {
+            temp[i] = newToken();
+        }
+        tokenArray = temp;
+        // the caller expects to hold the second level, which did not exist before growing
+        if (tokenArrayLength == 1) tokenArray[1].lock();
+
+        for (int i = 2; i < tokenArrayLength; i++) {
+            tokenArray[i].unlock();
+        }
+    }
+
+    /**
+     * Recursive post-order traversal to update the capacities of all the nodes inside the heap
+     * @param i index of the current node in the heap
+     */
+    private void updateCapacities(int i) {
+        if (i < 0 || i >= active.length) return;
+        int left = getLeftIndex(i);
+        int right = getRightIndex(i);
+        updateCapacities(left);
+        updateCapacities(right);
+
+        int capacity = active[i] ? 0 : 1;
+        if (left < active.length) capacity += capacities[left];
+        if (right < active.length) capacity += capacities[right];
+        capacities[i] = capacity;
+    }
+
+    /**
+     * Locks all nodes in the token array
+     *
+     * @return the token array whose levels are now held, to be passed to unlockAllLevels
+     */
+    final T[] lockAllLevels() {
+        // a resize in progress holds the root, so the token array can only be read once the root is held
+        tokenArray[0].lock();
+        T[] tokens = tokenArray;
+        for (int i = 1; i < tokens.length; i++) {
+            tokens[i].lock();
+        }
+        return tokens;
+    }
+
+    /**
+     * Unlocks all nodes of a token array locked by lockAllLevels
+     *
+     * @param tokens the token array returned by lockAllLevels
+     */
+    final void unlockAllLevels(T[] tokens) {
+        for (T tae : tokens) {
+            tae.unlock();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package threadsafepq;
+
+import java.io.Serializable;
+
+/**
+ * A single instance of PrimitiveTokenArrayElement represents a single level of the pipelined heap used in
+ * the queues specialised for primitive keys. It holds the position and the lock of the level, while
+ * subclasses hold the key carried through the level as a primitive, so that it is never boxed.
+ */
+public abstract class PrimitiveTokenArrayElement implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 62L;
+    /**
+     * Represents a position of a node in the binary tree.
+     */
+    private int position;
+    /**
+     * Represents the Lock associated with this PrimitiveTokenArrayElement used to control concurrent read/write access.
+     */
+    private final TokenArrayElement.TokenLock tokenLock;
+
+    /**
+     * Constructs a single instance of PrimitiveTokenArrayElement
+     *
+     * @param position  position of a node in the binary tree
+     * @param tokenLock TokenLock used to control concurrent access with this instance
+     */
+    protected PrimitiveTokenArrayElement(int position, TokenArrayElement.TokenLock tokenLock) {
+        this.position = position;
+        this.tokenLock = tokenLock;
+    }
+
+    /**
+     * Locks this PrimitiveTokenArrayElement.
+     */
+    public void lock() {
+        tokenLock.lock();
+    }
+
+    /**
+     * Unlocks this PrimitiveTokenArrayElement.
+     */
+    public void unlock() {
+        tokenLock.unlock();
+    }
+
+    /**
+     * Returns the position associated with this PrimitiveTokenArrayElement
+     * @return position associated with this PrimitiveTokenArrayElement
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Sets the position associated with this PrimitiveTokenArrayElement
+     * @param position new position to be associated with this PrimitiveTokenArrayElement
+     */
+    public void setPosition(int position) {
+        this.position = position;
+    }
+}
@@ -0,0 +1,216 @@
+package threadsafepq;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+import java.util.Arrays;
+
+/**
+ * A BinaryArray that keeps every level of the heap in its own segment of parallel arrays, so that growing
+ * the heap appends a segment for the new level instead of copying the existing nodes.
+ * <p>
+ * Instead of a capacity, every node stores the number of active nodes sub-rooted at it. The capacity is
+ * derived as the number of nodes in the subtree minus that count. Appending a level of inactive nodes
+ * leaves every count unchanged, so the capacities of the existing nodes are correct without being recomputed.
+ * Segments are shared between a SegmentedBinaryArray and the copies grown from it.
+ *
+ * @param <E> the type of values stored in the heap
+ */
+public class SegmentedBinaryArray<E> implements BinaryArray<E> {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 55L;
+    /**
+     * Represents the maximum number of children of each node.
+     */
+    private final int arity;
+    /**
+     * Represents the index of the first node of each level, followed by the total number of nodes.
+     */
+    private final int[] levelStarts;
+    /**
+     * Represents the number of nodes in the subtree of any node of each level.
+     */
+    private final int[] subtreeSizes;
+    /**
+     * Represents the values of the nodes, one segment per level.
+     */
+    private final Object[][] values;
+    /**
+     * Represents the number of active nodes sub-rooted at each node, one segment per level.
+     */
+    private final int[][] activeCounts;
+    /**
+     * Represents the active flag of each node, one segment per level.
+     */
+    private final boolean[][] active;
+
+    /**
+     * Constructs a SegmentedBinaryArray of inactive nodes holding every level needed for the given
+     * number of nodes. The last level is always complete, so the length may exceed the given one.
+     *
+     * @param length number of nodes
+     * @param arity  maximum number of children of each node
+     * @throws IllegalArgumentException if arity is less than 2
+     */
+    public SegmentedBinaryArray(int length, int arity) {
+        this(arity, new Object[0][], new int[0][], new boolean[0][],
+                Math.max(BinaryTreeUtils.convertSizeToNumLevels(length, arity), 1));
+    }
+
+    /**
+     * Constructs a SegmentedBinaryArray sharing the given segments and appending new ones up to the given
+     * number of levels
+     *
+     * @param arity        maximum number of children of each node
+     * @param values       existing value segments
+     * @param activeCounts existing active count segments
+     * @param active       existing active flag segments
+     * @param levels       number of levels of the new SegmentedBinaryArray
+     */
+    private SegmentedBinaryArray(int arity, Object[][] values, int[][] activeCounts, boolean[][] active,
+                                 int levels) {
+        if (arity < 2) throw new IllegalArgumentException("Arity must be at least 2");
+        this.arity = arity;
+        this.levelStarts = new int[levels + 1];
+        this.subtreeSizes = new int[levels];
+        this.values = Arrays.copyOf(values, levels);
+        this.activeCounts = Arrays.copyOf(activeCounts, levels);
+        this.active = Arrays.copyOf(active, levels);
+
+        for (int level = 0; level < levels; level++) {
+            levelStarts[level + 1] = BinaryTreeUtils.convertNumLevelsToSize(level + 1, arity);
+            subtreeSizes[level] = BinaryTreeUtils.convertNumLevelsToSize(levels - level, arity);
+        }
+        for (int level = values.length; level < levels; level++) {
+            int segmentLength = levelStarts[level + 1] - levelStarts[level];
+            this.values[level] = new Object[segmentLength];
+            this.activeCounts[level] = new int[segmentLength];
+            this.active[level] = new boolean[segmentLength];
+        }
+    }
+
+    /**
+     * Returns the level of the node at the given index
+     * @param i index of the node
+     * @return zero-based level of the node
+     */
+    private int levelOf(int i) {
+        if (arity == 2) return 31 - Integer.numberOfLeadingZeros(i + 1);
+        int level = 0;
+        while (levelStarts[level + 1] <= i) level++;
+        return level;
+    }
+
+    @Override
+    public int length() {
+        return levelStarts[levelStarts.length - 1];
+    }
+
+    @Override
+    public boolean isActive(int i) {
+        int level = levelOf(i);
+        return active[level][i - levelStarts[level]];
+    }
+
+    @Override
+    public void setActive(int i, boolean active) {
+        int level = levelOf(i);
+        this.active[level][i - levelStarts[level]] = active;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E getValue(int i) {
+        int level = levelOf(i);
+        return (E) values[level][i - levelStarts[level]];
+    }
+
+    @Override
+    public void setValue(int i, E value) {
+        int level = levelOf(i);
+        values[level][i - levelStarts[level]] = value;
+    }
+
+    @Override
+    public int getCapacity(int i) {
+        int level = levelOf(i);
+        return subtreeSizes[level] - activeCounts[level][i - levelStarts[level]];
+    }
+
+    @Override
+    public void setCapacity(int i, int capacity) {
+        int level = levelOf(i);
+        activeCounts[level][i - levelStarts[level]] = subtreeSizes[level] - capacity;
+    }
+
+    @Override
+    public void incrementCapacity(int i) {
+        int level = levelOf(i);
+        activeCounts[level][i - levelStarts[level]]--;
+    }
+
+    @Override
+    public void decrementCapacity(int i) {
+        int level = levelOf(i);
+        activeCounts[level][i - levelStarts[level]]++;
+    }
+
+    @Override
+    public void clear() {
+        for (int level = 0; level < values.length; level++) {
+            Arrays.fill(values[level], null);
+            Arrays.fill(active[level], false);
+        }
+    }
+
+    /**
+     * Returns a new SegmentedBinaryArray holding every level needed for the given number of nodes.
+     * The segments of the existing levels are shared rather than copied, and the capacities of their nodes
+     * account for the appended levels.
+     * @param newLength length of the new BinaryArray, at least the length of this BinaryArray
+     * @return a new SegmentedBinaryArray sharing the levels of this one
+     */
+    @Override
+    public BinaryArray<E> copyOf(int newLength) {
+        int levels = Math.max(BinaryTreeUtils.convertSizeToNumLevels(newLength, arity), values.length);
+        return new SegmentedBinaryArray<>(arity, values, activeCounts, active, levels);
+    }
+
+    @Override
+    public BinaryArray<E> newEmpty(int length) {
+        return new SegmentedBinaryArray<>(length, arity);
+    }
+
+    @Override
+    public boolean isSegmented() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SegmentedBinaryArray<?> that = (SegmentedBinaryArray<?>) o;
+        return new EqualsBuilder()
+                .append(arity, that.arity)
+                .append(values, that.values)
+                .append(activeCounts, that.activeCounts)
+                .append(active, that.active)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(arity)
+                .append(values)
+                .append(activeCounts)
+                .append(active)
+                .toHashCode();
+    }
+}
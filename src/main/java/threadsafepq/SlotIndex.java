@@ -0,0 +1,295 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * An index from each element of a pipelined heap to the nodes holding it, so that an element can be found
+ * without scanning the heap. Every node holding an element is recorded in a Slot of its own, and equal elements
+ * share an entry listing all of their Slots.
+ * <p>
+ * The index is updated by the thread holding the level of a node whenever a value is written to or moved out
+ * of it, but entries of different levels are updated independently. A value displaced down the heap by an
+ * insert keeps the node it left until it lands, so an entry may briefly point to a node now holding another
+ * value: the index is a hint, and a node must be checked once its level is locked.
+ * <p>
+ * A Slot follows its element as it moves between nodes with a compare-and-set, without allocating, so a
+ * {@link Handle} holding the Slot of its element finds the node of that element rather than any equal one. The
+ * only exception is a value displaced by an insert of an equal element, whose Slot may be exchanged with the
+ * Slot of that element when it lands. Entries are only replaced through the map when a Slot joins or leaves them.
+ *
+ * @param <E> the type of elements indexed
+ */
+public class SlotIndex<E> implements Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 58L;
+    /**
+     * Marks a Slot whose element was removed from the heap, or has not been placed yet. A Slot retired after its
+     * element was placed never changes again.
+     */
+    static final int RETIRED = -1;
+    /**
+     * Marks a Slot that was dropped when the index was cleared, as the heap was rebuilt or emptied.
+     * A dropped Slot never changes again.
+     */
+    static final int DROPPED = -2;
+    /**
+     * Used to move a Slot with a compare-and-set.
+     */
+    private static final AtomicIntegerFieldUpdater<Slot> INDEX =
+            AtomicIntegerFieldUpdater.newUpdater(Slot.class, "index");
+    /**
+     * Represents an empty list of Slots.
+     */
+    private static final Slot[] NO_SLOTS = new Slot[0];
+    /**
+     * Represents the nodes holding each element: a Slot if the element is held in a single node, or otherwise an
+     * array of Slots that is never modified once published. An array may still list Slots that have retired.
+     */
+    private final ConcurrentHashMap<Object, Object> slots = new ConcurrentHashMap<>();
+
+    /**
+     * Records that a node holds the given element in a new Slot
+     *
+     * @param e     the element
+     * @param index index of the node in the binary array
+     * @return the Slot recording the node
+     */
+    public Slot add(E e, int index) {
+        return add(e, index, null);
+    }
+
+    /**
+     * Records that a node holds the given element in the given Slot, which must not be recorded for another node
+     *
+     * @param e     the element
+     * @param index index of the node in the binary array
+     * @param slot  the Slot to record the node in, or null to use a new one
+     * @return the Slot recording the node
+     */
+    Slot add(E e, int index, Slot slot) {
+        Slot added = slot == null ? new Slot(index) : slot;
+        added.index = index;
+        if (slots.putIfAbsent(e, added) == null) return added;
+        slots.compute(e, (key, current) -> pack(append(live(current), added)));
+        return added;
+    }
+
+    /**
+     * Records that a node no longer holds the given element, retiring its Slot. Does nothing if the node was not
+     * recorded.
+     *
+     * @param e     the element
+     * @param index index of the node in the binary array
+     */
+    public void remove(E e, int index) {
+        Object current = slots.get(e);
+        Slot slot = find(current, index);
+        if (slot == null || !INDEX.compareAndSet(slot, index, RETIRED)) return;
+        if (current == slot && slots.remove(e, slot)) return;
+        slots.computeIfPresent(e, (key, value) -> pack(live(value)));
+    }
+
+    /**
+     * Takes the Slot recording a node out of the entry of the given element without retiring it, so that it can
+     * be added again for the element replacing it in the node.
+     *
+     * @param e     the element
+     * @param index index of the node in the binary array
+     * @return the Slot that recorded the node, or null if the node was not recorded
+     */
+    Slot detach(E e, int index) {
+        Object current = slots.get(e);
+        Slot slot = find(current, index);
+        if (slot == null) return null;
+        if (current == slot && slots.remove(e, slot)) return slot;
+        slots.computeIfPresent(e, (key, value) -> pack(without(live(value), slot)));
+        return slot;
+    }
+
+    /**
+     * Records that the given element moved from one node to another, or was added to a node if from is negative.
+     *
+     * @param e    the element
+     * @param from index of the node the element left, or -1 if it was not in the heap
+     * @param to   index of the node now holding the element
+     */
+    public void move(E e, int from, int to) {
+        if (from == to) return;
+        if (from >= 0) {
+            Slot slot = find(slots.get(e), from);
+            if (slot != null && INDEX.compareAndSet(slot, from, to)) return;
+        }
+        add(e, to, null);
+    }
+
+    /**
+     * Returns the indices of the nodes recorded as holding an element equal to the given object
+     *
+     * @param o the object to look up
+     * @return the indices of the nodes, or null if there are none
+     */
+    public int[] slotsOf(Object o) {
+        if (o == null) return null;
+        Object current = slots.get(o);
+        if (current == null) return null;
+        if (current instanceof Slot) {
+            int index = ((Slot) current).index;
+            return index < 0 ? null : new int[]{ index };
+        }
+        Slot[] list = (Slot[]) current;
+        int[] indices = new int[list.length];
+        int count = 0;
+        for (Slot slot : list) {
+            int index = slot.index;
+            if (index >= 0) indices[count++] = index;
+        }
+        if (count == 0) return null;
+        return count == indices.length ? indices : Arrays.copyOf(indices, count);
+    }
+
+    /**
+     * Returns true if an element equal to the given object is recorded in a node
+     *
+     * @param o the object to look up
+     * @return true if the object is indexed
+     */
+    public boolean contains(Object o) {
+        return slotsOf(o) != null;
+    }
+
+    /**
+     * Removes every entry of this index, dropping their Slots. Must be called while the heap is quiescent.
+     */
+    public void clear() {
+        for (Object value : slots.values()) {
+            for (Slot slot : live(value)) {
+                slot.index = DROPPED;
+            }
+        }
+        slots.clear();
+    }
+
+    /**
+     * Returns the Slot recording the given node in a value of the map
+     *
+     * @param value the value of the map, or null
+     * @param index index of the node in the binary array
+     * @return the Slot, or null if the node is not recorded
+     */
+    private static Slot find(Object value, int index) {
+        if (value instanceof Slot) return ((Slot) value).index == index ? (Slot) value : null;
+        if (value == null) return null;
+        for (Slot slot : (Slot[]) value) {
+            if (slot.index == index) return slot;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the Slots of a value of the map that have not retired
+     *
+     * @param value the value of the map, or null
+     * @return the Slots, which must not be modified
+     */
+    private static Slot[] live(Object value) {
+        if (value == null) return NO_SLOTS;
+        if (value instanceof Slot) return ((Slot) value).index < 0 ? NO_SLOTS : new Slot[]{ (Slot) value };
+        Slot[] list = (Slot[]) value;
+        int count = 0;
+        for (Slot slot : list) {
+            if (slot.index >= 0) count++;
+        }
+        if (count == list.length) return list;
+        Slot[] result = new Slot[count];
+        count = 0;
+        for (Slot slot : list) {
+            if (slot.index >= 0) result[count++] = slot;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value of the map holding the given Slots
+     *
+     * @param list the Slots
+     * @return the Slot itself if there is one, the Slots if there are several, or null if there are none
+     */
+    private static Object pack(Slot[] list) {
+        if (list.length == 0) return null;
+        return list.length == 1 ? list[0] : list;
+    }
+
+    /**
+     * Returns a copy of the given Slots with a Slot appended
+     *
+     * @param list the Slots
+     * @param slot the Slot to append
+     * @return the new Slots
+     */
+    private static Slot[] append(Slot[] list, Slot slot) {
+        Slot[] result = Arrays.copyOf(list, list.length + 1);
+        result[list.length] = slot;
+        return result;
+    }
+
+    /**
+     * Returns a copy of the given Slots without a Slot
+     *
+     * @param list the Slots
+     * @param slot the Slot to leave out
+     * @return the new Slots
+     */
+    private static Slot[] without(Slot[] list, Slot slot) {
+        Slot[] result = new Slot[list.length];
+        int count = 0;
+        for (Slot other : list) {
+            if (other != slot) result[count++] = other;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public String toString() {
+        return "SlotIndex{" +
+                "elements=" + slots.size() +
+                '}';
+    }
+
+    /**
+     * The node holding one instance of an element, shared with the handle of that instance if it has one.
+     */
+    static final class Slot implements Serializable {
+
+        /**
+         * Used to uniquely serialize an instance of this class.
+         */
+        private static final long serialVersionUID = 60L;
+        /**
+         * Represents the index of the node in the binary array, RETIRED or DROPPED.
+         */
+        volatile int index;
+
+        /**
+         * Constructs a Slot
+         *
+         * @param index index of the node in the binary array, or RETIRED for an element not placed yet
+         */
+        Slot(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Returns the index of the node holding the element of this Slot
+         * @return the index of the node, RETIRED if the element was removed, or DROPPED if the heap was rebuilt
+         */
+        int getIndex() {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reentrant, non-fair Lock guarding the token of a single level of the pipelined heap.
+ * Ownership is claimed with a compare-and-set on a single state word. A thread that finds the token
+ * taken spins for a bounded number of attempts, since the hold time per level is tiny, and only then
+ * parks itself until the owner hands the token back.
+ * <p>
+ * The number of attempts adapts to the contention seen on this token, up to the configured maximum: it follows
+ * the attempts that recent waiters needed before claiming the token, and decays while waiters end up parking anyway,
+ * so threads stop burning CPU on a token that is held for longer or by more threads than spinning can cover.
+ * <p>
+ * Releasing the token wakes the longest parked thread. A thread that gives up waiting, as its timeout elapsed or
+ * it was interrupted, may have been the one woken, so it passes the wakeup on to the next parked thread if the
+ * token is free when it leaves.
+ */
+public class SpinParkTokenLock implements Lock, Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 51L;
+    /**
+     * Default number of attempts to claim the token before parking.
+     */
+    static final int DEFAULT_SPINS = 128;
+    /**
+     * Value of the state word when the token is free.
+     */
+    private static final int FREE = 0;
+    /**
+     * Value of the state word when the token is claimed.
+     */
+    private static final int CLAIMED = 1;
+    /**
+     * Represents the state word of this token: FREE or CLAIMED.
+     */
+    private final AtomicInteger state = new AtomicInteger(FREE);
+    /**
+     * Represents the threads parked while waiting for this token.
+     */
+    private final transient ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    /**
+     * Minimum number of attempts to claim the token before parking, unless spinning is disabled.
+     */
+    private static final int MIN_SPINS = 4;
+    /**
+     * Weight of the newest sample in the moving average of expectedSpins, as a shift.
+     */
+    private static final int AVERAGE_SHIFT = 3;
+    /**
+     * Represents the maximum number of attempts to claim the token before parking.
+     */
+    private final int spins;
+    /**
+     * Represents the moving average of the attempts needed to claim this token by spinning. This is only a hint,
+     * so racy updates by waiting threads are tolerated.
+     */
+    private int expectedSpins;
+    /**
+     * Represents the thread currently owning this token. Only written by the owner.
+     */
+    private transient Thread owner;
+    /**
+     * Represents the number of times the owner has acquired this token without releasing it.
+     */
+    private int holds;
+
+    /**
+     * Constructs a SpinParkTokenLock spinning up to the default number of times before parking
+     */
+    public SpinParkTokenLock() {
+        this(DEFAULT_SPINS);
+    }
+
+    /**
+     * Constructs a SpinParkTokenLock
+     *
+     * @param spins maximum number of attempts to claim the token before parking, 0 to park straight away
+     * @throws IllegalArgumentException if spins is negative
+     */
+    public SpinParkTokenLock(int spins) {
+        if (spins < 0) throw new IllegalArgumentException("Spins cannot be negative");
+        this.spins = spins;
+    }
+
+    @Override
+    public void lock() {
+        if (tryLock()) return;
+        int expected = expectedSpins;
+        int limit = Math.min(spins, 2 * expected + MIN_SPINS);
+        for (int i = 0; i < limit; i++) {
+            if (tryClaim()) {
+                expectedSpins = expected + ((i - expected) >> AVERAGE_SHIFT);
+                return;
+            }
+        }
+        expectedSpins = expected - (expected >> AVERAGE_SHIFT) - (expected > 0 ? 1 : 0);
+
+        boolean interrupted = false;
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        while (!tryClaim()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) interrupted = true;
+        }
+        waiters.remove(current);
+        if (interrupted) current.interrupt();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (!tryLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) throw new InterruptedException();
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (owner == Thread.currentThread()) {
+            holds++;
+            return true;
+        }
+        return tryClaim();
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (tryLock()) return true;
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        boolean claimed = false;
+        try {
+            while (!(claimed = tryClaim())) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return true;
+        } finally {
+            waiters.remove(current);
+            // the wakeup of an unlock may have gone to this thread, so it is passed on once this thread has left
+            if (!claimed && state.get() == FREE) unparkNext();
+        }
+    }
+
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread()) throw new IllegalMonitorStateException();
+        if (--holds > 0) return;
+        owner = null;
+        state.set(FREE);
+        unparkNext();
+    }
+
+    /**
+     * Throws an UnsupportedOperationException as token locks are never waited on.
+     *
+     * @throws UnsupportedOperationException every time because this class does not support this operation
+     */
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the thread currently owning this token, or null if it is free
+     * @return the thread currently owning this token
+     */
+    public Thread getOwner() {
+        return state.get() == CLAIMED ? owner : null;
+    }
+
+    /**
+     * Wakes the longest parked thread waiting for this token, if there is one.
+     */
+    private void unparkNext() {
+        Thread next = waiters.peek();
+        if (next != null) LockSupport.unpark(next);
+    }
+
+    /**
+     * Attempts a single compare-and-set of the state word, taking ownership on success.
+     *
+     * @return true if the token was claimed by the current thread
+     */
+    private boolean tryClaim() {
+        if (state.get() == FREE && state.compareAndSet(FREE, CLAIMED)) {
+            owner = Thread.currentThread();
+            holds = 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a deserialized instance with a free token, as waiting threads are never serialized.
+     *
+     * @return a free SpinParkTokenLock with the same number of spins
+     */
+    private Object readResolve() {
+        return new SpinParkTokenLock(spins);
+    }
+
+    @Override
+    public String toString() {
+        return "SpinParkTokenLock{" +
+                "owner=" + getOwner() +
+                ", spins=" + spins +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package threadsafepq;
+
+import java.util.Comparator;
+
+/**
+ * Selects how the nodes of the heap of a PipelinedPriorityQueue are laid out in memory.
+ */
+public enum StorageMode {
+
+    /**
+     * Every node is a separate BinaryArrayElement object.
+     */
+    ELEMENTS {
+        @Override
+        public <E> BinaryArray<E> create(int length, Comparator<? super E> comparator) {
+            return new ElementBinaryArray<>(length, comparator);
+        }
+    },
+
+    /**
+     * Values, capacities and active flags of all nodes live in parallel arrays.
+     */
+    PARALLEL_ARRAYS {
+        @Override
+        public <E> BinaryArray<E> create(int length, Comparator<? super E> comparator) {
+            return new ParallelBinaryArray<>(length);
+        }
+    },
+
+    /**
+     * Every level of the heap is a separate segment of parallel arrays, so growing the heap appends a level
+     * without copying or revisiting the existing nodes.
+     */
+    SEGMENTED {
+        @Override
+        public <E> BinaryArray<E> create(int length, Comparator<? super E> comparator) {
+            return create(length, comparator, 2);
+        }
+
+        @Override
+        public <E> BinaryArray<E> create(int length, Comparator<? super E> comparator, int arity) {
+            return new SegmentedBinaryArray<>(length, arity);
+        }
+    };
+
+    /**
+     * Creates a BinaryArray of inactive nodes using this storage mode
+     *
+     * @param length     number of nodes
+     * @param comparator comparator used to order the queue, may be null
+     * @param <E>        the type of values stored in the heap
+     * @return a new BinaryArray
+     */
+    public abstract <E> BinaryArray<E> create(int length, Comparator<? super E> comparator);
+
+    /**
+     * Creates a BinaryArray of inactive nodes using this storage mode for a heap of the given arity
+     *
+     * @param length     number of nodes
+     * @param comparator comparator used to order the queue, may be null
+     * @param arity      maximum number of children of each node
+     * @param <E>        the type of values stored in the heap
+     * @return a new BinaryArray
+     */
+    public <E> BinaryArray<E> create(int length, Comparator<? super E> comparator, int arity) {
+        return create(length, comparator);
+    }
+}
@@ -0,0 +1,190 @@
+package threadsafepq;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reentrant ticket Lock guarding the token of a single level of the pipelined heap.
+ * A thread takes the next ticket and waits until the ticket being served reaches it, so the token is granted
+ * in arrival order like a fair ReentrantLock, but with a single atomic increment and no queue of nodes.
+ * <p>
+ * A waiting thread spins while it is close to the head of the line, then yields, and parks once many threads
+ * are ahead of it, since a ticket can only be served to the thread holding it and a waiter that keeps a processor
+ * busy may be delaying the owner. Parked threads are recorded by ticket, so that each release unparks the thread
+ * that has just come close enough to the head of the line to spin.
+ * A ticket cannot be abandoned, so timed and interruptible acquisitions only claim the token when no thread
+ * is waiting for it.
+ */
+public class TicketTokenLock implements Lock, Serializable {
+
+    /**
+     * Used to uniquely serialize an instance of this class.
+     */
+    private static final long serialVersionUID = 57L;
+    /**
+     * Number of attempts per thread ahead in line after which a waiting thread starts yielding.
+     */
+    private static final int SPINS_PER_WAITER = 64;
+    /**
+     * Number of threads ahead in line from which a waiting thread parks instead of yielding.
+     */
+    private static final int PARK_DISTANCE = 2;
+    /**
+     * Longest time a parked thread waits before checking its place in line again, in case its slot was shared
+     * with another ticket and it was not unparked, in nanoseconds.
+     */
+    private static final long PARK_NANOS = 1_000_000;
+    /**
+     * Number of slots used to record parked threads by ticket, a power of two.
+     */
+    private static final int PARKED_SLOTS = 256;
+    /**
+     * Represents the next ticket to be handed out.
+     */
+    private final AtomicInteger nextTicket = new AtomicInteger();
+    /**
+     * Represents the ticket currently allowed to own this token.
+     */
+    private volatile int nowServing;
+    /**
+     * Represents the threads parked while waiting for this token, each in the slot of its ticket.
+     */
+    private final transient AtomicReferenceArray<Thread> parked = new AtomicReferenceArray<>(PARKED_SLOTS);
+    /**
+     * Represents the thread currently owning this token. Only written by the owner.
+     */
+    private transient volatile Thread owner;
+    /**
+     * Represents the number of times the owner has acquired this token without releasing it.
+     */
+    private int holds;
+
+    @Override
+    public void lock() {
+        if (owner == Thread.currentThread()) {
+            holds++;
+            return;
+        }
+        Thread current = Thread.currentThread();
+        int ticket = nextTicket.getAndIncrement();
+        int slot = ticket & (PARKED_SLOTS - 1);
+        int spins = 0;
+        int distance;
+        while ((distance = ticket - nowServing) != 0) {
+            if (distance >= PARK_DISTANCE) {
+                parked.set(slot, current);
+                // the release that brings this ticket close may have happened before it was recorded
+                if (ticket - nowServing >= PARK_DISTANCE) LockSupport.parkNanos(this, PARK_NANOS);
+                parked.compareAndSet(slot, current, null);
+            } else if (++spins > SPINS_PER_WAITER * distance) {
+                Thread.yield();
+            }
+        }
+        owner = current;
+        holds = 1;
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (!tryLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) throw new InterruptedException();
+    }
+
+    @Override
+    public boolean tryLock() {
+        if (owner == Thread.currentThread()) {
+            holds++;
+            return true;
+        }
+        int serving = nowServing;
+        if (nextTicket.get() == serving && nextTicket.compareAndSet(serving, serving + 1)) {
+            owner = Thread.currentThread();
+            holds = 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Claims the token if it becomes free with no thread waiting for it within the given waiting time.
+     * The token is polled rather than waited on in line, as a ticket cannot be given up when the time elapses.
+     *
+     * @param time the maximum time to wait for the token
+     * @param unit the time unit of the time argument
+     * @return true if the token was claimed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        if (tryLock()) return true;
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        while (!tryLock()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            LockSupport.parkNanos(this, Math.min(remaining, PARK_NANOS));
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (owner != Thread.currentThread()) throw new IllegalMonitorStateException();
+        if (--holds > 0) return;
+        owner = null;
+        int serving = nowServing + 1;
+        nowServing = serving;
+        Thread next = parked.get((serving + PARK_DISTANCE - 1) & (PARKED_SLOTS - 1));
+        if (next != null) LockSupport.unpark(next);
+    }
+
+    /**
+     * Throws an UnsupportedOperationException as token locks are never waited on.
+     *
+     * @throws UnsupportedOperationException every time because this class does not support this operation
+     */
+    @Override
+    public Condition newCondition() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the thread currently owning this token, or null if it is free
+     * @return the thread currently owning this token
+     */
+    public Thread getOwner() {
+        return owner;
+    }
+
+    /**
+     * Returns the number of threads holding a ticket for this token that are not yet served. This is an estimate,
+     * as threads may take tickets or be served while it is computed.
+     * @return the number of threads waiting for this token
+     */
+    public int getQueueLength() {
+        int tickets = nextTicket.get() - nowServing;
+        return owner == null ? tickets : tickets - 1;
+    }
+
+    /**
+     * Replaces a deserialized instance with a free token, as waiting threads are never serialized.
+     *
+     * @return a free TicketTokenLock
+     */
+    private Object readResolve() {
+        return new TicketTokenLock();
+    }
+
+    @Override
+    public String toString() {
+        return "TicketTokenLock{" +
+                "owner=" + getOwner() +
+                ", queueLength=" + getQueueLength() +
+                '}';
+    }
+}
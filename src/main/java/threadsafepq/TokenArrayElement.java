@@ -5,6 +5,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import java.io.Serializable;
 import java.util.Comparator;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -25,6 +26,14 @@ public class TokenArrayElement<E> implements Serializable {
      * Represents a position of a node in the binary tree.
      */
     private int position;
+    /**
+     * Represents the position of the node the value was displaced from, or -1 if the value is a new element.
+     */
+    private int origin = -1;
+    /**
+     * Represents the slot a new element is recorded in once it is placed, or null to record it in a new slot.
+     */
+    private SlotIndex.Slot slot;
     /**
      * Represents the user-defined comparator passed in the construction of the queue.
      * This is used to determine the relative priorities of different nodes.
@@ -33,7 +42,7 @@ public class TokenArrayElement<E> implements Serializable {
     /**
      * Represents the Lock associated with this TokenArrayElement used to control concurrent read/write access.
      */
-    private final TokenLock tokenLock;
+    private final Lock tokenLock;
 
     /**
      * Constructs a single instance of TokenArrayElement<E>
@@ -41,12 +50,12 @@ public class TokenArrayElement<E> implements Serializable {
      * @param value      nullable value representing the node
      * @param position   position of a node in the binary tree
      * @param comparator comparator used to determine the relative priorities of different nodes
-     * @param tokenLock  TokenLock used to control concurrent access with this instance
+     * @param tokenLock  Lock used to control concurrent access with this instance
      */
     public TokenArrayElement(E value,
                              int position,
                              Comparator<? super E> comparator,
-                             TokenLock tokenLock) {
+                             Lock tokenLock) {
         this.value = value;
         this.position = position;
         this.comparator = comparator;
@@ -60,6 +69,14 @@ public class TokenArrayElement<E> implements Serializable {
         tokenLock.lock();
     }
 
+    /**
+     * Locks this TokenArrayElement only if it is free at the time of invocation.
+     * @return true if the lock was acquired
+     */
+    public boolean tryLock() {
+        return tokenLock.tryLock();
+    }
+
     /**
      * Unlocks this TokenArrayElement.
      */
@@ -68,10 +85,10 @@ public class TokenArrayElement<E> implements Serializable {
     }
 
     /**
-     * Returns the TokenLock associated with this TokenArrayElement
-     * @return TokenLock associated with this TokenArrayElement
+     * Returns the Lock associated with this TokenArrayElement
+     * @return Lock associated with this TokenArrayElement
      */
-    public TokenLock getLock() {
+    public Lock getLock() {
         return tokenLock;
     }
 
@@ -107,6 +124,38 @@ public class TokenArrayElement<E> implements Serializable {
         this.position = position;
     }
 
+    /**
+     * Returns the position of the node the value of this TokenArrayElement was displaced from
+     * @return position of the node the value was displaced from, or -1 if the value is a new element
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Sets the position of the node the value of this TokenArrayElement was displaced from
+     * @param origin position of the node the value was displaced from, or -1 if the value is a new element
+     */
+    public void setOrigin(int origin) {
+        this.origin = origin;
+    }
+
+    /**
+     * Returns the slot the value of this TokenArrayElement is recorded in once it is placed, if it is a new element
+     * @return the slot of the new element, or null to record it in a new slot
+     */
+    SlotIndex.Slot getSlot() {
+        return slot;
+    }
+
+    /**
+     * Sets the slot the value of this TokenArrayElement is recorded in once it is placed, if it is a new element
+     * @param slot the slot of the new element, or null to record it in a new slot
+     */
+    void setSlot(SlotIndex.Slot slot) {
+        this.slot = slot;
+    }
+
     /**
      * Returns true if the value in this BinaryArrayElement is greater than the argument value.
      * This implementation will use natural ordering to determine the relativity in priorities between
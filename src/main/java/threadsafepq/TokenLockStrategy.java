@@ -0,0 +1,71 @@
+package threadsafepq;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Selects the Lock guarding each level (TokenArrayElement) of the pipeline of a PipelinedPriorityQueue.
+ */
+public enum TokenLockStrategy {
+
+    /**
+     * A fair ReentrantLock per level. Waiting threads are granted the token in arrival order.
+     */
+    FAIR {
+        @Override
+        public Lock newLock() {
+            return new TokenArrayElement.TokenLock(true);
+        }
+    },
+
+    /**
+     * A non-fair ReentrantLock per level. A thread arriving while the token is free claims it even if others
+     * are queued, which avoids handing the token to a parked thread on every release.
+     */
+    UNFAIR {
+        @Override
+        public Lock newLock() {
+            return new TokenArrayElement.TokenLock(false);
+        }
+    },
+
+    /**
+     * A SpinParkTokenLock per level. The token is claimed with a compare-and-set on a state word,
+     * and waiting threads spin for an adaptive number of attempts before parking.
+     */
+    SPIN_THEN_PARK {
+        @Override
+        public Lock newLock() {
+            return new SpinParkTokenLock();
+        }
+    },
+
+    /**
+     * A SpinParkTokenLock per level that parks as soon as the token is taken, without spinning. Parking releases
+     * the carrier of a virtual thread, while spinning keeps it busy, so this suits queues whose producers and
+     * consumers are virtual threads that outnumber the carriers.
+     */
+    PARK {
+        @Override
+        public Lock newLock() {
+            return new SpinParkTokenLock(0);
+        }
+    },
+
+    /**
+     * A TicketTokenLock per level. Waiting threads are granted the token in arrival order, and wait by spinning
+     * close to the head of the line and by yielding or parking further back.
+     */
+    TICKET {
+        @Override
+        public Lock newLock() {
+            return new TicketTokenLock();
+        }
+    };
+
+    /**
+     * Creates the Lock for a single level of the pipeline
+     *
+     * @return a new, unlocked Lock
+     */
+    public abstract Lock newLock();
+}
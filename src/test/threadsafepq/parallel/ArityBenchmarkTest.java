@@ -0,0 +1,93 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+
+/**
+ * Benchmark test used to sweep the arity of the heap of PipelinedPriorityQueue
+ * across thread counts and input sizes
+ */
+
+@Ignore
+public class ArityBenchmarkTest {
+    private int[] arities = new int[]{ 2, 4, 8};
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 4096, 32768, 262144, 1048576};
+
+    @Test
+    public void Put_threadsRandom_AritySweep() {
+        for (int arity : arities) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    long time = runThreads(numThreads, newQueue(arity, numOperations), numOperations, false);
+
+                    System.out.println("arity " + arity + " - put random\t\t\t" + time
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_AritySweep() {
+        for (int arity : arities) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    PipelinedPriorityQueue<Integer> queue = newQueue(arity, numOperations);
+                    for (int i = 0; i < numOperations; i++) {
+                        queue.put(getRandInt());
+                    }
+                    long time = runThreads(numThreads, queue, numOperations, true);
+
+                    System.out.println("arity " + arity + " - mixed operations\t\t\t" + time
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    private PipelinedPriorityQueue<Integer> newQueue(int arity, int numOperations) {
+        return PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(numOperations)
+                .storageMode(StorageMode.PARALLEL_ARRAYS)
+                .arity(arity)
+                .build();
+    }
+
+    private long runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations, boolean mixed) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (mixed && j % 3 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.put(getRandInt());
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        long end = System.currentTimeMillis();
+        return end - start;
+    }
+
+    private int getRandInt() {
+        return (int) (Math.random() * 500000 + 1);
+    }
+
+}
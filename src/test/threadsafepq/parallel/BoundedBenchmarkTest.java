@@ -0,0 +1,119 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.TokenLockStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark test used to compare producer/consumer pipelines through a bounded PipelinedPriorityQueue with
+ * an ArrayBlockingQueue whose consumers sort what they drain, and with an unbounded PriorityBlockingQueue
+ */
+
+@Ignore
+public class BoundedBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1_000_000;
+    private static final int SORT_BATCH = 64;
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16};
+    private int[] bounds = new int[]{ 1_000, 10_000, 100_000};
+
+    @Test
+    public void Pipeline_producersConsumers_BoundedQueues() {
+        for (int bound : bounds) {
+            for (int numThreads : threadCases) {
+                BlockingQueue<Integer> pipelined = PipelinedPriorityQueue.<Integer>builder()
+                        .initialCapacity(bound)
+                        .bound(bound)
+                        .build();
+                print("PipelinedPriorityQueue bounded", runPipeline(numThreads, pipelined, false), bound, numThreads);
+                BlockingQueue<Integer> spinning = PipelinedPriorityQueue.<Integer>builder()
+                        .initialCapacity(bound)
+                        .bound(bound)
+                        .tokenLockStrategy(TokenLockStrategy.SPIN_THEN_PARK)
+                        .build();
+                print("PipelinedPriorityQueue bounded spin-then-park", runPipeline(numThreads, spinning, false),
+                        bound, numThreads);
+                print("ArrayBlockingQueue sorted batches", runPipeline(numThreads, new ArrayBlockingQueue<>(bound), true),
+                        bound, numThreads);
+                print("PriorityBlockingQueue unbounded", runPipeline(numThreads, new PriorityBlockingQueue<>(), false),
+                        bound, numThreads);
+            }
+        }
+    }
+
+    private void print(String label, long[] result, int bound, int numThreads) {
+        System.out.println(label + " - ops/sec, max size\t\t\t" + opsPerSecond(NUM_ELEMENTS, result[0])
+                + "\t" + result[1]
+                + "\t" + bound
+                + "\t" + numThreads);
+    }
+
+    /**
+     * Runs the given number of producers and consumers through the queue until every element has been consumed.
+     * Consumers either poll single elements or, to emulate priority order on a FIFO queue, drain a batch and sort it.
+     *
+     * @return the elapsed time in nanoseconds and the largest size of the queue seen by a producer
+     */
+    private long[] runPipeline(int numThreads, BlockingQueue<Integer> queue, boolean sortBatches) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        AtomicInteger consumed = new AtomicInteger();
+        AtomicInteger maxSize = new AtomicInteger();
+        int threadSize = NUM_ELEMENTS / numThreads;
+        int total = threadSize * numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread producer = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    try {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                    if ((j & 1023) == 0) maxSize.accumulateAndGet(queue.size(), Math::max);
+                }
+            });
+            producer.setName("producer " + i);
+            threads.add(producer);
+
+            Thread consumer = new Thread(() -> {
+                List<Integer> batch = new ArrayList<>();
+                while (consumed.get() < total) {
+                    if (sortBatches) {
+                        batch.clear();
+                        if (queue.drainTo(batch, SORT_BATCH) == 0) {
+                            Thread.yield();
+                            continue;
+                        }
+                        batch.sort(null);
+                        consumed.addAndGet(batch.size());
+                    } else if (queue.poll() != null) {
+                        consumed.incrementAndGet();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            });
+            consumer.setName("consumer " + i);
+            threads.add(consumer);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return new long[]{ System.nanoTime() - start, maxSize.get() };
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
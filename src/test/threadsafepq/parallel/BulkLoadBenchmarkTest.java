@@ -0,0 +1,76 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure the time to load a snapshot of elements into a
+ * PipelinedPriorityQueue in bulk, compared to adding them one at a time and to
+ * Java's PriorityBlockingQueue
+ */
+
+@Ignore
+public class BulkLoadBenchmarkTest {
+    private int[] inputSizes = new int[]{ 10_000, 100_000, 1_000_000, 10_000_000};
+    /**
+     * Largest input loaded one element at a time, beyond which the loop takes too long to be worth running.
+     */
+    private static final int MAX_SEQUENTIAL_SIZE = 1_000_000;
+
+    @Test
+    public void Load_randomSnapshot_AllStrategies() {
+        for (int numElements : inputSizes) {
+            List<Integer> snapshot = randomSnapshot(numElements);
+
+            long start = System.nanoTime();
+            PipelinedPriorityQueue<Integer> bulk = new PipelinedPriorityQueue<>(snapshot);
+            System.out.println("PipelinedQueue - collection constructor ms\t\t\t" + millisSince(start)
+                    + "\t" + numElements
+                    + "\t" + bulk.size());
+
+            start = System.nanoTime();
+            PipelinedPriorityQueue<Integer> merged = new PipelinedPriorityQueue<>();
+            merged.addAll(snapshot.subList(0, numElements / 2));
+            merged.addAll(snapshot.subList(numElements / 2, numElements));
+            System.out.println("PipelinedQueue - addAll in two halves ms\t\t\t" + millisSince(start)
+                    + "\t" + numElements
+                    + "\t" + merged.size());
+
+            if (numElements <= MAX_SEQUENTIAL_SIZE) {
+                start = System.nanoTime();
+                PipelinedPriorityQueue<Integer> sequential = new PipelinedPriorityQueue<>(numElements);
+                for (Integer e : snapshot) {
+                    sequential.add(e);
+                }
+                System.out.println("PipelinedQueue - add one at a time ms\t\t\t" + millisSince(start)
+                        + "\t" + numElements
+                        + "\t" + sequential.size());
+            }
+
+            start = System.nanoTime();
+            PriorityBlockingQueue<Integer> blocking = new PriorityBlockingQueue<>(snapshot);
+            System.out.println("BlockingQueue - collection constructor ms\t\t\t" + millisSince(start)
+                    + "\t" + numElements
+                    + "\t" + blocking.size());
+        }
+    }
+
+    private List<Integer> randomSnapshot(int numElements) {
+        List<Integer> snapshot = new ArrayList<>(numElements);
+        for (int i = 0; i < numElements; i++) {
+            snapshot.add(ThreadLocalRandom.current().nextInt());
+        }
+        return snapshot;
+    }
+
+    private long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+}
@@ -0,0 +1,88 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure the throughput of contains lookups mixed with offers and polls, with and without
+ * the slot index
+ */
+
+@Ignore
+public class ContainsBenchmarkTest {
+    private static final int NUM_ELEMENTS = 100_000;
+    private static final int NUM_THREADS = 32;
+    private static final int INDEXED_OPS = 2_000_000;
+    private static final int SCANNING_OPS = 20_000;
+    private int[] lookupPercentCases = new int[]{ 50, 90};
+
+    @Test
+    public void Contains_lookupsMixedWithOfferAndPoll_Throughput() {
+        for (int lookupPercent : lookupPercentCases) {
+            String suffix = " " + lookupPercent + "% lookups";
+            print("PipelinedPriorityQueue slot index" + suffix,
+                    runThreads(PipelinedPriorityQueue.<Integer>builder().slotIndex().build(), INDEXED_OPS,
+                            lookupPercent), INDEXED_OPS);
+            print("PipelinedPriorityQueue scan" + suffix,
+                    runThreads(new PipelinedPriorityQueue<>(), SCANNING_OPS, lookupPercent), SCANNING_OPS);
+            print("PriorityBlockingQueue" + suffix,
+                    runThreads(new PriorityBlockingQueue<>(), SCANNING_OPS, lookupPercent), SCANNING_OPS);
+        }
+    }
+
+    private void print(String label, long nanos, int numOps) {
+        System.out.println(label + " - ops/sec\t\t\t" + opsPerSecond(numOps, nanos)
+                + "\t" + numOps
+                + "\t" + NUM_THREADS);
+    }
+
+    /**
+     * Fills the queue with NUM_ELEMENTS elements, then runs NUM_THREADS threads, which perform numOps operations
+     * between them. Each operation looks up a random element with the given probability, and otherwise offers or
+     * polls an element with equal probability.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private long runThreads(BlockingQueue<Integer> queue, int numOps, int lookupPercent) {
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(ThreadLocalRandom.current().nextInt(2 * NUM_ELEMENTS));
+        }
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < NUM_THREADS; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int j = 0; j < numOps / NUM_THREADS; j++) {
+                    int operation = random.nextInt(100);
+                    if (operation < lookupPercent) {
+                        queue.contains(random.nextInt(2 * NUM_ELEMENTS));
+                    } else if (operation % 2 == 0) {
+                        queue.offer(random.nextInt(2 * NUM_ELEMENTS));
+                    } else {
+                        queue.poll();
+                    }
+                }
+            });
+            thread.setName("worker " + i);
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
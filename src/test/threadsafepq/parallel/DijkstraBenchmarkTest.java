@@ -0,0 +1,166 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.Handle;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Benchmark test used to compare Dijkstra's shortest paths on a large random graph using handles to lower the
+ * distance of a queued node, with the workaround of inserting a duplicate entry and skipping stale ones when polled
+ */
+
+@Ignore
+public class DijkstraBenchmarkTest {
+    private static final int DEGREE = 8;
+    private static final int MAX_WEIGHT = 1000;
+    private int[] nodeCases = new int[]{ 100_000, 1_000_000};
+
+    @Test
+    public void Dijkstra_randomGraph_HandlesVersusDuplicates() {
+        for (int numNodes : nodeCases) {
+            int[][] graph = randomGraph(numNodes);
+            long[] expected = null;
+            for (int run = 0; run < 2; run++) {
+                long[] distances = new long[numNodes];
+                long start = System.nanoTime();
+                int peak = withHandles(graph, distances,
+                        PipelinedPriorityQueue.<Entry>builder().slotIndex().build());
+                print("PipelinedPriorityQueue handles", System.nanoTime() - start, peak, numNodes);
+                expected = distances;
+
+                distances = new long[numNodes];
+                start = System.nanoTime();
+                peak = withDuplicates(graph, distances, new PipelinedPriorityQueue<>());
+                print("PipelinedPriorityQueue duplicates", System.nanoTime() - start, peak, numNodes);
+                assertArrayEquals(expected, distances);
+
+                distances = new long[numNodes];
+                start = System.nanoTime();
+                peak = withDuplicates(graph, distances, new PriorityBlockingQueue<>());
+                print("PriorityBlockingQueue duplicates", System.nanoTime() - start, peak, numNodes);
+                assertArrayEquals(expected, distances);
+            }
+        }
+    }
+
+    private void print(String label, long nanos, int peak, int numNodes) {
+        System.out.println(label + " - ms, peak queue size\t\t\t" + nanos / 1_000_000
+                + "\t" + peak
+                + "\t" + numNodes
+                + "\t" + 1);
+    }
+
+    /**
+     * Returns a random directed graph in which every node has DEGREE outgoing edges, stored for node u as the
+     * targets in graph[u][0..DEGREE) followed by the weights in graph[u][DEGREE..2*DEGREE).
+     */
+    private int[][] randomGraph(int numNodes) {
+        Random random = new Random(numNodes);
+        int[][] graph = new int[numNodes][2 * DEGREE];
+        for (int u = 0; u < numNodes; u++) {
+            for (int k = 0; k < DEGREE; k++) {
+                graph[u][k] = random.nextInt(numNodes);
+                graph[u][DEGREE + k] = 1 + random.nextInt(MAX_WEIGHT);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Runs Dijkstra from node 0, keeping at most one entry per node in the queue and lowering its distance
+     * through its handle.
+     *
+     * @return the largest number of entries in the queue
+     */
+    private int withHandles(int[][] graph, long[] distances, PipelinedPriorityQueue<Entry> queue) {
+        Arrays.fill(distances, Long.MAX_VALUE);
+        List<Handle<Entry>> handles = new ArrayList<>(Collections.nCopies(graph.length, null));
+        boolean[] settled = new boolean[graph.length];
+        distances[0] = 0;
+        handles.set(0, queue.offerWithHandle(new Entry(0, 0)));
+        int peak = 1;
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            settled[entry.node] = true;
+            for (int k = 0; k < DEGREE; k++) {
+                int v = graph[entry.node][k];
+                long distance = entry.distance + graph[entry.node][DEGREE + k];
+                if (settled[v] || distance >= distances[v]) continue;
+                distances[v] = distance;
+                if (handles.get(v) == null) {
+                    handles.set(v, queue.offerWithHandle(new Entry(distance, v)));
+                } else {
+                    handles.get(v).updatePriority(new Entry(distance, v));
+                }
+            }
+            peak = Math.max(peak, queue.size());
+        }
+        return peak;
+    }
+
+    /**
+     * Runs Dijkstra from node 0, inserting a new entry whenever the distance of a node is lowered and skipping
+     * the entries that are stale when polled.
+     *
+     * @return the largest number of entries in the queue
+     */
+    private int withDuplicates(int[][] graph, long[] distances, Queue<Entry> queue) {
+        Arrays.fill(distances, Long.MAX_VALUE);
+        distances[0] = 0;
+        queue.offer(new Entry(0, 0));
+        int peak = 1;
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            if (entry.distance > distances[entry.node]) continue;
+            for (int k = 0; k < DEGREE; k++) {
+                int v = graph[entry.node][k];
+                long distance = entry.distance + graph[entry.node][DEGREE + k];
+                if (distance >= distances[v]) continue;
+                distances[v] = distance;
+                queue.offer(new Entry(distance, v));
+            }
+            peak = Math.max(peak, queue.size());
+        }
+        return peak;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long distance;
+        private final int node;
+
+        private Entry(long distance, int node) {
+            this.distance = distance;
+            this.node = node;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int result = Long.compare(distance, o.distance);
+            return result != 0 ? result : Integer.compare(node, o.node);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry that = (Entry) o;
+            return distance == that.distance && node == that.node;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(distance) * 31 + node;
+        }
+    }
+
+}
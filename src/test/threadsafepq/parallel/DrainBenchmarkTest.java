@@ -0,0 +1,84 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark test used to measure the latency of drainTo on a large PipelinedPriorityQueue
+ * and how long concurrent producers are stalled by it, compared to draining with poll
+ */
+
+@Ignore
+public class DrainBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1_000_000;
+    private int[] producerCases = new int[]{ 0, 1, 4, 16};
+    private int[] drainSizes = new int[]{ 1_000, 100_000, 500_000, Integer.MAX_VALUE};
+
+    @Test
+    public void DrainTo_filledQueue_LatencyAndProducerStall() {
+        for (int maxElements : drainSizes) {
+            for (int numProducers : producerCases) {
+                for (boolean usePoll : new boolean[]{ false, true }) {
+                    PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(NUM_ELEMENTS);
+                    for (int i = 0; i < NUM_ELEMENTS; i++) {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    }
+
+                    AtomicLong maxStall = new AtomicLong();
+                    List<Thread> producers = startProducers(numProducers, queue, maxStall);
+                    List<Integer> sink = new ArrayList<>();
+
+                    long start = System.nanoTime();
+                    if (usePoll) {
+                        // producers keep adding, so only drain what was there at the start
+                        int target = Math.min(maxElements, queue.size());
+                        Integer e;
+                        while (sink.size() < target && (e = queue.poll()) != null) {
+                            sink.add(e);
+                        }
+                    } else {
+                        queue.drainTo(sink, maxElements);
+                    }
+                    long drainTime = System.nanoTime() - start;
+
+                    for (Thread t : producers) t.interrupt();
+                    for (Thread t : producers) try { t.join(); } catch (InterruptedException ex) {}
+
+                    System.out.println((usePoll ? "poll loop" : "drainTo") + " - drain ms, max producer stall ms\t\t\t"
+                            + drainTime / 1_000_000
+                            + "\t" + maxStall.get() / 1_000_000
+                            + "\t" + sink.size()
+                            + "\t" + numProducers);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts producers that put random elements until interrupted, recording the longest single put.
+     */
+    private List<Thread> startProducers(int numProducers, PipelinedPriorityQueue<Integer> queue, AtomicLong maxStall) {
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            Thread t = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    long start = System.nanoTime();
+                    queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    long stall = System.nanoTime() - start;
+                    maxStall.accumulateAndGet(stall, Math::max);
+                }
+            });
+            t.setName("" + i);
+            producers.add(t);
+            t.start();
+        }
+        return producers;
+    }
+
+}
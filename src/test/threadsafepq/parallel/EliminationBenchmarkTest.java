@@ -0,0 +1,92 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmark test used to measure the throughput gain and hit rate of elimination between
+ * offers and polls in PipelinedPriorityQueue
+ */
+
+@Ignore
+public class EliminationBenchmarkTest {
+    private int[] threadCases = new int[]{ 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 4096, 16384, 65536, 262144};
+
+    @Test
+    public void MixedOperations_threadsRandom_WithAndWithoutElimination() {
+        runAll(false);
+    }
+
+    @Test
+    public void MixedOperations_threadsNewHeads_WithAndWithoutElimination() {
+        runAll(true);
+    }
+
+    private void runAll(boolean newHeads) {
+        String workload = newHeads ? "new heads" : "random";
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                for (boolean elimination : new boolean[]{ false, true }) {
+                    PipelinedPriorityQueue.Builder<Integer> builder = PipelinedPriorityQueue.<Integer>builder().initialCapacity(100_000);
+                    if (elimination) builder.elimination(Math.max(1, numThreads / 4));
+                    PipelinedPriorityQueue<Integer> queue = builder.build();
+                    long time = runThreads(numThreads, queue, numOperations, newHeads);
+
+                    long attempts = queue.getEliminationAttempts();
+                    long hits = queue.getEliminationHits();
+                    System.out.println((elimination ? "elimination" : "pipeline") + " - mixed " + workload
+                            + " ops/sec, attempts, hits, hit rate\t\t\t" + opsPerSecond(numOperations, time)
+                            + "\t" + attempts
+                            + "\t" + hits
+                            + "\t" + (attempts == 0 ? 0 : (double) hits / attempts)
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs half of the threads as producers and half as consumers. With newHeads, producers offer
+     * ever-decreasing values, so every offer is a new head that can be eliminated against a poll.
+     */
+    private long runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations, boolean newHeads) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        AtomicInteger next = new AtomicInteger(Integer.MAX_VALUE);
+        for (int i = 0; i < numThreads; i++) {
+            boolean producer = i % 2 == 0;
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (!producer) {
+                        queue.poll();
+                    } else if (newHeads) {
+                        queue.put(next.getAndDecrement());
+                    } else {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
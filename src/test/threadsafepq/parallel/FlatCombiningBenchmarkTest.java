@@ -0,0 +1,87 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.FlatCombiningPriorityQueue;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare the throughput of FlatCombiningPriorityQueue against
+ * the raw PipelinedPriorityQueue and Java's PriorityBlockingQueue
+ */
+
+@Ignore
+public class FlatCombiningBenchmarkTest {
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128, 1000};
+    private int[] inputSizes = new int[]{ 512, 1024, 2048, 4096,
+            8192, 16384, 32768, 65536, 131072, 262144, 524288};
+
+    @Test
+    public void Put_threadsRandom_AllQueues() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, new PriorityBlockingQueue<>(), numOperations, false);
+                print("BlockingQueue - put random ops/sec", numOperations, numThreads, time);
+
+                time = runThreads(numThreads, new PipelinedPriorityQueue<>(100_000), numOperations, false);
+                print("PipelinedQueue - put random ops/sec", numOperations, numThreads, time);
+
+                time = runThreads(numThreads, new FlatCombiningPriorityQueue<>(new PipelinedPriorityQueue<>(100_000)), numOperations, false);
+                print("FlatCombining - put random ops/sec", numOperations, numThreads, time);
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_AllQueues() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, new PriorityBlockingQueue<>(), numOperations, true);
+                print("BlockingQueue - mixed operations ops/sec", numOperations, numThreads, time);
+
+                time = runThreads(numThreads, new PipelinedPriorityQueue<>(100_000), numOperations, true);
+                print("PipelinedQueue - mixed operations ops/sec", numOperations, numThreads, time);
+
+                time = runThreads(numThreads, new FlatCombiningPriorityQueue<>(new PipelinedPriorityQueue<>(100_000)), numOperations, true);
+                print("FlatCombining - mixed operations ops/sec", numOperations, numThreads, time);
+            }
+        }
+    }
+
+    private long runThreads(int numThreads, BlockingQueue<Integer> queue, int numOperations, boolean mixed) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (mixed && j % 3 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.offer(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private void print(String label, int numOperations, int numThreads, long nanos) {
+        System.out.println(label + "\t\t\t" + (nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9)))
+                + "\t" + numOperations
+                + "\t" + numThreads);
+    }
+
+}
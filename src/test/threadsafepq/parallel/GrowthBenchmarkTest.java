@@ -0,0 +1,102 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure the worst-case latency of offer while a PipelinedPriorityQueue
+ * grows from 1K to 10M elements, for every storage mode and for incremental resizing
+ */
+
+@Ignore
+public class GrowthBenchmarkTest {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NUM_ELEMENTS = 10_000_000;
+    private int[] threadCases = new int[]{ 1, 4, 16};
+    private int[] chunkSizes = new int[]{ 0, 64, 1024, 16384};
+
+    @Test
+    public void Offer_growingQueue_WorstCaseLatency() {
+        for (StorageMode mode : StorageMode.values()) {
+            for (int numThreads : threadCases) {
+                PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(INITIAL_CAPACITY, null, mode);
+                long[][] latencies = runThreads(numThreads, queue, NUM_ELEMENTS);
+
+                long[] all = merge(latencies);
+                Arrays.sort(all);
+                System.out.println(mode + " - offer max us, p99.9 us\t\t\t"
+                        + all[all.length - 1] / 1000
+                        + "\t" + all[(int) (all.length * 0.999)] / 1000
+                        + "\t" + queue.size()
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void Offer_growingQueueIncrementalResize_WorstCaseLatency() {
+        for (StorageMode mode : new StorageMode[]{ StorageMode.ELEMENTS, StorageMode.PARALLEL_ARRAYS }) {
+            for (int chunkSize : chunkSizes) {
+                for (int numThreads : threadCases) {
+                    PipelinedPriorityQueue.Builder<Integer> builder = PipelinedPriorityQueue.<Integer>builder()
+                            .initialCapacity(INITIAL_CAPACITY)
+                            .storageMode(mode);
+                    if (chunkSize > 0) builder.incrementalResize(chunkSize);
+                    PipelinedPriorityQueue<Integer> queue = builder.build();
+                    long[][] latencies = runThreads(numThreads, queue, NUM_ELEMENTS);
+
+                    long[] all = merge(latencies);
+                    Arrays.sort(all);
+                    System.out.println(mode + " chunk " + chunkSize + " - offer max us, p99.9 us\t\t\t"
+                            + all[all.length - 1] / 1000
+                            + "\t" + all[(int) (all.length * 0.999)] / 1000
+                            + "\t" + queue.size()
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    private long[][] runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        long[][] latencies = new long[numThreads][threadSize];
+        for (int i = 0; i < numThreads; i++) {
+            long[] threadLatencies = latencies[i];
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    int value = ThreadLocalRandom.current().nextInt(500000);
+                    long start = System.nanoTime();
+                    queue.offer(value);
+                    threadLatencies[j] = System.nanoTime() - start;
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return latencies;
+    }
+
+    private long[] merge(long[][] latencies) {
+        int total = 0;
+        for (long[] l : latencies) total += l.length;
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, offset, l.length);
+            offset += l.length;
+        }
+        return all;
+    }
+
+}
@@ -0,0 +1,108 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Benchmark test used to measure the time between a producer inserting an element and a consumer blocked in a
+ * timed poll receiving it, on an idle queue and on a queue loaded by threads offering and polling other elements
+ */
+
+@Ignore
+public class HandoffLatencyBenchmarkTest {
+    private static final int NUM_SAMPLES = 20_000;
+    private static final long PRODUCER_PAUSE_NANOS = 50_000;
+    private static final long LOAD_BASE = Long.MAX_VALUE / 2;
+    private int[] consumerCases = new int[]{ 1, 4, 16};
+    private int[] loadThreadCases = new int[]{ 0, 2, 8};
+
+    @Test
+    public void TimedPoll_idleAndLoadedQueue_HandoffLatency() {
+        for (int numLoadThreads : loadThreadCases) {
+            for (int numConsumers : consumerCases) {
+                print("PipelinedPriorityQueue", runHandoff(numConsumers, numLoadThreads,
+                        new PipelinedPriorityQueue<>()), numConsumers, numLoadThreads);
+                print("PriorityBlockingQueue", runHandoff(numConsumers, numLoadThreads,
+                        new PriorityBlockingQueue<>()), numConsumers, numLoadThreads);
+            }
+        }
+    }
+
+    private void print(String label, long[] latencies, int numConsumers, int numLoadThreads) {
+        Arrays.sort(latencies);
+        System.out.println(label + " - handoff p50 us, p99 us, max us\t\t\t"
+                + latencies[latencies.length / 2] / 1000
+                + "\t" + latencies[(int) (latencies.length * 0.99)] / 1000
+                + "\t" + latencies[latencies.length - 1] / 1000
+                + "\t" + numConsumers
+                + "\t" + numLoadThreads);
+    }
+
+    /**
+     * Runs a producer that inserts timestamps with a pause between each, so that the consumers are asleep in a
+     * timed poll when each one arrives. Load threads offer and poll elements that are ordered after every timestamp,
+     * and record the latency of any timestamp they happen to poll.
+     *
+     * @return the latency of every timestamp in nanoseconds
+     */
+    private long[] runHandoff(int numConsumers, int numLoadThreads, BlockingQueue<Long> queue) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        AtomicInteger received = new AtomicInteger();
+        long[] latencies = new long[NUM_SAMPLES];
+        long origin = System.nanoTime();
+        AtomicBoolean done = new AtomicBoolean();
+
+        for (int i = 0; i < numConsumers; i++) {
+            Thread consumer = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        record(queue.poll(10, TimeUnit.MILLISECONDS), origin, latencies, received);
+                    }
+                } catch (InterruptedException ex) {
+                }
+            });
+            consumer.setName("consumer " + i);
+            threads.add(consumer);
+        }
+        for (int i = 0; i < numLoadThreads; i++) {
+            Thread load = new Thread(() -> {
+                while (!done.get()) {
+                    queue.offer(LOAD_BASE + ThreadLocalRandom.current().nextInt(500000));
+                    record(queue.poll(), origin, latencies, received);
+                }
+            });
+            load.setName("load " + i);
+            threads.add(load);
+        }
+        for (Thread t : threads) t.start();
+
+        for (int i = 0; i < NUM_SAMPLES; i++) {
+            LockSupport.parkNanos(PRODUCER_PAUSE_NANOS);
+            queue.offer(System.nanoTime() - origin);
+        }
+        while (received.get() < NUM_SAMPLES) {
+            Thread.yield();
+        }
+        done.set(true);
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return latencies;
+    }
+
+    private void record(Long value, long origin, long[] latencies, AtomicInteger received) {
+        if (value == null || value >= LOAD_BASE) return;
+        latencies[received.getAndIncrement()] = System.nanoTime() - origin - value;
+    }
+
+}
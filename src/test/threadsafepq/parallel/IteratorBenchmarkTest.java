@@ -0,0 +1,98 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Benchmark test used to measure the throughput of scanning a large queue with a sequential iterator and a parallel
+ * stream while writer threads offer and poll elements
+ */
+
+@Ignore
+public class IteratorBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1_000_000;
+    private static final int NUM_SCANS = 10;
+    private int[] writerCases = new int[]{ 0, 4};
+
+    @Test
+    public void Scan_concurrentWriters_Throughput() {
+        for (int writers : writerCases) {
+            print("PipelinedPriorityQueue iterator", runScans(new PipelinedPriorityQueue<>(), writers, false),
+                    writers);
+            print("PipelinedPriorityQueue parallel stream", runScans(new PipelinedPriorityQueue<>(), writers, true),
+                    writers);
+            print("PriorityBlockingQueue iterator", runScans(new PriorityBlockingQueue<>(), writers, false),
+                    writers);
+            print("PriorityBlockingQueue parallel stream", runScans(new PriorityBlockingQueue<>(), writers, true),
+                    writers);
+        }
+    }
+
+    private void print(String label, long nanos, int writers) {
+        System.out.println(label + " - elements/sec\t\t\t" + opsPerSecond((long) NUM_SCANS * NUM_ELEMENTS, nanos)
+                + "\t" + NUM_ELEMENTS
+                + "\t" + writers);
+    }
+
+    /**
+     * Fills the queue with NUM_ELEMENTS elements, then scans it NUM_SCANS times while the given number of writer
+     * threads each offer and poll random elements, keeping its size steady.
+     *
+     * @return the elapsed time of the scans in nanoseconds
+     */
+    private long runScans(BlockingQueue<Integer> queue, int writers, boolean parallel) {
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(ThreadLocalRandom.current().nextInt(NUM_ELEMENTS));
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!done.get()) {
+                    queue.offer(random.nextInt(NUM_ELEMENTS));
+                    queue.poll();
+                }
+            });
+            thread.setName("writer " + i);
+            threads.add(thread);
+        }
+        for (Thread t : threads) t.start();
+
+        long start = System.nanoTime();
+        long sum = 0;
+        for (int i = 0; i < NUM_SCANS; i++) {
+            sum += parallel ? parallelSum(queue) : sequentialSum(queue);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        done.set(true);
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+        if (sum < 0) System.out.println(sum);
+        return elapsed;
+    }
+
+    private long sequentialSum(Collection<Integer> queue) {
+        long sum = 0;
+        for (Integer e : queue) sum += e;
+        return sum;
+    }
+
+    private long parallelSum(Collection<Integer> queue) {
+        return queue.stream().parallel().mapToLong(Integer::longValue).sum();
+    }
+
+    private long opsPerSecond(long numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
@@ -0,0 +1,142 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedMultiQueue;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark test used to compare the throughput and the rank error of PipelinedMultiQueue
+ * against the strict PipelinedPriorityQueue
+ */
+
+@Ignore
+public class MultiQueueBenchmarkTest {
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 4096, 16384, 65536, 262144};
+    private int[] shardCases = new int[]{ 2, 4, 8, 16};
+
+    @Test
+    public void MixedOperations_threadsRandom_StrictAndMultiQueue() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runMixed(numThreads, new PipelinedPriorityQueue<>(), numOperations);
+                System.out.println("strict - mixed operations ops/sec\t\t\t" + opsPerSecond(numOperations, time)
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+
+                for (int numShards : shardCases) {
+                    time = runMixed(numThreads, new PipelinedMultiQueue<>(numShards), numOperations);
+                    System.out.println("multiqueue " + numShards + " - mixed operations ops/sec\t\t\t" + opsPerSecond(numOperations, time)
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void RankError_threadsPolling_StrictAndMultiQueue() {
+        for (int numElements : inputSizes) {
+            for (int numThreads : threadCases) {
+                double[] error = measureRankError(numThreads, new PipelinedPriorityQueue<>(), numElements);
+                System.out.println("strict - rank error mean/max\t\t\t" + error[0] + "\t" + (long) error[1]
+                        + "\t" + numElements
+                        + "\t" + numThreads);
+
+                for (int numShards : shardCases) {
+                    for (int choices = 1; choices <= numShards; choices *= 2) {
+                        error = measureRankError(numThreads, new PipelinedMultiQueue<>(numShards, choices, null), numElements);
+                        System.out.println("multiqueue " + numShards + "x" + choices + " - rank error mean/max\t\t\t" + error[0] + "\t" + (long) error[1]
+                                + "\t" + numElements
+                                + "\t" + numThreads);
+                    }
+                }
+            }
+        }
+    }
+
+    private long runMixed(int numThreads, BlockingQueue<Integer> queue, int numOperations) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (j % 3 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.offer(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Fills the queue with 0..numElements-1 and drains it with numThreads threads. Every poll is stamped
+     * with a global sequence number; replaying the polls in that order, the rank error of a poll is the
+     * number of smaller values still in the queue when it was made.
+     *
+     * @return the mean and the maximum rank error
+     */
+    private double[] measureRankError(int numThreads, BlockingQueue<Integer> queue, int numElements) {
+        int[] values = new int[numElements];
+        for (int i = 0; i < numElements; i++) values[i] = i;
+        for (int i = numElements - 1; i > 0; i--) {
+            int index = ThreadLocalRandom.current().nextInt(i + 1);
+            int temp = values[index];
+            values[index] = values[i];
+            values[i] = temp;
+        }
+        for (int v : values) queue.offer(v);
+
+        AtomicLong sequence = new AtomicLong();
+        int[] polledInOrder = new int[numElements];
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                Integer value;
+                while ((value = queue.poll()) != null) {
+                    polledInOrder[(int) sequence.getAndIncrement()] = value;
+                }
+            });
+            threads.add(t);
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        // Fenwick tree counting the values removed so far
+        int[] removed = new int[numElements + 1];
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < numElements; i++) {
+            int value = polledInOrder[i];
+            int removedBelow = 0;
+            for (int j = value; j > 0; j -= j & -j) removedBelow += removed[j];
+            long rank = value - removedBelow;
+            total += rank;
+            max = Math.max(max, rank);
+            for (int j = value + 1; j <= numElements; j += j & -j) removed[j]++;
+        }
+        return new double[]{ (double) total / numElements, max };
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
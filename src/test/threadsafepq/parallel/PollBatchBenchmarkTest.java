@@ -0,0 +1,82 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare draining a PipelinedPriorityQueue in chunks with pollBatch,
+ * with repeated calls to poll and with drainTo
+ */
+
+@Ignore
+public class PollBatchBenchmarkTest {
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 16384, 65536, 262144};
+    private int[] batchSizes = new int[]{ 32, 64, 128, 256};
+
+    private enum DrainMode { POLL_BATCH, POLL, DRAIN_TO }
+
+    @Test
+    public void Drain_threadsInChunks_AllDrainModes() {
+        for (int numElements : inputSizes) {
+            for (int batchSize : batchSizes) {
+                for (int numThreads : threadCases) {
+                    for (DrainMode mode : DrainMode.values()) {
+                        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(numElements);
+                        for (int i = 0; i < numElements; i++) {
+                            queue.put(ThreadLocalRandom.current().nextInt(500000));
+                        }
+                        long time = runThreads(numThreads, queue, batchSize, mode);
+
+                        System.out.println(mode + " - drain in chunks ops/sec\t\t\t" + opsPerSecond(numElements, time)
+                                + "\t" + numElements
+                                + "\t" + batchSize
+                                + "\t" + numThreads);
+                    }
+                }
+            }
+        }
+    }
+
+    private long runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int batchSize, DrainMode mode) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                List<Integer> chunk = new ArrayList<>(batchSize);
+                while (true) {
+                    chunk.clear();
+                    if (mode == DrainMode.POLL_BATCH) {
+                        queue.pollBatch(batchSize, chunk);
+                    } else if (mode == DrainMode.DRAIN_TO) {
+                        queue.drainTo(chunk, batchSize);
+                    } else {
+                        Integer e;
+                        while (chunk.size() < batchSize && (e = queue.poll()) != null) {
+                            chunk.add(e);
+                        }
+                    }
+                    if (chunk.isEmpty()) break;
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
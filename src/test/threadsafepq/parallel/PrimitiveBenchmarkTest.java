@@ -0,0 +1,176 @@
+package threadsafepq.parallel;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedLongPriorityQueue;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare the performance of the primitive PipelinedLongPriorityQueue
+ * against PipelinedPriorityQueue<Long> and Java's PriorityBlockingQueue<Long>
+ */
+
+@Ignore
+public class PrimitiveBenchmarkTest {
+    private PipelinedLongPriorityQueue longQueue;
+    private PipelinedPriorityQueue<Long> pipelinedQueue;
+    private PriorityBlockingQueue<Long> blockingQueue;
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 65536, 262144, 1048576, 4194304};
+
+    @Before
+    public void before() {
+        longQueue = new PipelinedLongPriorityQueue(100_000);
+        pipelinedQueue = new PipelinedPriorityQueue<>(100_000);
+        blockingQueue = new PriorityBlockingQueue<>();
+    }
+
+    @Test
+    public void Put_threadsRandom_PrimitiveTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> () -> {
+                    for (int i = 0; i < size; i++) {
+                        longQueue.offer(getRandLong());
+                    }
+                });
+                longQueue.clear();
+
+                System.out.println("PipelinedLongPriorityQueue - put random\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void Put_threadsRandom_BoxedTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> getBoxedPutThread(pipelinedQueue, size));
+                pipelinedQueue.clear();
+
+                System.out.println("PipelinedPriorityQueue<Long> - put random\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void Put_threadsRandom_BlockingTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> getBoxedPutThread(blockingQueue, size));
+                blockingQueue.clear();
+
+                System.out.println("PriorityBlockingQueue<Long> - put random\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_PrimitiveTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> () -> {
+                    for (int i = 0; i < size; i++) {
+                        if (i % 3 == 0) {
+                            longQueue.pollLong(-1L);
+                        } else {
+                            longQueue.offer(getRandLong());
+                        }
+                    }
+                });
+                longQueue.clear();
+
+                System.out.println("PipelinedLongPriorityQueue - mixed operations\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_BoxedTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> getBoxedMixedThread(pipelinedQueue, size));
+                pipelinedQueue.clear();
+
+                System.out.println("PipelinedPriorityQueue<Long> - mixed operations\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_BlockingTiming() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                long time = runThreads(numThreads, numOperations, size -> getBoxedMixedThread(blockingQueue, size));
+                blockingQueue.clear();
+
+                System.out.println("PriorityBlockingQueue<Long> - mixed operations\t\t\t" + time
+                        + "\t" + numOperations
+                        + "\t" + numThreads);
+            }
+        }
+    }
+
+    private long runThreads(int numThreads, int numOperations, WorkerFactory factory) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(factory.create(threadSize));
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        long end = System.currentTimeMillis();
+        return end - start;
+    }
+
+    private Runnable getBoxedPutThread(BlockingQueue<Long> queue, int size) {
+        return () -> {
+            for (int i = 0; i < size; i++) {
+                queue.offer(getRandLong());
+            }
+        };
+    }
+
+    private Runnable getBoxedMixedThread(BlockingQueue<Long> queue, int size) {
+        return () -> {
+            for (int i = 0; i < size; i++) {
+                if (i % 3 == 0) {
+                    queue.poll();
+                } else {
+                    queue.offer(getRandLong());
+                }
+            }
+        };
+    }
+
+    private long getRandLong() {
+        return ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    }
+
+    private interface WorkerFactory {
+        Runnable create(int threadSize);
+    }
+
+}
@@ -0,0 +1,91 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure the throughput of producers inserting into a queue that no consumer is waiting on,
+ * both with single puts and with bulk addAll calls
+ */
+
+@Ignore
+public class ProducerThroughputBenchmarkTest {
+    private static final int NUM_ELEMENTS = 4_000_000;
+    private static final int BATCH_SIZE = 1024;
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16};
+
+    @Test
+    public void Put_noWaitingConsumers_ProducerThroughput() {
+        for (int numThreads : threadCases) {
+            print("PipelinedPriorityQueue put", runProducers(numThreads, new PipelinedPriorityQueue<>(), false),
+                    numThreads);
+            print("PriorityBlockingQueue put", runProducers(numThreads, new PriorityBlockingQueue<>(), false),
+                    numThreads);
+        }
+    }
+
+    @Test
+    public void AddAll_noWaitingConsumers_ProducerThroughput() {
+        for (int numThreads : threadCases) {
+            print("PipelinedPriorityQueue addAll", runProducers(numThreads, new PipelinedPriorityQueue<>(), true),
+                    numThreads);
+            print("PriorityBlockingQueue addAll", runProducers(numThreads, new PriorityBlockingQueue<>(), true),
+                    numThreads);
+        }
+    }
+
+    private void print(String label, long nanos, int numThreads) {
+        System.out.println(label + " - ops/sec\t\t\t" + opsPerSecond(NUM_ELEMENTS, nanos)
+                + "\t" + NUM_ELEMENTS
+                + "\t" + numThreads);
+    }
+
+    /**
+     * Runs the given number of producers, which insert NUM_ELEMENTS elements between them, either one at a time
+     * or in batches of BATCH_SIZE.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private long runProducers(int numThreads, BlockingQueue<Integer> queue, boolean batched) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = NUM_ELEMENTS / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread producer = new Thread(() -> {
+                List<Integer> batch = new ArrayList<>(BATCH_SIZE);
+                for (int j = 0; j < threadSize; j++) {
+                    int value = ThreadLocalRandom.current().nextInt(500000);
+                    if (!batched) {
+                        queue.offer(value);
+                        continue;
+                    }
+                    batch.add(value);
+                    if (batch.size() == BATCH_SIZE || j == threadSize - 1) {
+                        queue.addAll(batch);
+                        batch.clear();
+                    }
+                }
+            });
+            producer.setName("producer " + i);
+            threads.add(producer);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
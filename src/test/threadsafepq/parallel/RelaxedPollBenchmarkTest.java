@@ -0,0 +1,154 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark test used to compare the throughput and the rank error of relaxed polling
+ * against the strict poll of PipelinedPriorityQueue
+ */
+
+@Ignore
+public class RelaxedPollBenchmarkTest {
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+    private int[] inputSizes = new int[]{ 4096, 16384, 65536, 262144};
+
+    @Test
+    public void Poll_threadsDraining_StrictAndRelaxed() {
+        for (int numElements : inputSizes) {
+            for (int numThreads : threadCases) {
+                for (boolean relaxed : new boolean[]{ false, true }) {
+                    PipelinedPriorityQueue<Integer> queue = newQueue(relaxed, numThreads, numElements);
+                    prefill(queue, numElements);
+                    long start = System.nanoTime();
+                    int[] polled = drain(queue, numThreads);
+                    long time = System.nanoTime() - start;
+                    double[] error = rankError(polled);
+
+                    System.out.println((relaxed ? "relaxed" : "strict") + " - drain ops/sec, rank error mean/max\t\t\t"
+                            + opsPerSecond(numElements, time)
+                            + "\t" + error[0]
+                            + "\t" + (long) error[1]
+                            + "\t" + numElements
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_StrictAndRelaxed() {
+        for (int numOperations : inputSizes) {
+            for (int numThreads : threadCases) {
+                for (boolean relaxed : new boolean[]{ false, true }) {
+                    PipelinedPriorityQueue<Integer> queue = newQueue(relaxed, numThreads, numOperations);
+                    prefill(queue, numOperations);
+                    long time = runMixed(numThreads, queue, numOperations);
+
+                    System.out.println((relaxed ? "relaxed" : "strict") + " - mixed operations ops/sec\t\t\t"
+                            + opsPerSecond(numOperations, time)
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    private PipelinedPriorityQueue<Integer> newQueue(boolean relaxed, int numThreads, int capacity) {
+        PipelinedPriorityQueue.Builder<Integer> builder = PipelinedPriorityQueue.<Integer>builder().initialCapacity(capacity);
+        if (relaxed) builder.relaxedPolling(numThreads);
+        return builder.build();
+    }
+
+    private void prefill(PipelinedPriorityQueue<Integer> queue, int numElements) {
+        int[] values = new int[numElements];
+        for (int i = 0; i < numElements; i++) values[i] = i;
+        for (int i = numElements - 1; i > 0; i--) {
+            int index = ThreadLocalRandom.current().nextInt(i + 1);
+            int temp = values[index];
+            values[index] = values[i];
+            values[i] = temp;
+        }
+        for (int v : values) queue.put(v);
+    }
+
+    /**
+     * Drains the queue with numThreads threads, stamping every poll with a global sequence number.
+     *
+     * @return the polled values in sequence order
+     */
+    private int[] drain(PipelinedPriorityQueue<Integer> queue, int numThreads) {
+        AtomicLong sequence = new AtomicLong();
+        int[] polledInOrder = new int[queue.size()];
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                Integer value;
+                while ((value = queue.poll()) != null) {
+                    polledInOrder[(int) sequence.getAndIncrement()] = value;
+                }
+            });
+            threads.add(t);
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+        return polledInOrder;
+    }
+
+    /**
+     * Replays the polls of a drained permutation of 0..n-1 in order. The rank error of a poll is the number
+     * of smaller values still in the queue when it was made, counted with a Fenwick tree.
+     *
+     * @return the mean and the maximum rank error
+     */
+    private double[] rankError(int[] polledInOrder) {
+        int n = polledInOrder.length;
+        int[] removed = new int[n + 1];
+        long total = 0;
+        long max = 0;
+        for (int value : polledInOrder) {
+            int removedBelow = 0;
+            for (int j = value; j > 0; j -= j & -j) removedBelow += removed[j];
+            long rank = value - removedBelow;
+            total += rank;
+            max = Math.max(max, rank);
+            for (int j = value + 1; j <= n; j += j & -j) removed[j]++;
+        }
+        return new double[]{ n == 0 ? 0 : (double) total / n, max };
+    }
+
+    private long runMixed(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (j % 2 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
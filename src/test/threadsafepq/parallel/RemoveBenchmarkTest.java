@@ -0,0 +1,109 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Benchmark test used to measure the throughput of a mix of offers and polls in which a fraction of the operations
+ * cancel a previously offered element with remove(Object), on a queue holding a million elements
+ */
+
+@Ignore
+public class RemoveBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1_000_000;
+    private static final int INDEXED_OPS = 400_000;
+    private static final int SCANNING_OPS = 4_000;
+    private int[] cancelPercentCases = new int[]{ 10, 20, 30};
+    private int[] threadCases = new int[]{ 1, 4, 16};
+
+    @Test
+    public void Remove_cancellationsMixedWithOfferAndPoll_Throughput() {
+        for (int cancelPercent : cancelPercentCases) {
+            for (int numThreads : threadCases) {
+                String suffix = " " + cancelPercent + "% cancelled";
+                PipelinedPriorityQueue<Integer> indexed = PipelinedPriorityQueue.<Integer>builder()
+                        .initialCapacity(NUM_ELEMENTS)
+                        .slotIndex()
+                        .build();
+                print("PipelinedPriorityQueue slot index" + suffix,
+                        runThreads(numThreads, indexed, INDEXED_OPS, cancelPercent), INDEXED_OPS, numThreads);
+                print("PipelinedPriorityQueue scan" + suffix,
+                        runThreads(numThreads, new PipelinedPriorityQueue<>(NUM_ELEMENTS), SCANNING_OPS, cancelPercent),
+                        SCANNING_OPS, numThreads);
+                print("PriorityBlockingQueue" + suffix,
+                        runThreads(numThreads, new PriorityBlockingQueue<>(NUM_ELEMENTS), SCANNING_OPS, cancelPercent),
+                        SCANNING_OPS, numThreads);
+            }
+        }
+    }
+
+    private void print(String label, long nanos, int numOps, int numThreads) {
+        System.out.println(label + " - ops/sec\t\t\t" + opsPerSecond(numOps, nanos)
+                + "\t" + numOps
+                + "\t" + numThreads);
+    }
+
+    /**
+     * Fills the queue with NUM_ELEMENTS distinct elements, then runs the given number of threads, which perform
+     * numOps operations between them. Each operation cancels one of the elements offered by its thread with the
+     * given probability, and otherwise alternates between an offer and a poll. A cancelled element may already
+     * have been polled, in which case remove returns false.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private long runThreads(int numThreads, BlockingQueue<Integer> queue, int numOps, int cancelPercent) {
+        List<Integer> values = new ArrayList<>(NUM_ELEMENTS);
+        for (int i = 0; i < NUM_ELEMENTS; i++) values.add(i);
+        Collections.shuffle(values, new Random(NUM_ELEMENTS));
+        queue.addAll(values);
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            int id = i;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(id);
+                // elements are owned by the thread with the same remainder, so no two threads cancel the same one
+                List<Integer> owned = new ArrayList<>();
+                for (int value = id; value < NUM_ELEMENTS; value += numThreads) owned.add(value);
+                int next = NUM_ELEMENTS + id;
+                for (int j = 0; j < numOps / numThreads; j++) {
+                    if (random.nextInt(100) < cancelPercent && !owned.isEmpty()) {
+                        int k = random.nextInt(owned.size());
+                        Integer value = owned.get(k);
+                        owned.set(k, owned.get(owned.size() - 1));
+                        owned.remove(owned.size() - 1);
+                        queue.remove(value);
+                    } else if (j % 2 == 0) {
+                        queue.offer(next);
+                        owned.add(next);
+                        next += numThreads;
+                    } else {
+                        queue.poll();
+                    }
+                }
+            });
+            thread.setName("worker " + i);
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
@@ -0,0 +1,121 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure the heap retained by a PipelinedPriorityQueue after a burst of elements,
+ * with and without trimToSize and the shrink policy, and the cost of the shrink policy on throughput
+ */
+
+@Ignore
+public class ShrinkBenchmarkTest {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int RESIDUAL_ELEMENTS = 1000;
+    private int[] threadCases = new int[]{ 1, 4, 16};
+    private int[] burstSizes = new int[]{ 100_000, 1_000_000, 4_000_000};
+
+    @Test
+    public void RetainedHeap_burstCycle_AllStorageModes() {
+        for (StorageMode mode : StorageMode.values()) {
+            for (int burstSize : burstSizes) {
+                for (String policy : new String[]{ "none", "trimToSize", "shrinkBelow" }) {
+                    long before = usedMemory();
+                    PipelinedPriorityQueue.Builder<Integer> builder = PipelinedPriorityQueue.<Integer>builder()
+                            .initialCapacity(INITIAL_CAPACITY)
+                            .storageMode(mode);
+                    if (policy.equals("shrinkBelow")) builder.shrinkBelow(0.25);
+                    PipelinedPriorityQueue<Integer> queue = builder.build();
+
+                    for (int i = 0; i < burstSize; i++) {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                    long peak = usedMemory() - before;
+                    while (queue.size() > RESIDUAL_ELEMENTS) {
+                        queue.poll();
+                    }
+                    // a quiet period where the queue stays near empty
+                    for (int i = 0; i < burstSize; i++) {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                        queue.poll();
+                    }
+                    if (policy.equals("trimToSize")) queue.trimToSize();
+                    long after = usedMemory() - before;
+
+                    System.out.println(mode + " " + policy + " - peak bytes, retained bytes\t\t\t" + peak
+                            + "\t" + after
+                            + "\t" + burstSize
+                            + "\t" + queue.size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_burstCycles_ShrinkPolicyThroughput() {
+        for (int burstSize : burstSizes) {
+            for (int numThreads : threadCases) {
+                for (boolean shrink : new boolean[]{ false, true }) {
+                    PipelinedPriorityQueue.Builder<Integer> builder = PipelinedPriorityQueue.<Integer>builder()
+                            .initialCapacity(INITIAL_CAPACITY);
+                    if (shrink) builder.shrinkBelow(0.25);
+                    PipelinedPriorityQueue<Integer> queue = builder.build();
+                    long time = runBurstCycles(numThreads, queue, burstSize);
+
+                    System.out.println((shrink ? "shrinkBelow" : "none") + " - burst cycle ops/sec\t\t\t"
+                            + opsPerSecond(4 * burstSize, time)
+                            + "\t" + burstSize
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs two cycles of a burst of puts followed by polls until the queue is nearly empty, split between
+     * the given number of threads.
+     */
+    private long runBurstCycles(int numThreads, PipelinedPriorityQueue<Integer> queue, int burstSize) {
+        long start = System.nanoTime();
+        for (int cycle = 0; cycle < 2; cycle++) {
+            runThreads(numThreads, burstSize, () -> queue.put(ThreadLocalRandom.current().nextInt(500000)));
+            runThreads(numThreads, burstSize, queue::poll);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void runThreads(int numThreads, int numOperations, Runnable operation) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    operation.run();
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+    private long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
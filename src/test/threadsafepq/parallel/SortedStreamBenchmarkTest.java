@@ -0,0 +1,78 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare the cost of reading the first k elements of a large queue in priority order
+ * through sortedIterator with copying the queue through toArray and sorting the copy
+ */
+
+@Ignore
+public class SortedStreamBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1_000_000;
+    private static final int NUM_RUNS = 20;
+    private int[] topCases = new int[]{ 10, 100, 1000, 10_000};
+
+    @Test
+    public void TopK_largeQueue_SortedIteratorVersusToArrayAndSort() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(ThreadLocalRandom.current().nextInt());
+        }
+
+        for (int k : topCases) {
+            long sorted = 0;
+            long copied = 0;
+            long start = System.nanoTime();
+            for (int run = 0; run < NUM_RUNS; run++) {
+                sorted += topWithSortedIterator(queue, k);
+            }
+            print("PipelinedPriorityQueue sortedIterator", System.nanoTime() - start, k);
+
+            start = System.nanoTime();
+            for (int run = 0; run < NUM_RUNS; run++) {
+                copied += topWithToArray(queue, k);
+            }
+            print("PipelinedPriorityQueue toArray and sort", System.nanoTime() - start, k);
+            if (sorted != copied) throw new AssertionError("top " + k + " differ");
+        }
+    }
+
+    private void print(String label, long nanos, int k) {
+        System.out.println(label + " - ms per top-k\t\t\t" + nanos / NUM_RUNS / 1e6
+                + "\t" + k
+                + "\t" + NUM_ELEMENTS);
+    }
+
+    /**
+     * Returns the sum of the first k elements of the queue in priority order, read through sortedIterator
+     */
+    private long topWithSortedIterator(PipelinedPriorityQueue<Integer> queue, int k) {
+        long sum = 0;
+        Iterator<Integer> iterator = queue.sortedIterator();
+        for (int i = 0; i < k && iterator.hasNext(); i++) {
+            sum += iterator.next();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the first k elements of the queue in priority order, read by sorting a copy of the queue
+     */
+    private long topWithToArray(PipelinedPriorityQueue<Integer> queue, int k) {
+        Object[] elements = queue.toArray();
+        Arrays.sort(elements);
+        long sum = 0;
+        for (int i = 0; i < k && i < elements.length; i++) {
+            sum += (Integer) elements[i];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,109 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare the heap footprint and throughput of the
+ * storage modes of PipelinedPriorityQueue
+ */
+
+@Ignore
+public class StorageBenchmarkTest {
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128, 1000};
+    private int[] inputSizes = new int[]{ 512, 1024, 2048, 4096,
+            8192, 16384, 32768, 65536, 131072, 262144, 524288};
+
+    @Test
+    public void Footprint_filledQueue_AllStorageModes() {
+        for (StorageMode mode : StorageMode.values()) {
+            for (int numElements : inputSizes) {
+                long before = usedMemory();
+                PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(numElements, null, mode);
+                for (int i = 0; i < numElements; i++) {
+                    queue.put(i);
+                }
+                long after = usedMemory();
+
+                System.out.println(mode + " - retained bytes\t\t\t" + (after - before)
+                        + "\t" + numElements
+                        + "\t" + queue.size());
+            }
+        }
+    }
+
+    @Test
+    public void Put_threadsRandom_AllStorageModes() {
+        for (StorageMode mode : StorageMode.values()) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(100_000, null, mode);
+                    long time = runThreads(numThreads, queue, numOperations, false);
+
+                    System.out.println(mode + " - put random ops/sec\t\t\t" + opsPerSecond(numOperations, time)
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void MixedOperations_threadsRandom_AllStorageModes() {
+        for (StorageMode mode : StorageMode.values()) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(100_000, null, mode);
+                    long time = runThreads(numThreads, queue, numOperations, true);
+
+                    System.out.println(mode + " - mixed operations ops/sec\t\t\t" + opsPerSecond(numOperations, time)
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    private long runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations, boolean mixed) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    if (mixed && j % 3 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.put(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+    private long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,100 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to measure how the throughput of consumers blocked in take scales with the number of
+ * consumers, for a prefilled queue and for a queue fed by producers while the consumers run
+ */
+
+@Ignore
+public class TakerScalingBenchmarkTest {
+    private static final int NUM_ELEMENTS = 1 << 20;
+    private static final int NUM_PRODUCERS = 4;
+    private int[] takerCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128};
+
+    @Test
+    public void Take_prefilledQueue_TakerScaling() {
+        for (int numTakers : takerCases) {
+            PipelinedPriorityQueue<Integer> pipelined = new PipelinedPriorityQueue<>(NUM_ELEMENTS);
+            fill(pipelined);
+            print("PipelinedPriorityQueue prefilled", runThreads(0, numTakers, pipelined), numTakers);
+
+            PriorityBlockingQueue<Integer> priorityBlocking = new PriorityBlockingQueue<>(NUM_ELEMENTS);
+            fill(priorityBlocking);
+            print("PriorityBlockingQueue prefilled", runThreads(0, numTakers, priorityBlocking), numTakers);
+        }
+    }
+
+    @Test
+    public void Take_producersRunning_TakerScaling() {
+        for (int numTakers : takerCases) {
+            print("PipelinedPriorityQueue with producers",
+                    runThreads(NUM_PRODUCERS, numTakers, new PipelinedPriorityQueue<>()), numTakers);
+            print("PriorityBlockingQueue with producers",
+                    runThreads(NUM_PRODUCERS, numTakers, new PriorityBlockingQueue<>()), numTakers);
+        }
+    }
+
+    private void print(String label, long nanos, int numTakers) {
+        System.out.println(label + " - take ops/sec\t\t\t" + opsPerSecond(NUM_ELEMENTS, nanos)
+                + "\t" + NUM_ELEMENTS
+                + "\t" + numTakers);
+    }
+
+    private void fill(BlockingQueue<Integer> queue) {
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(ThreadLocalRandom.current().nextInt(500000));
+        }
+    }
+
+    /**
+     * Runs the given number of producers, which insert NUM_ELEMENTS elements between them, alongside the given
+     * number of takers, which take NUM_ELEMENTS elements between them.
+     *
+     * @return the elapsed time in nanoseconds until every taker has finished
+     */
+    private long runThreads(int numProducers, int numTakers, BlockingQueue<Integer> queue) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < numProducers; i++) {
+            Thread producer = new Thread(() -> {
+                for (int j = 0; j < NUM_ELEMENTS / numProducers; j++) {
+                    queue.offer(ThreadLocalRandom.current().nextInt(500000));
+                }
+            });
+            producer.setName("producer " + i);
+            threads.add(producer);
+        }
+        for (int i = 0; i < numTakers; i++) {
+            Thread taker = new Thread(() -> {
+                try {
+                    for (int j = 0; j < NUM_ELEMENTS / numTakers; j++) {
+                        queue.take();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            });
+            taker.setName("taker " + i);
+            threads.add(taker);
+        }
+
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return System.nanoTime() - start;
+    }
+
+    private long opsPerSecond(int numOperations, long nanos) {
+        return nanos == 0 ? 0 : (long) (numOperations / (nanos / 1e9));
+    }
+
+}
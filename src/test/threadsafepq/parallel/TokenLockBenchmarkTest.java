@@ -0,0 +1,178 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.TokenLockStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Benchmark test used to compare the throughput and tail latency of PipelinedPriorityQueue
+ * under each TokenLockStrategy
+ */
+
+@Ignore
+public class TokenLockBenchmarkTest {
+    private static final int LATENCY_OPERATIONS = 1 << 20;
+    private int[] threadCases = new int[]{ 1, 2, 4, 8, 16, 32, 64, 128, 1000};
+    private int[] inputSizes = new int[]{ 512, 1024, 2048, 4096,
+            8192, 16384, 32768, 65536, 131072, 262144, 524288};
+    private int[] latencyThreadCases = new int[]{ 1, 4, 16, 64};
+
+    @Test
+    public void MixedOperations_threadsRandom_AllStrategies() {
+        for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    long time = runThreads(numThreads, newQueue(strategy), numOperations, true);
+
+                    System.out.println(strategy + " - mixed operations\t\t\t" + time
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Put_threadsRandom_AllStrategies() {
+        for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+            for (int numOperations : inputSizes) {
+                for (int numThreads : threadCases) {
+                    long time = runThreads(numThreads, newQueue(strategy), numOperations, false);
+
+                    System.out.println(strategy + " - put random\t\t\t" + time
+                            + "\t" + numOperations
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void Latency_putRandomAndMixed_AllStrategies() {
+        for (boolean mixed : new boolean[]{ false, true }) {
+            for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+                for (int numThreads : latencyThreadCases) {
+                    PipelinedPriorityQueue<Integer> queue = newQueue(strategy);
+                    long start = System.nanoTime();
+                    long[][] latencies = runTimedThreads(numThreads, queue, LATENCY_OPERATIONS, mixed);
+                    long elapsed = System.nanoTime() - start;
+
+                    long[] all = merge(latencies);
+                    Arrays.sort(all);
+                    System.out.println(strategy + (mixed ? " - mixed" : " - put random")
+                            + " ops/sec, p50 ns, p99 ns, p99.9 ns, max ns\t\t\t"
+                            + (long) (all.length / (elapsed / 1e9))
+                            + "\t" + all[all.length / 2]
+                            + "\t" + all[(int) (all.length * 0.99)]
+                            + "\t" + all[(int) (all.length * 0.999)]
+                            + "\t" + all[all.length - 1]
+                            + "\t" + numThreads);
+                }
+            }
+        }
+    }
+
+    private PipelinedPriorityQueue<Integer> newQueue(TokenLockStrategy strategy) {
+        return PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(100_000)
+                .tokenLockStrategy(strategy)
+                .build();
+    }
+
+    private long runThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations, boolean mixed) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < threadSize; j++) {
+                        if (mixed && j % 3 == 0) {
+                            queue.poll();
+                        } else {
+                            queue.put(getRandInt());
+                            dowork();
+                        }
+                    }
+                }
+                private int dowork() {
+                    int count = 0;
+                    for (int i = 0; i < getRandInt2(); i++) {
+                        count++;
+                    }
+                    return count;
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        long end = System.currentTimeMillis();
+        return end - start;
+    }
+
+    /**
+     * Runs the PUT_RANDOM or MIXED workload of runThreads without the work between operations, so that the
+     * threads contend for the tokens as much as possible, and records the latency of every operation.
+     *
+     * @return the latency of every operation of every thread in nanoseconds
+     */
+    private long[][] runTimedThreads(int numThreads, PipelinedPriorityQueue<Integer> queue, int numOperations,
+                                     boolean mixed) {
+        ArrayList<Thread> threads = new ArrayList<>();
+        int threadSize = numOperations / numThreads;
+        long[][] latencies = new long[numThreads][threadSize];
+        for (int i = 0; i < numThreads; i++) {
+            long[] threadLatencies = latencies[i];
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < threadSize; j++) {
+                    int value = getRandInt();
+                    long start = System.nanoTime();
+                    if (mixed && j % 3 == 0) {
+                        queue.poll();
+                    } else {
+                        queue.put(value);
+                    }
+                    threadLatencies[j] = System.nanoTime() - start;
+                }
+            });
+            t.setName("" + i);
+            threads.add(t);
+        }
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) try { t.join(); } catch (InterruptedException ex) {}
+
+        return latencies;
+    }
+
+    private long[] merge(long[][] latencies) {
+        int total = 0;
+        for (long[] l : latencies) total += l.length;
+        long[] all = new long[total];
+        int offset = 0;
+        for (long[] l : latencies) {
+            System.arraycopy(l, 0, all, offset, l.length);
+            offset += l.length;
+        }
+        return all;
+    }
+
+    private int getRandInt() {
+        return (int) (Math.random() * 500000 + 1);
+    }
+
+    private int getRandInt2() {
+        return (int) (Math.random() * 10000 + 1);
+    }
+
+}
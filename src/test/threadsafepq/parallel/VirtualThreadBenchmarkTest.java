@@ -0,0 +1,125 @@
+package threadsafepq.parallel;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.TokenLockStrategy;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Benchmark test used to compare producers and takers running on virtual threads with the same work on platform
+ * threads, for every TokenLockStrategy and for PriorityBlockingQueue. Virtual threads are created through
+ * reflection so that this compiles for Java 8. On runtimes that do not have them, only the platform-thread cases run.
+ */
+
+@Ignore
+public class VirtualThreadBenchmarkTest {
+    private static final int OPS_PER_THREAD = 4;
+    private static final int PLATFORM_THREAD_LIMIT = 10_000;
+    private int[] threadCases = new int[]{ 10_000, 100_000, 1_000_000};
+
+    @Test
+    public void PutTake_virtualAndPlatformThreads_ThroughputAndCarrierUtilization() throws Exception {
+        Method ofVirtual = null;
+        Method unstarted = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            unstarted = Class.forName("java.lang.Thread$Builder").getMethod("unstarted", Runnable.class);
+        } catch (NoSuchMethodException | ClassNotFoundException ex) {
+            System.out.println("Virtual threads are not available on Java " + System.getProperty("java.version")
+                    + ", only platform threads are run");
+        }
+
+        for (int numThreads : threadCases) {
+            for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+                String label = "PipelinedPriorityQueue " + strategy;
+                if (ofVirtual != null) {
+                    print(label + " virtual", runThreads(numThreads, newQueue(strategy), ofVirtual, unstarted),
+                            numThreads);
+                }
+                if (numThreads <= PLATFORM_THREAD_LIMIT) {
+                    print(label + " platform", runThreads(numThreads, newQueue(strategy), null, null), numThreads);
+                }
+            }
+            if (ofVirtual != null) {
+                print("PriorityBlockingQueue virtual",
+                        runThreads(numThreads, new PriorityBlockingQueue<>(), ofVirtual, unstarted), numThreads);
+            }
+            if (numThreads <= PLATFORM_THREAD_LIMIT) {
+                print("PriorityBlockingQueue platform",
+                        runThreads(numThreads, new PriorityBlockingQueue<>(), null, null), numThreads);
+            }
+        }
+    }
+
+    private BlockingQueue<Integer> newQueue(TokenLockStrategy strategy) {
+        return PipelinedPriorityQueue.<Integer>builder()
+                .tokenLockStrategy(strategy)
+                .build();
+    }
+
+    private void print(String label, double[] result, int numThreads) {
+        System.out.println(label + " - ops/sec, carrier utilization\t\t\t" + (long) result[0]
+                + "\t" + String.format("%.2f", result[1])
+                + "\t" + numThreads * OPS_PER_THREAD
+                + "\t" + numThreads);
+    }
+
+    /**
+     * Runs half of the given number of threads as producers offering OPS_PER_THREAD elements each, and the other half
+     * as takers taking OPS_PER_THREAD elements each. Threads are virtual if ofVirtual is given.
+     * The carrier utilization is the CPU time of the process divided by the elapsed time of every available processor,
+     * which also counts time spent outside of the threads, such as in the garbage collector.
+     *
+     * @return the operations per second and the carrier utilization
+     */
+    private double[] runThreads(int numThreads, BlockingQueue<Integer> queue, Method ofVirtual, Method unstarted)
+            throws Exception {
+        ArrayList<Thread> threads = new ArrayList<>(numThreads);
+        Object builder = ofVirtual == null ? null : ofVirtual.invoke(null);
+        for (int i = 0; i < numThreads; i++) {
+            Runnable task;
+            if (i % 2 == 0) {
+                task = () -> {
+                    for (int j = 0; j < OPS_PER_THREAD; j++) {
+                        queue.offer(ThreadLocalRandom.current().nextInt(500000));
+                    }
+                };
+            } else {
+                task = () -> {
+                    try {
+                        for (int j = 0; j < OPS_PER_THREAD; j++) {
+                            queue.take();
+                        }
+                    } catch (InterruptedException ex) {
+                    }
+                };
+            }
+            threads.add(builder == null ? new Thread(task) : (Thread) unstarted.invoke(builder, task));
+        }
+
+        long startCpu = processCpuTime();
+        long start = System.nanoTime();
+
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+
+        long elapsed = System.nanoTime() - start;
+        long cpu = processCpuTime() - startCpu;
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new double[]{ (long) numThreads * OPS_PER_THREAD / (elapsed / 1e9),
+                cpu / ((double) elapsed * processors) };
+    }
+
+    private long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+}
@@ -0,0 +1,229 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.FlatCombiningPriorityQueue;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlatCombiningPriorityQueueTest {
+
+    private static final int NUM_ELEMENTS = 1000;
+
+    @Test(expected = NullPointerException.class)
+    public void Constructor_NullQueue_ThrowsNullPointerException() {
+        new FlatCombiningPriorityQueue<Integer>(null);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void Offer_NullElement_ThrowsNullPointerException() {
+        new FlatCombiningPriorityQueue<Integer>().offer(null);
+    }
+
+    @Test
+    public void Poll_RandomOrder_DequeuesInStrictOrder() {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+        assertEquals(NUM_ELEMENTS, queue.size());
+        assertEquals(0, (int) queue.peek());
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void Poll_CustomComparator_UsesUnderlyingQueueOrdering() {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>(
+                new PipelinedPriorityQueue<Integer>(10, Comparator.reverseOrder()));
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        for (int i = NUM_ELEMENTS - 1; i >= 0; i--) {
+            assertEquals(i, (int) queue.poll());
+        }
+    }
+
+    @Test
+    public void OfferPoll_ManyThreads_KeepsEveryElement() throws InterruptedException {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>();
+        int numThreads = 8;
+        List<List<Integer>> polled = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            List<Integer> own = new ArrayList<>();
+            polled.add(own);
+            int offset = t * NUM_ELEMENTS;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    queue.offer(offset + i);
+                    if (i % 2 == 0) {
+                        Integer value = queue.poll();
+                        if (value != null) own.add(value);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> own : polled) all.addAll(own);
+        Integer value;
+        while ((value = queue.poll()) != null) all.add(value);
+        Collections.sort(all);
+
+        assertEquals(numThreads * NUM_ELEMENTS, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i, (int) all.get(i));
+        }
+    }
+
+    @Test
+    public void PollTimeout_EmptyQueue_ReturnsNull() throws InterruptedException {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>();
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void Take_ElementOfferedLater_WakesConsumer() throws InterruptedException {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>();
+        Integer[] taken = new Integer[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException ex) {}
+        });
+        consumer.start();
+        Thread.sleep(50);
+        queue.offer(7);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(7, (int) taken[0]);
+    }
+
+    @Test
+    public void TakeAndTimedPoll_ConsumersInterruptedWhileElementsOffered_NoWakeupIsLost()
+            throws InterruptedException {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>();
+        int numConsumers = 8;
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> consumers = new ArrayList<>();
+        for (int t = 0; t < numConsumers; t++) {
+            boolean timed = t % 2 == 0;
+            Thread consumer = new Thread(() -> {
+                try {
+                    Integer value = timed ? queue.poll(1, TimeUnit.MINUTES) : queue.take();
+                    if (value != null) taken.incrementAndGet();
+                } catch (InterruptedException ex) {
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        Thread.sleep(50);
+
+        // every other consumer is interrupted right after an element has been offered for it
+        for (int t = 0; t < numConsumers; t++) {
+            queue.offer(t);
+            if (t % 4 < 2) consumers.get(t).interrupt();
+        }
+        for (int t = 0; t < numConsumers; t++) {
+            if (t % 4 >= 2) {
+                consumers.get(t).join(5000);
+                assertFalse(consumers.get(t).isAlive());
+            }
+        }
+        for (Thread consumer : consumers) consumer.join(5000);
+        assertEquals(numConsumers, taken.get() + queue.size());
+    }
+
+    @Test
+    public void Offer_BoundedQueueFull_ReturnsFalse() {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>(
+                PipelinedPriorityQueue.<Integer>builder().bound(2).build());
+
+        assertTrue(queue.offer(2));
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(3));
+        try {
+            queue.add(3);
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        assertEquals(2, queue.size());
+        assertEquals(1, (int) queue.poll());
+        assertTrue(queue.offer(3));
+    }
+
+    @Test
+    public void Put_BoundedQueueFull_WaitsForPoll() throws InterruptedException {
+        FlatCombiningPriorityQueue<Integer> queue = new FlatCombiningPriorityQueue<>(
+                PipelinedPriorityQueue.<Integer>builder().bound(1).build());
+        queue.put(1);
+        Thread producer = new Thread(() -> queue.put(2));
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+        assertFalse(queue.offer(3, 10, TimeUnit.MILLISECONDS));
+
+        assertEquals(1, (int) queue.poll());
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(2, (int) queue.poll());
+    }
+
+    @Test
+    public void Offer_IncomparableElementOfAnotherThread_FailsOnlyThatOffer() throws InterruptedException {
+        FlatCombiningPriorityQueue<Object> queue = new FlatCombiningPriorityQueue<>(new PipelinedPriorityQueue<>());
+        queue.offer(1);
+        RuntimeException[] thrown = new RuntimeException[1];
+        Thread producer = new Thread(() -> {
+            try {
+                queue.offer(new Object());
+            } catch (RuntimeException ex) {
+                thrown[0] = ex;
+            }
+        });
+        producer.start();
+        producer.join();
+
+        assertTrue(thrown[0] instanceof ClassCastException);
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            assertTrue(queue.offer(i + 2));
+        }
+        assertEquals(NUM_ELEMENTS + 1, queue.size());
+        assertEquals(1, queue.poll());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,176 @@
+package threadsafepq.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import threadsafepq.PipelinedIntPriorityQueue;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedIntPriorityQueueTest {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+    private PipelinedIntPriorityQueue defaultQueue;
+    private PipelinedIntPriorityQueue capacityQueue;
+    private PipelinedIntPriorityQueue singleQueue;
+
+    @Before
+    public void before() {
+        defaultQueue = new PipelinedIntPriorityQueue();
+        capacityQueue = new PipelinedIntPriorityQueue(CUSTOM_INITIAL_CAPACITY);
+        singleQueue = new PipelinedIntPriorityQueue(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Constructor_ZeroCapacity_ThrowsIllegalArgumentException() {
+        new PipelinedIntPriorityQueue(0);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void PollInt_NoItemsDefaultQueue_ThrowsNoSuchElementException() {
+        defaultQueue.pollInt();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void PeekInt_NoItemsDefaultQueue_ThrowsNoSuchElementException() {
+        defaultQueue.peekInt();
+    }
+
+    @Test
+    public void PollInt_NoItemsWithDefault_ReturnsDefaultAndKeepsSize() {
+        assertEquals(-1, defaultQueue.pollInt(-1));
+        assertEquals(0, defaultQueue.size());
+        assertTrue(defaultQueue.isEmpty());
+    }
+
+    @Test
+    public void PeekInt_MultipleItems_ReturnsSmallestWithoutRemoving() {
+        defaultQueue.offer(5);
+        defaultQueue.offer(Integer.MIN_VALUE);
+        defaultQueue.offer(Integer.MAX_VALUE);
+
+        assertEquals(Integer.MIN_VALUE, defaultQueue.peekInt());
+        assertEquals(3, defaultQueue.size());
+    }
+
+    @Test
+    public void PollInt_RandomOrderDefaultQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(defaultQueue, 500);
+    }
+
+    @Test
+    public void PollInt_RandomOrderCapacityQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(capacityQueue, CUSTOM_INITIAL_CAPACITY * 5);
+    }
+
+    @Test
+    public void PollInt_RandomOrderSingleCapacityQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(singleQueue, 100);
+    }
+
+    @Test
+    public void Clear_MultipleItems_QueueIsEmptyAndReusable() {
+        for (int i = 0; i < 100; i++) {
+            capacityQueue.add(i);
+        }
+        capacityQueue.clear();
+
+        assertTrue(capacityQueue.isEmpty());
+        capacityQueue.add(7);
+        assertEquals(7, capacityQueue.pollInt());
+    }
+
+    @Test
+    public void ToArray_MultipleItems_ReturnsAllItems() {
+        defaultQueue.add(3);
+        defaultQueue.add(1);
+        defaultQueue.add(2);
+
+        int[] result = defaultQueue.toArray();
+        Arrays.sort(result);
+        assertArrayEquals(new int[]{1, 2, 3}, result);
+    }
+
+    @Test
+    public void ToArray_ConcurrentOffersGrowingSingleQueue_ReturnsConsistentSnapshots() throws InterruptedException {
+        int n = 20000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                singleQueue.offer((int) i);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            try {
+                while (producer.isAlive()) {
+                    int[] snapshot = singleQueue.toArray();
+                    assertTrue(snapshot.length <= n);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        producer.start();
+        reader.start();
+        producer.join();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(n, singleQueue.toArray().length);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, singleQueue.pollInt());
+        }
+    }
+
+    @Test
+    public void Clear_ConcurrentOffersGrowingSingleQueue_LeavesUsableQueue() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                singleQueue.offer((int) i);
+            }
+        });
+        Thread clearer = new Thread(() -> {
+            try {
+                while (producer.isAlive()) {
+                    singleQueue.clear();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        producer.start();
+        clearer.start();
+        producer.join();
+        clearer.join();
+        singleQueue.clear();
+
+        assertNull(failure.get());
+        assertTrue(singleQueue.isEmpty());
+        singleQueue.add(7);
+        assertEquals(7, singleQueue.pollInt());
+    }
+
+    private void testPollWithRandomInput(PipelinedIntPriorityQueue queue, int n) {
+        Random random = new Random(n);
+        int[] input = new int[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = random.nextInt();
+            queue.offer(input[i]);
+        }
+        Arrays.sort(input);
+
+        assertEquals(n, queue.size());
+        for (int expected : input) {
+            assertEquals(expected, queue.pollInt());
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,176 @@
+package threadsafepq.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import threadsafepq.PipelinedLongPriorityQueue;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedLongPriorityQueueTest {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+    private PipelinedLongPriorityQueue defaultQueue;
+    private PipelinedLongPriorityQueue capacityQueue;
+    private PipelinedLongPriorityQueue singleQueue;
+
+    @Before
+    public void before() {
+        defaultQueue = new PipelinedLongPriorityQueue();
+        capacityQueue = new PipelinedLongPriorityQueue(CUSTOM_INITIAL_CAPACITY);
+        singleQueue = new PipelinedLongPriorityQueue(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Constructor_ZeroCapacity_ThrowsIllegalArgumentException() {
+        new PipelinedLongPriorityQueue(0);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void PollLong_NoItemsDefaultQueue_ThrowsNoSuchElementException() {
+        defaultQueue.pollLong();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void PeekLong_NoItemsDefaultQueue_ThrowsNoSuchElementException() {
+        defaultQueue.peekLong();
+    }
+
+    @Test
+    public void PollLong_NoItemsWithDefault_ReturnsDefaultAndKeepsSize() {
+        assertEquals(-1L, defaultQueue.pollLong(-1L));
+        assertEquals(0, defaultQueue.size());
+        assertTrue(defaultQueue.isEmpty());
+    }
+
+    @Test
+    public void PeekLong_MultipleItems_ReturnsSmallestWithoutRemoving() {
+        defaultQueue.offer(5L);
+        defaultQueue.offer(Long.MIN_VALUE);
+        defaultQueue.offer(Long.MAX_VALUE);
+
+        assertEquals(Long.MIN_VALUE, defaultQueue.peekLong());
+        assertEquals(3, defaultQueue.size());
+    }
+
+    @Test
+    public void PollLong_RandomOrderDefaultQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(defaultQueue, 500);
+    }
+
+    @Test
+    public void PollLong_RandomOrderCapacityQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(capacityQueue, CUSTOM_INITIAL_CAPACITY * 5);
+    }
+
+    @Test
+    public void PollLong_RandomOrderSingleCapacityQueueMultipleResize_CorrectlyDequeuesItems() {
+        testPollWithRandomInput(singleQueue, 100);
+    }
+
+    @Test
+    public void Clear_MultipleItems_QueueIsEmptyAndReusable() {
+        for (long i = 0; i < 100; i++) {
+            capacityQueue.add(i);
+        }
+        capacityQueue.clear();
+
+        assertTrue(capacityQueue.isEmpty());
+        capacityQueue.add(7L);
+        assertEquals(7L, capacityQueue.pollLong());
+    }
+
+    @Test
+    public void ToArray_MultipleItems_ReturnsAllItems() {
+        defaultQueue.add(3L);
+        defaultQueue.add(1L);
+        defaultQueue.add(2L);
+
+        long[] result = defaultQueue.toArray();
+        Arrays.sort(result);
+        assertArrayEquals(new long[]{1L, 2L, 3L}, result);
+    }
+
+    @Test
+    public void ToArray_ConcurrentOffersGrowingSingleQueue_ReturnsConsistentSnapshots() throws InterruptedException {
+        int n = 20000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                singleQueue.offer((long) i);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            try {
+                while (producer.isAlive()) {
+                    long[] snapshot = singleQueue.toArray();
+                    assertTrue(snapshot.length <= n);
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        producer.start();
+        reader.start();
+        producer.join();
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(n, singleQueue.toArray().length);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, singleQueue.pollLong());
+        }
+    }
+
+    @Test
+    public void Clear_ConcurrentOffersGrowingSingleQueue_LeavesUsableQueue() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 20000; i++) {
+                singleQueue.offer((long) i);
+            }
+        });
+        Thread clearer = new Thread(() -> {
+            try {
+                while (producer.isAlive()) {
+                    singleQueue.clear();
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        producer.start();
+        clearer.start();
+        producer.join();
+        clearer.join();
+        singleQueue.clear();
+
+        assertNull(failure.get());
+        assertTrue(singleQueue.isEmpty());
+        singleQueue.add(7L);
+        assertEquals(7L, singleQueue.pollLong());
+    }
+
+    private void testPollWithRandomInput(PipelinedLongPriorityQueue queue, int n) {
+        Random random = new Random(n);
+        long[] input = new long[n];
+        for (int i = 0; i < n; i++) {
+            input[i] = random.nextLong();
+            queue.offer(input[i]);
+        }
+        Arrays.sort(input);
+
+        assertEquals(n, queue.size());
+        for (long expected : input) {
+            assertEquals(expected, queue.pollLong());
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
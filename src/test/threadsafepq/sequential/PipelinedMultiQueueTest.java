@@ -0,0 +1,255 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedMultiQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedMultiQueueTest {
+
+    private static final int NUM_ELEMENTS = 1000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Constructor_ZeroShards_ThrowsIllegalArgumentException() {
+        new PipelinedMultiQueue<Integer>(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Constructor_MoreChoicesThanShards_ThrowsIllegalArgumentException() {
+        new PipelinedMultiQueue<Integer>(4, 5, null);
+    }
+
+    @Test
+    public void Poll_SingleShard_DequeuesInStrictOrder() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(1);
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Poll_ManyShards_DequeuesEveryElementOnce() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(8);
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+        assertEquals(NUM_ELEMENTS, queue.size());
+
+        List<Integer> polled = new ArrayList<>();
+        Integer value;
+        while ((value = queue.poll()) != null) {
+            polled.add(value);
+        }
+        Collections.sort(polled);
+
+        assertEquals(NUM_ELEMENTS, polled.size());
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) polled.get(i));
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void Peek_CustomComparator_ReturnsHeadAcrossAllShards() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(8, 8, Comparator.reverseOrder());
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        assertEquals(NUM_ELEMENTS - 1, (int) queue.peek());
+        assertEquals(NUM_ELEMENTS - 1, (int) queue.element());
+        assertEquals(NUM_ELEMENTS, queue.size());
+    }
+
+    @Test
+    public void ToArray_ManyShards_ContainsEveryElementWithoutRemoving() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        Integer[] elements = queue.toArray(new Integer[0]);
+        assertEquals(NUM_ELEMENTS, elements.length);
+        assertEquals(NUM_ELEMENTS, queue.size());
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer e : queue) {
+            iterated.add(e);
+        }
+        assertEquals(NUM_ELEMENTS, iterated.size());
+        assertEquals(NUM_ELEMENTS, queue.size());
+    }
+
+    @Test
+    public void DrainTo_ManyShards_TransfersEveryElement() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+
+        assertEquals(10, queue.drainTo(sink, 10));
+        assertEquals(NUM_ELEMENTS - 10, queue.drainTo(sink));
+        assertEquals(NUM_ELEMENTS, sink.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void RemoveObject_ManyShards_RemovesSingleInstance() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(8);
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(i);
+        }
+        queue.offer(7);
+
+        assertTrue(queue.remove(7));
+        assertTrue(queue.contains(7));
+        assertTrue(queue.remove(7));
+        assertFalse(queue.contains(7));
+        assertFalse(queue.remove(7));
+        assertFalse(queue.remove(null));
+        assertEquals(NUM_ELEMENTS - 1, queue.size());
+    }
+
+    @Test
+    public void RemoveAll_ManyShards_RemovesMatchingElementsFromEveryShard() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(8);
+        List<Integer> odd = new ArrayList<>();
+        List<Integer> even = new ArrayList<>();
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(i);
+            (i % 2 == 1 ? odd : even).add(i);
+        }
+
+        assertTrue(queue.removeAll(odd));
+        assertFalse(queue.removeAll(odd));
+        List<Integer> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        Collections.sort(remaining);
+        assertEquals(even, remaining);
+    }
+
+    @Test
+    public void RetainAll_ManyShards_KeepsOnlyMatchingElements() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(8);
+        List<Integer> odd = new ArrayList<>();
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            queue.offer(i);
+            if (i % 2 == 1) odd.add(i);
+        }
+
+        assertTrue(queue.retainAll(odd));
+        assertFalse(queue.retainAll(odd));
+        List<Integer> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        Collections.sort(remaining);
+        assertEquals(odd, remaining);
+    }
+
+    @Test
+    public void RemoveAll_Itself_ClearsQueue() {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+
+        assertFalse(queue.retainAll(queue));
+        assertEquals(10, queue.size());
+        assertTrue(queue.removeAll(queue));
+        assertTrue(queue.isEmpty());
+        assertFalse(queue.removeAll(queue));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void RemoveAll_NullCollection_ThrowsNullPointerException() {
+        new PipelinedMultiQueue<Integer>(4).removeAll(null);
+    }
+
+    @Test
+    public void PollTimeout_EmptyQueue_ReturnsNull() throws InterruptedException {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void Take_ElementOfferedLater_WakesConsumer() throws InterruptedException {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        Integer[] taken = new Integer[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException ex) {}
+        });
+        consumer.start();
+        Thread.sleep(50);
+        queue.offer(7);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(7, (int) taken[0]);
+    }
+
+    @Test
+    public void TakeAndTimedPoll_ConsumersInterruptedWhileElementsOffered_NoWakeupIsLost()
+            throws InterruptedException {
+        PipelinedMultiQueue<Integer> queue = new PipelinedMultiQueue<>(4);
+        int numConsumers = 8;
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> consumers = new ArrayList<>();
+        for (int t = 0; t < numConsumers; t++) {
+            boolean timed = t % 2 == 0;
+            Thread consumer = new Thread(() -> {
+                try {
+                    Integer value = timed ? queue.poll(1, TimeUnit.MINUTES) : queue.take();
+                    if (value != null) taken.incrementAndGet();
+                } catch (InterruptedException ex) {
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        Thread.sleep(50);
+
+        // every other consumer is interrupted right after an element has been offered for it
+        for (int t = 0; t < numConsumers; t++) {
+            queue.offer(t);
+            if (t % 4 < 2) consumers.get(t).interrupt();
+        }
+        for (int t = 0; t < numConsumers; t++) {
+            if (t % 4 >= 2) {
+                consumers.get(t).join(5000);
+                assertFalse(consumers.get(t).isAlive());
+            }
+        }
+        for (Thread consumer : consumers) consumer.join(5000);
+        assertEquals(numConsumers, taken.get() + queue.size());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
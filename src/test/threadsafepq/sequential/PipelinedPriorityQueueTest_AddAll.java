@@ -0,0 +1,236 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedPriorityQueueTest_AddAll {
+
+    private static final int NUM_ELEMENTS = 5000;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8};
+
+    @Test
+    public void Constructor_EmptyCollection_CreatesUsableQueue() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(Collections.<Integer>emptyList());
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        for (int i : shuffledRange(100)) {
+            queue.put(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+    }
+
+    @Test
+    public void Constructor_RandomCollection_DequeuesInOrder() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(toList(shuffledRange(NUM_ELEMENTS)));
+        assertEquals(NUM_ELEMENTS, queue.size());
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+
+        queue.put(3);
+        queue.put(1);
+        assertEquals(1, (int) queue.poll());
+    }
+
+    @Test
+    public void AddAll_EmptyQueueEveryArityAndStorageMode_DequeuesInOrder() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            for (int arity : ARITIES) {
+                PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                        .storageMode(storageMode)
+                        .arity(arity)
+                        .build();
+                assertTrue(queue.addAll(toList(shuffledRange(NUM_ELEMENTS))));
+                assertEquals(NUM_ELEMENTS, queue.size());
+
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    assertEquals(i, (int) queue.poll());
+                }
+                assertNull(queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void AddAll_LargeCollectionIntoNonEmptyQueue_MergesAllElements() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        List<Integer> evens = new ArrayList<>();
+        List<Integer> odds = new ArrayList<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            (i % 2 == 0 ? evens : odds).add(i);
+        }
+        for (int i = 0; i < 10; i++) {
+            queue.put(evens.get(i));
+        }
+
+        queue.addAll(evens.subList(10, evens.size()));
+        queue.addAll(odds);
+        assertEquals(NUM_ELEMENTS, queue.size());
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+    }
+
+    @Test
+    public void AddAll_SmallCollectionIntoLargeQueue_MergesAllElements() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.addAll(toList(shuffledRange(NUM_ELEMENTS)));
+
+        queue.addAll(Arrays.asList(-1, NUM_ELEMENTS, -2));
+        assertEquals(NUM_ELEMENTS + 3, queue.size());
+
+        assertEquals(-2, (int) queue.poll());
+        assertEquals(-1, (int) queue.poll());
+        for (int i = 0; i <= NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void AddAll_EmptyCollection_ReturnsFalse() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        assertFalse(queue.addAll(Collections.<Integer>emptyList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void AddAll_Self_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.addAll(queue);
+    }
+
+    @Test
+    public void AddAll_NullElement_LeavesQueueUnchanged() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.put(5);
+        try {
+            queue.addAll(Arrays.asList(1, null, 2));
+            fail();
+        } catch (NullPointerException expected) {}
+
+        assertEquals(1, queue.size());
+        assertEquals(5, (int) queue.poll());
+    }
+
+    @Test
+    public void AddAll_IncomparableElements_LeavesQueueUnchanged() {
+        PipelinedPriorityQueue<Object> queue = new PipelinedPriorityQueue<>();
+        queue.put(5);
+        try {
+            queue.addAll(Arrays.asList(1, "two"));
+            fail();
+        } catch (ClassCastException expected) {}
+
+        assertEquals(1, queue.size());
+        assertEquals(5, queue.poll());
+    }
+
+    @Test(timeout = 10000)
+    public void AddAll_RemoveOnLevelAddedByGrow_WaitsUntilHeapRewritten() throws InterruptedException {
+        CountDownLatch rewriting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // every element ranks equally, so the heap keeps the order of the queue followed by the collection
+        PipelinedPriorityQueue<Object> queue = PipelinedPriorityQueue.builder()
+                .comparator((a, b) -> 0)
+                .initialCapacity(1)
+                .slotIndex()
+                .build();
+        queue.offer(new Object());
+        List<Object> elements = new ArrayList<>();
+        for (int i = 0; i < 29; i++) {
+            elements.add(new Object());
+        }
+        // the last element stalls the rewrite once every other element is back in the heap
+        elements.add(new Object() {
+            @Override
+            public int hashCode() {
+                rewriting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.hashCode();
+            }
+        });
+
+        Thread adder = new Thread(() -> queue.addAll(elements));
+        adder.start();
+        rewriting.await();
+        // node 20 is on the fifth level, which was added by grow
+        boolean[] removed = new boolean[1];
+        Thread remover = new Thread(() -> removed[0] = queue.remove(elements.get(19)));
+        remover.start();
+        while (remover.getState() == Thread.State.RUNNABLE || remover.getState() == Thread.State.NEW) {
+            Thread.yield();
+        }
+
+        release.countDown();
+        adder.join();
+        remover.join();
+        assertTrue(removed[0]);
+        assertEquals(30, queue.size());
+        int polled = 0;
+        while (queue.poll() != null) {
+            polled++;
+        }
+        assertEquals(30, polled);
+    }
+
+    @Test
+    public void AddAll_ConsumerWaiting_WakesConsumer() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        Integer[] taken = new Integer[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException ex) {}
+        });
+        consumer.start();
+        Thread.sleep(50);
+        queue.addAll(Arrays.asList(3, 1, 2));
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(1, (int) taken[0]);
+    }
+
+    private List<Integer> toList(int[] array) {
+        List<Integer> list = new ArrayList<>();
+        for (int i : array) list.add(i);
+        return list;
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
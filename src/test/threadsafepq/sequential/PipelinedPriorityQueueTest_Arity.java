@@ -0,0 +1,98 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.BinaryTreeUtils;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_Arity {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8, 16};
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_ArityOne_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().arity(1);
+    }
+
+    @Test
+    public void ConvertSizeToNumLevels_DaryTrees_MatchesFullTreeSizes() {
+        assertEquals(BinaryTreeUtils.convertSizeToNumLevels(11), BinaryTreeUtils.convertSizeToNumLevels(11, 2));
+        assertEquals(1, BinaryTreeUtils.convertSizeToNumLevels(1, 4));
+        assertEquals(2, BinaryTreeUtils.convertSizeToNumLevels(5, 4));
+        assertEquals(3, BinaryTreeUtils.convertSizeToNumLevels(6, 4));
+        assertEquals(21, BinaryTreeUtils.convertNumLevelsToSize(3, 4));
+        assertEquals(585, BinaryTreeUtils.convertNumLevelsToSize(4, 8));
+        assertEquals(3, BinaryTreeUtils.findLevel(20, 4));
+        assertEquals(BinaryTreeUtils.findLevel(6), BinaryTreeUtils.findLevel(6, 2));
+    }
+
+    @Test
+    public void Poll_RandomOrderEveryArityMultipleResize_CorrectlyDequeuesItems() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            for (int arity : ARITIES) {
+                PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                        .initialCapacity(CUSTOM_INITIAL_CAPACITY)
+                        .storageMode(storageMode)
+                        .arity(arity)
+                        .build();
+                int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 30);
+                for (int i : inputList) {
+                    queue.put(i);
+                }
+
+                for (int i = 0; i < inputList.length; i++) {
+                    assertEquals(i, (int) queue.poll());
+                }
+                assertNull(queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void Poll_InterleavedOperationsEveryArity_CorrectlyDequeuesItems() {
+        for (int arity : ARITIES) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .initialCapacity(1)
+                    .comparator((o1, o2) -> o2.compareTo(o1))
+                    .arity(arity)
+                    .build();
+            Random random = new Random(arity);
+            PriorityQueue<Integer> expected = new PriorityQueue<>((o1, o2) -> o2.compareTo(o1));
+            for (int i = 0; i < 2000; i++) {
+                if (random.nextInt(3) == 0) {
+                    assertEquals(expected.poll(), queue.poll());
+                } else {
+                    int value = random.nextInt(1000);
+                    expected.add(value);
+                    queue.put(value);
+                }
+                assertEquals(expected.size(), queue.size());
+            }
+            while (!expected.isEmpty()) {
+                assertEquals(expected.poll(), queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
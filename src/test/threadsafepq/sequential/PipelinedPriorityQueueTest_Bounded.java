@@ -0,0 +1,263 @@
+package threadsafepq.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedPriorityQueueTest_Bounded {
+
+    private static final int BOUND = 100;
+    private PipelinedPriorityQueue<Integer> queue;
+
+    @Before
+    public void before() {
+        queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(8)
+                .bound(BOUND)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_NonPositiveBound_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().bound(0);
+    }
+
+    @Test
+    public void RemainingCapacity_OffersAndPolls_TracksFreeSpace() {
+        assertEquals(BOUND, queue.remainingCapacity());
+        for (int i : shuffledRange(40)) {
+            queue.offer(i);
+        }
+        assertEquals(BOUND - 40, queue.remainingCapacity());
+
+        for (int i = 0; i < 15; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertEquals(BOUND - 25, queue.remainingCapacity());
+    }
+
+    @Test
+    public void Offer_FullQueue_ReturnsFalseAndKeepsElements() {
+        for (int i : shuffledRange(BOUND)) {
+            assertTrue(queue.offer(i));
+        }
+
+        assertFalse(queue.offer(-1));
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals(BOUND, queue.size());
+        assertEquals(0, (int) queue.peek());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void Add_FullQueue_ThrowsIllegalStateException() {
+        for (int i : shuffledRange(BOUND)) {
+            queue.add(i);
+        }
+        queue.add(BOUND);
+    }
+
+    @Test
+    public void TimedOffer_FullQueue_TimesOut() {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i);
+        }
+
+        long start = System.nanoTime();
+        assertFalse(queue.offer(-1, 50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(BOUND, queue.size());
+    }
+
+    @Test
+    public void TimedOffer_InterruptedWhileFull_ReturnsFalseAndKeepsInterruptStatus() {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i);
+        }
+
+        Thread.currentThread().interrupt();
+        assertFalse(queue.offer(-1, 1, TimeUnit.SECONDS));
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    public void Put_FullQueue_BlocksUntilPolled() throws InterruptedException {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i + 1);
+        }
+        Thread producer = new Thread(() -> queue.put(0));
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        assertEquals(1, (int) queue.poll());
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(BOUND, queue.size());
+        assertEquals(0, (int) queue.peek());
+    }
+
+    @Test
+    public void Put_InterruptedWhileFull_AddsElementAndKeepsInterruptStatus() throws InterruptedException {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i + 1);
+        }
+        boolean[] interrupted = new boolean[1];
+        Thread producer = new Thread(() -> {
+            queue.put(0);
+            interrupted[0] = Thread.currentThread().isInterrupted();
+        });
+        producer.start();
+        producer.join(100);
+        producer.interrupt();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        assertEquals(1, (int) queue.poll());
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(interrupted[0]);
+        assertEquals(0, (int) queue.peek());
+    }
+
+    @Test
+    public void TimedOffer_ConsumerPollsWhileWaiting_AddsElement() throws InterruptedException {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i + 1);
+        }
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            queue.poll();
+        });
+        consumer.start();
+
+        assertTrue(queue.offer(0, 5, TimeUnit.SECONDS));
+        consumer.join();
+        assertEquals(0, (int) queue.peek());
+    }
+
+    @Test
+    public void DrainToPollBatchAndClear_FullQueue_FreeSlots() {
+        for (int i : shuffledRange(BOUND)) {
+            queue.put(i);
+        }
+
+        List<Integer> sink = new ArrayList<>();
+        queue.drainTo(sink, 30);
+        assertEquals(30, queue.remainingCapacity());
+        queue.pollBatch(20, sink);
+        assertEquals(50, queue.remainingCapacity());
+        queue.drainTo(sink, 45);
+        assertEquals(95, queue.remainingCapacity());
+        queue.clear();
+        assertEquals(BOUND, queue.remainingCapacity());
+        assertEquals(95, sink.size());
+    }
+
+    @Test
+    public void AddAll_FitsInBound_AddsEveryElement() {
+        List<Integer> input = new ArrayList<>();
+        for (int i : shuffledRange(BOUND)) {
+            input.add(i);
+        }
+
+        assertTrue(queue.addAll(input));
+        assertEquals(0, queue.remainingCapacity());
+        for (int i = 0; i < BOUND; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertEquals(BOUND, queue.remainingCapacity());
+    }
+
+    @Test
+    public void AddAll_ExceedsBound_FillsQueueThenThrowsIllegalStateException() {
+        queue.put(-1);
+        List<Integer> input = new ArrayList<>();
+        for (int i : shuffledRange(BOUND)) {
+            input.add(i);
+        }
+
+        try {
+            queue.addAll(input);
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals(BOUND, queue.size());
+            assertEquals(0, queue.remainingCapacity());
+        }
+    }
+
+    @Test
+    public void AddAll_ComparatorThrows_KeepsSlotsFree() {
+        PipelinedPriorityQueue<Integer> throwingQueue = PipelinedPriorityQueue.<Integer>builder()
+                .comparator((o1, o2) -> {
+                    throw new IllegalStateException("comparator");
+                })
+                .bound(BOUND)
+                .build();
+
+        try {
+            throwingQueue.addAll(Arrays.asList(1, 2, 3));
+            fail();
+        } catch (IllegalStateException ex) {
+            assertEquals("comparator", ex.getMessage());
+        }
+        assertEquals(BOUND, throwingQueue.remainingCapacity());
+    }
+
+    @Test
+    public void PutPoll_ManyThreadsWithElimination_NeverExceedsBound() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> boundedQueue = PipelinedPriorityQueue.<Integer>builder()
+                .bound(16)
+                .elimination(2)
+                .build();
+        int perThread = 5000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                Random random = new Random();
+                for (int i = 0; i < perThread; i++) {
+                    boundedQueue.put(random.nextInt(1000));
+                    assertTrue(boundedQueue.size() <= 16);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                int taken = 0;
+                while (taken < perThread) {
+                    if (boundedQueue.poll() != null) taken++;
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+
+        assertTrue(boundedQueue.isEmpty());
+        assertEquals(16, boundedQueue.remainingCapacity());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
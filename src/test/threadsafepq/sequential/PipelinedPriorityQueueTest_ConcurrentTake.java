@@ -0,0 +1,146 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_ConcurrentTake {
+
+    private static final int NUM_ELEMENTS = 2000;
+
+    @Test
+    public void Take_ManyTakersOnFilledQueue_DequeueConcurrently() throws InterruptedException {
+        AtomicInteger comparing = new AtomicInteger();
+        AtomicInteger maxComparing = new AtomicInteger();
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .comparator((o1, o2) -> {
+                    maxComparing.accumulateAndGet(comparing.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    comparing.decrementAndGet();
+                    return Integer.compare(o1, o2);
+                })
+                .build();
+        for (int i : shuffledRange(64)) {
+            queue.put(i);
+        }
+        maxComparing.set(0);
+
+        List<Thread> takers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            takers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < 16; i++) {
+                        queue.take();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        for (Thread t : takers) t.start();
+        for (Thread t : takers) t.join();
+
+        assertTrue(queue.isEmpty());
+        assertTrue(maxComparing.get() > 1);
+    }
+
+    @Test
+    public void Take_TakersWaitingBeforeProducers_EveryElementTakenOnce() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        int numThreads = 8;
+        int perThread = NUM_ELEMENTS / numThreads;
+        long[] sums = new long[numThreads];
+        List<Thread> takers = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int id = t;
+            takers.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        sums[id] += queue.take();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        for (Thread t : takers) t.start();
+        Thread.sleep(50);
+
+        List<Thread> producers = new ArrayList<>();
+        int[] inputList = shuffledRange(NUM_ELEMENTS);
+        for (int t = 0; t < 2; t++) {
+            int offset = t * NUM_ELEMENTS / 2;
+            producers.add(new Thread(() -> {
+                for (int i = offset; i < offset + NUM_ELEMENTS / 2; i++) {
+                    queue.put(inputList[i]);
+                }
+            }));
+        }
+        for (Thread t : producers) t.start();
+        for (Thread t : producers) t.join();
+        for (Thread t : takers) t.join(10_000);
+
+        long total = 0;
+        for (int t = 0; t < numThreads; t++) {
+            assertFalse(takers.get(t).isAlive());
+            total += sums[t];
+        }
+        assertEquals((long) NUM_ELEMENTS * (NUM_ELEMENTS - 1) / 2, total);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void Take_InterruptedWhileWaiting_OtherTakerStillWoken() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        boolean[] interrupted = new boolean[1];
+        Integer[] result = new Integer[1];
+        Thread interruptedTaker = new Thread(() -> {
+            try {
+                queue.take();
+            } catch (InterruptedException ex) {
+                interrupted[0] = true;
+            }
+        });
+        Thread taker = new Thread(() -> {
+            try {
+                result[0] = queue.take();
+            } catch (InterruptedException ex) {
+            }
+        });
+        interruptedTaker.start();
+        taker.start();
+        Thread.sleep(50);
+
+        interruptedTaker.interrupt();
+        interruptedTaker.join(5000);
+        queue.put(5);
+        taker.join(5000);
+
+        assertTrue(interrupted[0]);
+        assertFalse(taker.isAlive());
+        assertEquals(5, (int) result[0]);
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -4,9 +4,13 @@ import org.junit.Test;
 import threadsafepq.PipelinedPriorityQueue;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by Taranpreet on 3/06/2017.
@@ -203,4 +207,88 @@ public class PipelinedPriorityQueueTest_Contains extends PipelinedPriorityQueueT
 
         queue.containsAll(list);
     }
+
+    @Test
+    public void ContainsAndContainsAll_Found_ReleaseEveryLevel() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = defaultQueue;
+        queue.addAll(Arrays.asList(1, 2, 3));
+
+        assertTrue(queue.contains(2));
+        // the collection is larger than the queue, but only holds elements of the queue
+        assertTrue(queue.containsAll(Arrays.asList(1, 1, 2, 2, 3)));
+
+        Thread producer = new Thread(() -> queue.offer(4));
+        producer.start();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(4, queue.size());
+    }
+
+    @Test
+    public void ContainsAll_DuplicatesInQueue_CountsEachElementOnce() {
+        PipelinedPriorityQueue<Integer> queue = defaultQueue;
+        queue.addAll(Arrays.asList(1, 1, 1));
+
+        assertFalse(queue.containsAll(Arrays.asList(1, 2)));
+        assertTrue(queue.containsAll(Arrays.asList(1)));
+        assertTrue(queue.containsAll(new ArrayList<>()));
+    }
+
+    @Test
+    public void ContainsAndContainsAll_SlotIndex_FollowOffersPollsAndRemovals() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        for (int i = 0; i < 100; i++) {
+            queue.offer(i);
+        }
+        queue.poll();
+        queue.remove(50);
+        queue.offer(7);
+        queue.remove(7);
+
+        assertFalse(queue.contains(0));
+        assertFalse(queue.contains(50));
+        assertFalse(queue.contains(null));
+        assertTrue(queue.contains(7));
+        assertTrue(queue.contains(99));
+        assertTrue(queue.containsAll(Arrays.asList(1, 7, 49, 51, 99)));
+        assertFalse(queue.containsAll(Arrays.asList(1, 50)));
+
+        queue.clear();
+        assertFalse(queue.contains(7));
+    }
+
+    @Test
+    public void Contains_SlotIndexWithConcurrentWriters_AlwaysFindsResidentElements() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        List<Integer> residents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            residents.add(1_000_000 + i);
+        }
+        queue.addAll(residents);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            int offset = t;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    queue.offer(offset * 20_000 + i);
+                    if (i % 2 == 1) queue.poll();
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+
+        while (!done.get()) {
+            for (int resident : residents) {
+                assertTrue(queue.contains(resident));
+            }
+            done.set(true);
+            for (Thread writer : writers) {
+                if (writer.isAlive()) done.set(false);
+            }
+        }
+        for (Thread writer : writers) writer.join();
+        assertTrue(queue.containsAll(residents));
+    }
 }
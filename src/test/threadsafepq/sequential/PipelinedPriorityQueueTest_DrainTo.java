@@ -0,0 +1,147 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_DrainTo {
+
+    private static final int NUM_ELEMENTS = 2000;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8};
+
+    @Test(expected = NullPointerException.class)
+    public void DrainTo_NullCollection_ThrowsNullPointerException() {
+        new PipelinedPriorityQueue<Integer>().drainTo(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void DrainTo_Self_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.drainTo(queue, 1);
+    }
+
+    @Test
+    public void DrainTo_EmptyQueue_ReturnsZero() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        List<Integer> sink = new ArrayList<>();
+        assertEquals(0, queue.drainTo(sink));
+        assertTrue(sink.isEmpty());
+    }
+
+    @Test
+    public void DrainTo_EmptySink_DrainsWholeQueueInOrder() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+
+        assertEquals(NUM_ELEMENTS, queue.drainTo(sink));
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) sink.get(i));
+        }
+
+        queue.put(2);
+        queue.put(1);
+        assertEquals(1, (int) queue.poll());
+        assertEquals(2, (int) queue.poll());
+    }
+
+    @Test
+    public void DrainTo_WholeQueueEveryArity_LeavesUsableEmptyHeap() {
+        for (int arity : ARITIES) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .arity(arity)
+                    .build();
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.put(i);
+            }
+            List<Integer> sink = new ArrayList<>();
+
+            assertEquals(NUM_ELEMENTS, queue.drainTo(sink, NUM_ELEMENTS));
+            assertTrue(queue.isEmpty());
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.put(i);
+            }
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                assertEquals(i, (int) queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void DrainTo_PartialEveryArityAndStorageMode_KeepsRemainingOrdered() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            for (int arity : ARITIES) {
+                for (int maxElements : new int[]{1, 10, NUM_ELEMENTS / 3, NUM_ELEMENTS - 1}) {
+                    PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                            .storageMode(storageMode)
+                            .arity(arity)
+                            .build();
+                    for (int i : shuffledRange(NUM_ELEMENTS)) {
+                        queue.put(i);
+                    }
+                    List<Integer> sink = new ArrayList<>();
+
+                    assertEquals(maxElements, queue.drainTo(sink, maxElements));
+                    assertEquals(NUM_ELEMENTS - maxElements, queue.size());
+                    for (int i = 0; i < maxElements; i++) {
+                        assertEquals(i, (int) sink.get(i));
+                    }
+
+                    // the rebuilt heap must accept new elements and stay ordered
+                    queue.put(-1);
+                    queue.put(NUM_ELEMENTS);
+                    assertEquals(-1, (int) queue.poll());
+                    for (int i = maxElements; i <= NUM_ELEMENTS; i++) {
+                        assertEquals(i, (int) queue.poll());
+                    }
+                    assertNull(queue.poll());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void DrainTo_DuplicatesAndComparator_DrainsInComparatorOrder() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(10, Comparator.reverseOrder());
+        Random random = new Random(NUM_ELEMENTS);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            int value = random.nextInt(20);
+            queue.put(value);
+            expected.add(value);
+        }
+        expected.sort(Comparator.reverseOrder());
+        List<Integer> sink = new ArrayList<>();
+
+        assertEquals(NUM_ELEMENTS / 2, queue.drainTo(sink, NUM_ELEMENTS / 2));
+        queue.drainTo(sink);
+
+        assertEquals(expected, sink);
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
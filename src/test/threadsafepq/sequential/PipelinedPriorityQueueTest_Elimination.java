@@ -0,0 +1,122 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.EliminationArray;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_Elimination {
+
+    private static final int NUM_ELEMENTS = 1000;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_ZeroSlots_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().elimination(0);
+    }
+
+    @Test
+    public void HandOff_NoWaitingPoll_ReturnsFalse() {
+        EliminationArray<Integer> eliminationArray = new EliminationArray<>(4, 16);
+        assertFalse(eliminationArray.handOff(1));
+        assertEquals(0, eliminationArray.getHits());
+    }
+
+    @Test
+    public void AwaitElement_NoOffer_ReturnsNull() {
+        EliminationArray<Integer> eliminationArray = new EliminationArray<>(1, 16);
+        assertNull(eliminationArray.awaitElement());
+        assertEquals(1, eliminationArray.getAttempts());
+        assertEquals(0, eliminationArray.getHits());
+    }
+
+    @Test
+    public void AwaitElement_ConcurrentHandOff_ReceivesElement() throws InterruptedException {
+        EliminationArray<Integer> eliminationArray = new EliminationArray<>(1, Integer.MAX_VALUE);
+        Integer[] received = new Integer[1];
+        Thread poller = new Thread(() -> received[0] = eliminationArray.awaitElement());
+        poller.start();
+        while (!eliminationArray.handOff(42)) {
+            Thread.yield();
+        }
+        poller.join(5000);
+
+        assertEquals(42, (int) received[0]);
+        assertEquals(1, eliminationArray.getHits());
+    }
+
+    @Test
+    public void Poll_UncontendedQueue_DequeuesInStrictOrderWithoutElimination() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .elimination(4)
+                .build();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.getEliminationAttempts());
+    }
+
+    @Test
+    public void OfferPoll_ManyThreads_KeepsEveryElement() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .elimination(4)
+                .build();
+        int numThreads = 8;
+        List<List<Integer>> polled = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            List<Integer> own = new ArrayList<>();
+            polled.add(own);
+            int offset = t * NUM_ELEMENTS;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    queue.offer(offset + i);
+                    Integer value = queue.poll();
+                    if (value != null) own.add(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        List<Integer> all = new ArrayList<>();
+        for (List<Integer> own : polled) all.addAll(own);
+        Integer value;
+        while ((value = queue.poll()) != null) all.add(value);
+        Collections.sort(all);
+
+        assertEquals(numThreads * NUM_ELEMENTS, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(i, (int) all.get(i));
+        }
+        assertTrue(queue.getEliminationHits() <= queue.getEliminationAttempts());
+        assertEquals(0, queue.size());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
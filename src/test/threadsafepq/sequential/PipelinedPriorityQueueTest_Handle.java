@@ -0,0 +1,367 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.Handle;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_Handle {
+
+    private static final int NUM_ELEMENTS = 2000;
+
+    @Test
+    public void UpdatePriority_RaisedAndLowered_PolledInNewOrder() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            List<Handle<Integer>> handles = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                handles.add(queue.offerWithHandle(10 * (i + 1)));
+            }
+
+            assertTrue(handles.get(9).updatePriority(5));
+            assertTrue(handles.get(0).updatePriority(95));
+            assertTrue(handles.get(4).updatePriority(55));
+            assertEquals(95, (int) handles.get(0).getValue());
+
+            int[] expected = {5, 20, 30, 40, 55, 60, 70, 80, 90, 95};
+            for (int e : expected) {
+                assertEquals(e, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void UpdatePriority_ElementPolledOrRemoved_ReturnsFalse() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            Handle<Integer> polled = queue.offerWithHandle(1);
+            Handle<Integer> removed = queue.offerWithHandle(2);
+            Handle<Integer> kept = queue.offerWithHandle(3);
+
+            assertEquals(1, (int) queue.poll());
+            assertTrue(removed.remove());
+            assertFalse(polled.updatePriority(0));
+            assertFalse(removed.updatePriority(0));
+            assertFalse(removed.remove());
+            assertEquals(1, (int) polled.getValue());
+
+            assertTrue(kept.updatePriority(4));
+            assertEquals(1, queue.size());
+            assertEquals(4, (int) queue.poll());
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void UpdatePriority_NullElement_ThrowsException() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        queue.offerWithHandle(1).updatePriority(null);
+    }
+
+    @Test
+    public void OfferWithHandle_BoundedQueueFull_ReturnsNullAndUpdatesStillApply() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .slotIndex()
+                .bound(3)
+                .build();
+        queue.offerWithHandle(10);
+        queue.offerWithHandle(20);
+        Handle<Integer> last = queue.offerWithHandle(30);
+
+        assertNull(queue.offerWithHandle(40));
+        assertTrue(last.updatePriority(5));
+        assertEquals(0, queue.remainingCapacity());
+        assertEquals(Arrays.asList(5, 10, 20), Arrays.asList(queue.poll(), queue.poll(), queue.poll()));
+    }
+
+    @Test(timeout = 10000)
+    public void UpdatePriority_BoundedQueueFullWithSpinningProducer_NeverBlocks() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .slotIndex()
+                .bound(3)
+                .build();
+        queue.offerWithHandle(10);
+        queue.offerWithHandle(20);
+        Handle<Integer> last = queue.offerWithHandle(30);
+        Thread producer = new Thread(() -> {
+            while (!queue.offer(Integer.MAX_VALUE)) {
+                Thread.yield();
+            }
+        });
+        producer.start();
+
+        // every update outranks the root, so the element moves up the heap while the producer tries to offer
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertTrue(last.updatePriority(-i));
+            assertTrue(last.updatePriority(30 + i));
+        }
+        assertTrue(producer.isAlive());
+        assertEquals(3, queue.size());
+
+        assertEquals(10, (int) queue.poll());
+        producer.join();
+        assertEquals(Arrays.asList(20, 30 + NUM_ELEMENTS - 1, Integer.MAX_VALUE),
+                Arrays.asList(queue.poll(), queue.poll(), queue.poll()));
+    }
+
+    @Test(timeout = 10000)
+    public void UpdatePriority_ElementHeldMidInsert_WaitsForLevelsInsteadOfSpinning() throws InterruptedException {
+        Object displaced = new Object();
+        AtomicReference<Object> watched = new AtomicReference<>();
+        AtomicInteger comparisons = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        // orders integers by value ahead of every other element, which are all equal, so a displaced element
+        // never lands early
+        PipelinedPriorityQueue<Object> queue = PipelinedPriorityQueue.builder()
+                .comparator((a, b) -> {
+                    if ((a == watched.get() || b == watched.get()) && comparisons.incrementAndGet() == 3) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    if (a instanceof Integer && b instanceof Integer) return Integer.compare((int) a, (int) b);
+                    return Integer.compare(a instanceof Integer ? 0 : 1, b instanceof Integer ? 0 : 1);
+                })
+                .initialCapacity(64)
+                .slotIndex()
+                .build();
+        Handle<Object> handle = queue.offerWithHandle(displaced);
+        for (int i = 1; i < 31; i++) {
+            queue.offer(new Object());
+        }
+        watched.set(displaced);
+
+        // the insert displaces the element at the root and carries it down, stopping two levels below the root
+        Thread producer = new Thread(() -> queue.offer(0));
+        producer.start();
+        while (comparisons.get() < 3) {
+            Thread.yield();
+        }
+        boolean[] updated = new boolean[1];
+        Thread updater = new Thread(() -> updated[0] = handle.updatePriority(1));
+        updater.start();
+        while (updater.getState() == Thread.State.RUNNABLE || updater.getState() == Thread.State.NEW) {
+            Thread.yield();
+        }
+
+        release.countDown();
+        updater.join();
+        producer.join();
+        assertTrue(updated[0]);
+        assertEquals(32, queue.size());
+        assertFalse(queue.contains(displaced));
+        assertTrue(handle.updatePriority(-1));
+        assertEquals(-1, queue.poll());
+        assertEquals(0, queue.poll());
+        assertFalse(handle.remove());
+    }
+
+    @Test
+    public void UpdatePriority_RandomUpdates_PolledInOrderOfFinalValues() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            Random random = new Random(NUM_ELEMENTS);
+            Set<Integer> used = new HashSet<>();
+            List<Handle<Integer>> handles = new ArrayList<>();
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                handles.add(queue.offerWithHandle(i * 10));
+                used.add(i * 10);
+            }
+            for (int i = 0; i < 4 * NUM_ELEMENTS; i++) {
+                Handle<Integer> handle = handles.get(random.nextInt(handles.size()));
+                int value;
+                do {
+                    value = random.nextInt(NUM_ELEMENTS * 10);
+                } while (!used.add(value));
+                used.remove(handle.getValue());
+                assertTrue(handle.updatePriority(value));
+            }
+
+            List<Integer> expected = new ArrayList<>(used);
+            Collections.sort(expected);
+            assertEquals(expected.size(), queue.size());
+            for (int e : expected) {
+                assertEquals(e, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void UpdatePriority_ConcurrentUpdatersAndProducers_PolledInOrderOfFinalValues()
+            throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        int numThreads = 4;
+        List<List<Handle<Integer>>> owned = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int offset = t;
+            List<Handle<Integer>> handles = new ArrayList<>();
+            owned.add(handles);
+            Thread thread = new Thread(() -> {
+                Random random = new Random(offset);
+                // every thread uses values with its own remainder, so values never collide
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    handles.add(queue.offerWithHandle(random.nextInt(NUM_ELEMENTS) * numThreads + offset));
+                    Handle<Integer> handle = handles.get(random.nextInt(handles.size()));
+                    assertTrue(handle.updatePriority(random.nextInt(NUM_ELEMENTS) * numThreads + offset));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        List<Integer> expected = new ArrayList<>();
+        for (List<Handle<Integer>> handles : owned) {
+            for (Handle<Integer> handle : handles) expected.add(handle.getValue());
+        }
+        Collections.sort(expected);
+        assertEquals(expected.size(), queue.size());
+        for (int e : expected) {
+            assertEquals(e, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Remove_EqualElements_RemovesInstanceOfHandle() {
+        for (PipelinedPriorityQueue<Item> queue : itemQueues()) {
+            List<Handle<Item>> handles = new ArrayList<>();
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                handles.add(queue.offerWithHandle(new Item(i % 4, i)));
+            }
+            Set<Integer> kept = new HashSet<>();
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                if (i % 3 == 0) {
+                    assertTrue(handles.get(i).remove());
+                } else {
+                    kept.add(i);
+                }
+            }
+
+            assertEquals(kept.size(), queue.size());
+            Item item;
+            while ((item = queue.poll()) != null) {
+                assertTrue(kept.remove(item.id));
+            }
+            assertTrue(kept.isEmpty());
+        }
+    }
+
+    @Test
+    public void UpdatePriority_EqualElements_UpdatesInstanceOfHandle() {
+        for (PipelinedPriorityQueue<Item> queue : itemQueues()) {
+            List<Handle<Item>> handles = new ArrayList<>();
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                handles.add(queue.offerWithHandle(new Item(NUM_ELEMENTS, i)));
+            }
+            // every other handle moves its own instance below the rest, keeping the same id
+            for (int i = 0; i < NUM_ELEMENTS; i += 2) {
+                assertTrue(handles.get(i).updatePriority(new Item(i, i)));
+            }
+            for (int i = 0; i < NUM_ELEMENTS; i += 2) {
+                assertTrue(handles.get(i).remove());
+            }
+
+            assertEquals(NUM_ELEMENTS / 2, queue.size());
+            Item item;
+            while ((item = queue.poll()) != null) {
+                assertEquals(NUM_ELEMENTS, item.key);
+                assertEquals(1, item.id % 2);
+            }
+        }
+    }
+
+    @Test
+    public void UpdatePriority_HeapRebuilt_StillApplies() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            List<Handle<Integer>> handles = new ArrayList<>();
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                handles.add(queue.offerWithHandle(i * 10));
+            }
+            for (int i = 0; i < NUM_ELEMENTS / 2; i++) {
+                queue.poll();
+            }
+            queue.trimToSize();
+
+            for (Handle<Integer> handle : handles) {
+                int value = handle.getValue();
+                assertEquals(value >= NUM_ELEMENTS * 5, handle.updatePriority(value + 1));
+            }
+            for (int i = NUM_ELEMENTS / 2; i < NUM_ELEMENTS; i++) {
+                assertEquals(i * 10 + 1, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    private List<PipelinedPriorityQueue<Item>> itemQueues() {
+        return Arrays.asList(
+                PipelinedPriorityQueue.<Item>builder().slotIndex().build(),
+                PipelinedPriorityQueue.<Item>builder().slotIndex().arity(4).incrementalResize(16).build());
+    }
+
+    private List<PipelinedPriorityQueue<Integer>> queues() {
+        return Arrays.asList(
+                new PipelinedPriorityQueue<>(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().build(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().arity(4).incrementalResize(16).build());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+
+    /**
+     * An element ordered and compared for equality by its key alone, so that equal elements can be told apart
+     */
+    private static final class Item implements Comparable<Item> {
+
+        private final int key;
+        private final int id;
+
+        Item(int key, int id) {
+            this.key = key;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Item other) {
+            return Integer.compare(key, other.key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && ((Item) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_IncrementalResize {
+
+    private static final int NUM_ELEMENTS = 2000;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8};
+    private static final int[] CHUNK_SIZES = new int[]{1, 16, 1024};
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_NonPositiveChunkSize_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().incrementalResize(0);
+    }
+
+    @Test
+    public void Poll_RandomOrderEveryChunkSizeAndArity_CorrectlyDequeuesItems() {
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int arity : ARITIES) {
+                PipelinedPriorityQueue<Integer> queue = newQueue(chunkSize, arity, StorageMode.ELEMENTS);
+                for (int i : shuffledRange(NUM_ELEMENTS)) {
+                    queue.put(i);
+                }
+
+                assertEquals(NUM_ELEMENTS, queue.size());
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    assertEquals(i, (int) queue.poll());
+                }
+                assertNull(queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void Poll_InterleavedParallelArrays_MatchesPriorityQueue() {
+        PipelinedPriorityQueue<Integer> queue = newQueue(1, 2, StorageMode.PARALLEL_ARRAYS);
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        int[] inputList = shuffledRange(NUM_ELEMENTS);
+        for (int i = 0; i < inputList.length; i++) {
+            queue.put(inputList[i]);
+            expected.add(inputList[i]);
+            if (i % 3 == 0) {
+                assertEquals(expected.poll(), queue.poll());
+            }
+        }
+
+        while (!expected.isEmpty()) {
+            assertEquals(expected.poll(), queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void Peek_DuringResize_ReturnsHead() {
+        PipelinedPriorityQueue<Integer> queue = newQueue(1, 2, StorageMode.ELEMENTS);
+        for (int i = 200; i > 0; i--) {
+            queue.put(i);
+            assertEquals(i, (int) queue.peek());
+        }
+    }
+
+    @Test
+    public void ToArrayAndContains_DuringResize_SeeEveryElement() {
+        PipelinedPriorityQueue<Integer> queue = newQueue(1, 2, StorageMode.ELEMENTS);
+        for (int i : shuffledRange(100)) {
+            queue.put(i);
+        }
+
+        Integer[] result = queue.toArray(new Integer[0]);
+        Arrays.sort(result);
+        Integer[] expected = new Integer[100];
+        for (int i = 0; i < expected.length; i++) expected[i] = i;
+        assertArrayEquals(expected, result);
+        assertTrue(queue.contains(99));
+        assertFalse(queue.contains(100));
+    }
+
+    @Test
+    public void AddAllAndDrainTo_DuringResize_KeepOrder() {
+        PipelinedPriorityQueue<Integer> queue = newQueue(1, 2, StorageMode.ELEMENTS);
+        for (int i : shuffledRange(100)) {
+            queue.put(i + NUM_ELEMENTS);
+        }
+        List<Integer> input = new ArrayList<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            input.add(i);
+        }
+        queue.addAll(input);
+
+        List<Integer> sink = new ArrayList<>();
+        assertEquals(NUM_ELEMENTS, queue.drainTo(sink, NUM_ELEMENTS));
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) sink.get(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + NUM_ELEMENTS, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Clear_DuringResize_QueueIsEmptyAndReusable() {
+        PipelinedPriorityQueue<Integer> queue = newQueue(1, 2, StorageMode.ELEMENTS);
+        for (int i : shuffledRange(500)) {
+            queue.put(i);
+        }
+        queue.clear();
+
+        assertTrue(queue.isEmpty());
+        for (int i : shuffledRange(500)) {
+            queue.put(i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+    }
+
+    private PipelinedPriorityQueue<Integer> newQueue(int chunkSize, int arity, StorageMode storageMode) {
+        return PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(1)
+                .arity(arity)
+                .storageMode(storageMode)
+                .incrementalResize(chunkSize)
+                .build();
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
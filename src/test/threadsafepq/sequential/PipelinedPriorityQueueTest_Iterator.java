@@ -0,0 +1,169 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_Iterator {
+
+    private static final int NUM_ELEMENTS = 5000;
+
+    @Test
+    public void Iterator_FilledQueue_ReturnsEveryElementWithoutRemoving() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer e : queue) {
+            iterated.add(e);
+        }
+        Collections.sort(iterated);
+
+        assertEquals(NUM_ELEMENTS, queue.size());
+        assertEquals(NUM_ELEMENTS, iterated.size());
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) iterated.get(i));
+        }
+        assertEquals(0, (int) queue.poll());
+    }
+
+    @Test
+    public void Iterator_EmptyQueue_HasNoNext() {
+        Iterator<Integer> iterator = new PipelinedPriorityQueue<Integer>().iterator();
+
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            assertTrue(false);
+        } catch (NoSuchElementException ex) {
+        }
+    }
+
+    @Test
+    public void IteratorRemove_OddElements_RemovesOnlyThose() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+
+        Iterator<Integer> iterator = queue.iterator();
+        try {
+            iterator.remove();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 1) iterator.remove();
+        }
+
+        assertEquals(NUM_ELEMENTS / 2, queue.size());
+        for (int i = 0; i < NUM_ELEMENTS; i += 2) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Stream_Parallel_SumsEveryElement() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().arity(4).build();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+
+        long sum = queue.stream().parallel().mapToLong(Integer::longValue).sum();
+        List<Integer> sorted = queue.stream().parallel().sorted().collect(Collectors.toList());
+
+        assertEquals((long) NUM_ELEMENTS * (NUM_ELEMENTS - 1) / 2, sum);
+        assertEquals(NUM_ELEMENTS, sorted.size());
+        assertEquals(NUM_ELEMENTS - 1, (int) sorted.get(NUM_ELEMENTS - 1));
+        assertEquals(NUM_ELEMENTS, queue.size());
+    }
+
+    @Test
+    public void Spliterator_Split_HalvesCoverEveryElementOnce() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+
+        Spliterator<Integer> suffix = queue.spliterator();
+        Spliterator<Integer> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertTrue(suffix.hasCharacteristics(Spliterator.CONCURRENT));
+        assertTrue(suffix.hasCharacteristics(Spliterator.NONNULL));
+
+        List<Integer> iterated = new ArrayList<>();
+        prefix.forEachRemaining(iterated::add);
+        int prefixSize = iterated.size();
+        suffix.forEachRemaining(iterated::add);
+        Collections.sort(iterated);
+
+        assertTrue(prefixSize > 0 && prefixSize < NUM_ELEMENTS);
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) iterated.get(i));
+        }
+    }
+
+    @Test
+    public void Iterator_ConcurrentWriters_ReturnsOnlyQueuedValues() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            Random random = new Random(NUM_ELEMENTS);
+            while (!done.get()) {
+                queue.offer(random.nextInt(NUM_ELEMENTS));
+                queue.poll();
+            }
+        });
+        writer.start();
+
+        try {
+            for (int round = 0; round < 20; round++) {
+                int count = 0;
+                for (Integer e : queue) {
+                    assertTrue(e >= 0 && e < NUM_ELEMENTS);
+                    count++;
+                }
+                assertTrue(count > 0);
+                assertTrue(queue.stream().parallel().allMatch(e -> e >= 0 && e < NUM_ELEMENTS));
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+        assertEquals(NUM_ELEMENTS, queue.size());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,113 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_PollBatch {
+
+    private static final int NUM_ELEMENTS = 1000;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8};
+
+    @Test(expected = NullPointerException.class)
+    public void PollBatch_NullSink_ThrowsNullPointerException() {
+        new PipelinedPriorityQueue<Integer>().pollBatch(1, null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void PollBatch_Self_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.pollBatch(1, queue);
+    }
+
+    @Test
+    public void PollBatch_EmptyQueue_ReturnsZero() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        List<Integer> sink = new ArrayList<>();
+        assertEquals(0, queue.pollBatch(32, sink));
+        assertTrue(sink.isEmpty());
+    }
+
+    @Test
+    public void PollBatch_NonPositiveK_ReturnsZero() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        queue.put(1);
+        assertEquals(0, queue.pollBatch(0, new ArrayList<>()));
+        assertEquals(0, queue.pollBatch(-1, new ArrayList<>()));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void PollBatch_RepeatedBatchesEveryArity_ReturnsElementsInOrder() {
+        for (int arity : ARITIES) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .arity(arity)
+                    .build();
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.put(i);
+            }
+
+            List<Integer> sink = new ArrayList<>();
+            while (queue.pollBatch(37, sink) > 0) {
+                assertEquals(NUM_ELEMENTS - sink.size(), queue.size());
+            }
+
+            assertEquals(NUM_ELEMENTS, sink.size());
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                assertEquals(i, (int) sink.get(i));
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void PollBatch_KLargerThanSize_ReturnsAllElements() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(10)) {
+            queue.put(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+
+        assertEquals(10, queue.pollBatch(256, sink));
+        assertEquals(0, queue.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) sink.get(i));
+        }
+    }
+
+    @Test
+    public void PollBatch_InterleavedWithOffers_KeepsHeapOrdered() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+        queue.pollBatch(100, sink);
+        queue.put(-1);
+        queue.put(50);
+
+        assertEquals(-1, (int) queue.poll());
+        assertEquals(50, (int) queue.poll());
+        assertEquals(100, (int) queue.poll());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,159 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_RelaxedPoll {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_ZeroConsumers_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().relaxedPolling(0);
+    }
+
+    @Test
+    public void Poll_SingleExpectedConsumer_DequeuesInStrictOrder() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .relaxedPolling(1)
+                .build();
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 10);
+        for (int i : inputList) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < inputList.length; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Poll_RelaxedMultipleResize_DequeuesEveryElementOnce() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .initialCapacity(CUSTOM_INITIAL_CAPACITY)
+                    .storageMode(storageMode)
+                    .relaxedPolling(16)
+                    .build();
+            int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 30);
+            for (int i : inputList) {
+                queue.put(i);
+            }
+
+            List<Integer> polled = new ArrayList<>();
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                polled.add(value);
+            }
+            Collections.sort(polled);
+
+            assertEquals(inputList.length, polled.size());
+            for (int i = 0; i < inputList.length; i++) {
+                assertEquals(i, (int) polled.get(i));
+            }
+            assertEquals(0, queue.size());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void Poll_RelaxedInterleavedOperations_KeepsEveryElement() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(CUSTOM_INITIAL_CAPACITY)
+                .relaxedPolling(8)
+                .build();
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        Random random = new Random(CUSTOM_INITIAL_CAPACITY);
+        for (int i = 0; i < 20_000; i++) {
+            if (random.nextInt(3) == 0) {
+                Integer value = queue.poll();
+                if (value == null) {
+                    assertTrue(expected.isEmpty());
+                } else {
+                    assertTrue(expected.remove(value));
+                }
+            } else {
+                int value = random.nextInt(1000);
+                queue.put(value);
+                expected.add(value);
+            }
+            assertEquals(expected.size(), queue.size());
+        }
+
+        // the heap must still be ordered, so the root holds the highest priority element
+        assertEquals(expected.peek(), queue.peek());
+    }
+
+    @Test
+    public void Poll_RelaxedRepeatedFillAndDrain_DequeuesEveryElement() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(CUSTOM_INITIAL_CAPACITY)
+                .relaxedPolling(16)
+                .build();
+        for (int round = 0; round < 100; round++) {
+            for (int i : shuffledRange(CUSTOM_INITIAL_CAPACITY)) {
+                queue.put(i);
+            }
+            for (int i = 0; i < CUSTOM_INITIAL_CAPACITY; i++) {
+                assertTrue(queue.poll() != null);
+            }
+        }
+
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Poll_RelaxedShrinkPolicyRepeatedBursts_DequeuesEveryElement() {
+        for (StorageMode storageMode : StorageMode.values()) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .initialCapacity(4)
+                    .storageMode(storageMode)
+                    .relaxedPolling(16)
+                    .shrinkBelow(0.25)
+                    .build();
+            List<Integer> polled = new ArrayList<>();
+            for (int round = 0; round < 5; round++) {
+                for (int i : shuffledRange(10 * CUSTOM_INITIAL_CAPACITY)) {
+                    queue.put(round * 10 * CUSTOM_INITIAL_CAPACITY + i);
+                }
+                Integer value;
+                while ((value = queue.poll()) != null) {
+                    polled.add(value);
+                }
+            }
+
+            Collections.sort(polled);
+            assertEquals(50 * CUSTOM_INITIAL_CAPACITY, polled.size());
+            for (int i = 0; i < polled.size(); i++) {
+                assertEquals(i, (int) polled.get(i));
+            }
+            assertEquals(0, queue.size());
+        }
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
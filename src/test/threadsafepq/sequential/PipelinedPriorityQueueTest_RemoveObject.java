@@ -0,0 +1,302 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_RemoveObject {
+
+    private static final int NUM_ELEMENTS = 2000;
+
+    @Test
+    public void Remove_ThirdOfElements_RemainingPolledInOrder() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(i);
+            }
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                if (i % 3 == 0) assertTrue(queue.remove(i));
+            }
+
+            assertEquals(NUM_ELEMENTS - (NUM_ELEMENTS + 2) / 3, queue.size());
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                if (i % 3 != 0) assertEquals(i, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void Remove_AbsentOrNullElement_ReturnsFalse() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            assertFalse(queue.remove(1));
+            queue.addAll(Arrays.asList(3, 1, 2));
+
+            assertFalse(queue.remove(4));
+            assertFalse(queue.remove(null));
+            assertFalse(queue.remove("1"));
+            assertEquals(3, queue.size());
+        }
+    }
+
+    @Test
+    public void Remove_DuplicateElements_RemovesOneInstanceAtATime() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i = 0; i < 50; i++) {
+                queue.offer(i % 5);
+            }
+
+            for (int i = 0; i < 10; i++) {
+                assertTrue(queue.remove(2));
+                assertEquals(49 - i, queue.size());
+            }
+            assertFalse(queue.remove(2));
+            for (int i = 0; i < 40; i++) {
+                int expected = i / 10 < 2 ? i / 10 : i / 10 + 1;
+                assertEquals(expected, (int) queue.poll());
+            }
+        }
+    }
+
+    @Test
+    public void Remove_ThenRefill_CapacitiesStayConsistent() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            int[] values = shuffledRange(NUM_ELEMENTS);
+            for (int round = 0; round < 5; round++) {
+                for (int i : values) {
+                    queue.offer(i);
+                }
+                for (int i : values) {
+                    if (i % 2 == round % 2) assertTrue(queue.remove(i));
+                }
+            }
+
+            List<Integer> expected = new ArrayList<>();
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    if (i % 2 != round % 2) expected.add(i);
+                }
+            }
+            Collections.sort(expected);
+            assertEquals(expected.size(), queue.size());
+            for (int e : expected) {
+                assertEquals(e, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void Remove_RelaxedPolling_EveryOtherElementPolledOnce() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .slotIndex()
+                .relaxedPolling(4)
+                .build();
+        Set<Integer> expected = new HashSet<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(round * NUM_ELEMENTS + i);
+            }
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                if (i % 3 == 0) assertTrue(queue.remove(round * NUM_ELEMENTS + i));
+                else expected.add(round * NUM_ELEMENTS + i);
+            }
+            for (int i = 0; i < NUM_ELEMENTS / 3; i++) {
+                assertTrue(expected.remove(queue.poll()));
+            }
+        }
+
+        assertEquals(expected.size(), queue.size());
+        Integer value;
+        while ((value = queue.poll()) != null) {
+            assertTrue(expected.remove(value));
+        }
+        assertTrue(expected.isEmpty());
+    }
+
+    @Test
+    public void RemoveAll_SmallAndLargeCollections_RemovesEveryInstance() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(i % 100);
+            }
+
+            assertTrue(queue.removeAll(Arrays.asList(7, 42)));
+            assertFalse(queue.removeAll(Arrays.asList(7, 42, 1000)));
+            Set<Integer> large = new HashSet<>();
+            for (int i = 50; i < 100; i++) large.add(i);
+            assertTrue(queue.removeAll(large));
+
+            assertEquals(48 * NUM_ELEMENTS / 100, queue.size());
+            int previous = -1;
+            while (!queue.isEmpty()) {
+                int value = queue.poll();
+                assertTrue(value >= previous && value < 50 && value != 7 && value != 42);
+                previous = value;
+            }
+        }
+    }
+
+    @Test
+    public void RetainAll_SomeElementsContained_KeepsOnlyThose() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(i);
+            }
+            Set<Integer> retained = new HashSet<>();
+            for (int i = 0; i < NUM_ELEMENTS; i += 7) retained.add(i);
+
+            assertTrue(queue.retainAll(retained));
+            assertFalse(queue.retainAll(retained));
+
+            assertEquals(retained.size(), queue.size());
+            for (int i = 0; i < NUM_ELEMENTS; i += 7) {
+                assertEquals(i, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void RemoveAllAndRetainAll_SelfOrNull_HandledLikeCollections() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        queue.addAll(Arrays.asList(3, 1, 2));
+
+        assertFalse(queue.retainAll(queue));
+        assertEquals(3, queue.size());
+        assertTrue(queue.removeAll(queue));
+        assertTrue(queue.isEmpty());
+        try {
+            queue.removeAll(null);
+            assertTrue(false);
+        } catch (NullPointerException ex) {
+        }
+    }
+
+    @Test
+    public void Remove_ConcurrentProducersAndCancellers_AllOthersPolledInOrder() throws InterruptedException {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            int numThreads = 4;
+            AtomicInteger removed = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int offset = t;
+                Thread thread = new Thread(() -> {
+                    Random random = new Random(offset);
+                    List<Integer> offered = new ArrayList<>();
+                    for (int i = offset; i < NUM_ELEMENTS; i += numThreads) {
+                        queue.offer(i);
+                        offered.add(i);
+                        if (random.nextInt(3) == 0) {
+                            int value = offered.remove(random.nextInt(offered.size()));
+                            assertTrue(queue.remove(value));
+                            removed.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) thread.join();
+
+            assertEquals(NUM_ELEMENTS - removed.get(), queue.size());
+            int previous = -1;
+            int polled = 0;
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                assertTrue(value > previous);
+                previous = value;
+                polled++;
+            }
+            assertEquals(NUM_ELEMENTS - removed.get(), polled);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void Remove_ElementHeldMidInsert_WaitsForLevelsInsteadOfSpinning() throws InterruptedException {
+        Object displaced = new Object();
+        AtomicReference<Object> watched = new AtomicReference<>();
+        AtomicInteger comparisons = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        // orders every element equally except the one offered last, so a displaced element never lands early
+        PipelinedPriorityQueue<Object> queue = PipelinedPriorityQueue.builder()
+                .comparator((a, b) -> {
+                    if ((a == watched.get() || b == watched.get()) && comparisons.incrementAndGet() == 3) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return Integer.compare(a instanceof Integer ? 0 : 1, b instanceof Integer ? 0 : 1);
+                })
+                .initialCapacity(64)
+                .slotIndex()
+                .build();
+        queue.offer(displaced);
+        for (int i = 1; i < 31; i++) {
+            queue.offer(new Object());
+        }
+        watched.set(displaced);
+
+        // the insert displaces the element at the root and carries it down, stopping two levels below the root
+        Thread producer = new Thread(() -> queue.offer(0));
+        producer.start();
+        while (comparisons.get() < 3) {
+            Thread.yield();
+        }
+        boolean[] removed = new boolean[1];
+        Thread remover = new Thread(() -> removed[0] = queue.remove(displaced));
+        remover.start();
+        while (remover.getState() == Thread.State.RUNNABLE || remover.getState() == Thread.State.NEW) {
+            Thread.yield();
+        }
+
+        release.countDown();
+        remover.join();
+        producer.join();
+        assertTrue(removed[0]);
+        assertEquals(31, queue.size());
+        assertFalse(queue.contains(displaced));
+        assertEquals(0, queue.poll());
+    }
+
+    private List<PipelinedPriorityQueue<Integer>> queues() {
+        return Arrays.asList(
+                new PipelinedPriorityQueue<>(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().build(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().arity(4).build(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().storageMode(StorageMode.SEGMENTED)
+                        .incrementalResize(16).build(),
+                PipelinedPriorityQueue.<Integer>builder().slotIndex().shrinkBelow(0.25).build());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
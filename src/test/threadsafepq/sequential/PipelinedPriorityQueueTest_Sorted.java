@@ -0,0 +1,151 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_Sorted {
+
+    private static final int NUM_ELEMENTS = 5000;
+
+    @Test
+    public void SortedIterator_FilledQueue_ReturnsElementsInOrderWithoutRemoving() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(i);
+            }
+
+            Iterator<Integer> iterator = queue.sortedIterator();
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                assertTrue(iterator.hasNext());
+                assertEquals(i, (int) iterator.next());
+            }
+            assertFalse(iterator.hasNext());
+            assertEquals(NUM_ELEMENTS, queue.size());
+            assertEquals(0, (int) queue.peek());
+        }
+    }
+
+    @Test
+    public void SortedIterator_EmptyQueue_HasNoNext() {
+        Iterator<Integer> iterator = new PipelinedPriorityQueue<Integer>().sortedIterator();
+
+        assertFalse(iterator.hasNext());
+        try {
+            iterator.next();
+            assertTrue(false);
+        } catch (NoSuchElementException ex) {
+        }
+    }
+
+    @Test
+    public void SortedStream_Comparator_FollowsComparator() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .comparator(Comparator.reverseOrder())
+                .arity(4)
+                .build();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i % 100);
+        }
+
+        List<Integer> sorted = queue.sortedStream().collect(Collectors.toList());
+        List<Integer> expected = Arrays.asList(queue.toArray(new Integer[0]));
+        Collections.sort(expected, Comparator.reverseOrder());
+
+        assertEquals(expected, sorted);
+        assertEquals(expected, queue.sortedStream().sorted(Comparator.reverseOrder()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void SortedStream_Limit_ReturnsSmallestElements() {
+        for (PipelinedPriorityQueue<Integer> queue : queues()) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.offer(i);
+            }
+            for (int i = 0; i < 10; i++) {
+                queue.poll();
+            }
+
+            List<Integer> top = queue.sortedStream().limit(5).collect(Collectors.toList());
+
+            assertEquals(Arrays.asList(10, 11, 12, 13, 14), top);
+            assertEquals(NUM_ELEMENTS - 10, queue.sortedStream().count());
+        }
+    }
+
+    @Test
+    public void SortedIterator_QueueChangedAfterCreation_ReturnsSnapshot() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i = 10; i < 20; i++) {
+            queue.offer(i);
+        }
+
+        Iterator<Integer> iterator = queue.sortedIterator();
+        queue.offer(1);
+        assertEquals(1, (int) queue.poll());
+        assertEquals(10, (int) queue.poll());
+
+        for (int i = 10; i < 20; i++) {
+            assertEquals(i, (int) iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void SortedIteratorRemove_SmallestElements_RemovedFromQueue() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder().slotIndex().build();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.offer(i);
+        }
+
+        Iterator<Integer> iterator = queue.sortedIterator();
+        try {
+            iterator.remove();
+            assertTrue(false);
+        } catch (IllegalStateException ex) {
+        }
+        while (iterator.hasNext()) {
+            if (iterator.next() % 2 == 0) iterator.remove();
+        }
+
+        assertEquals(NUM_ELEMENTS / 2, queue.size());
+        for (int i = 1; i < NUM_ELEMENTS; i += 2) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    private List<PipelinedPriorityQueue<Integer>> queues() {
+        return Arrays.asList(
+                new PipelinedPriorityQueue<>(),
+                PipelinedPriorityQueue.<Integer>builder().arity(4).build(),
+                PipelinedPriorityQueue.<Integer>builder().storageMode(StorageMode.SEGMENTED).build());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,214 @@
+package threadsafepq.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_StorageMode {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+    private PipelinedPriorityQueue<Integer> parallelQueue;
+    private PipelinedPriorityQueue<Integer> parallelComparatorQueue;
+    private PipelinedPriorityQueue<Integer> segmentedQueue;
+
+    @Before
+    public void before() {
+        parallelQueue = new PipelinedPriorityQueue<>(CUSTOM_INITIAL_CAPACITY, null, StorageMode.PARALLEL_ARRAYS);
+        parallelComparatorQueue = new PipelinedPriorityQueue<>(CUSTOM_INITIAL_CAPACITY,
+                (o1, o2) -> o2.compareTo(o1), StorageMode.PARALLEL_ARRAYS);
+        segmentedQueue = new PipelinedPriorityQueue<>(CUSTOM_INITIAL_CAPACITY, null, StorageMode.SEGMENTED);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void Constructor_NullStorageMode_ThrowsNullPointerException() {
+        new PipelinedPriorityQueue<Integer>(CUSTOM_INITIAL_CAPACITY, null, null);
+    }
+
+    @Test
+    public void Poll_NoItemsParallelQueue_ReturnsNullAndKeepsSize() {
+        assertNull(parallelQueue.poll());
+        assertEquals(0, parallelQueue.size());
+        assertNull(parallelQueue.peek());
+    }
+
+    @Test
+    public void Poll_RandomOrderParallelQueueMultipleResize_CorrectlyDequeuesItems() {
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 50);
+        for (int i : inputList) {
+            parallelQueue.put(i);
+        }
+
+        for (int i = 0; i < inputList.length; i++) {
+            assertEquals(i, (int) parallelQueue.poll());
+        }
+        assertTrue(parallelQueue.isEmpty());
+    }
+
+    @Test
+    public void Poll_RandomOrderParallelComparatorQueueMultipleResize_CorrectlyDequeuesItems() {
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 50);
+        for (int i : inputList) {
+            parallelComparatorQueue.put(i);
+        }
+
+        for (int i = inputList.length - 1; i >= 0; i--) {
+            assertEquals(i, (int) parallelComparatorQueue.poll());
+        }
+    }
+
+    @Test
+    public void Poll_LastItem_PeekReturnsNull() {
+        parallelQueue.put(5);
+        assertEquals(5, (int) parallelQueue.poll());
+
+        assertNull(parallelQueue.peek());
+        assertFalse(parallelQueue.contains(5));
+    }
+
+    @Test
+    public void Clear_MultipleItems_QueueIsEmptyAndReusable() {
+        for (int i : shuffledRange(500)) {
+            parallelQueue.put(i);
+        }
+        parallelQueue.clear();
+
+        assertTrue(parallelQueue.isEmpty());
+        parallelQueue.put(3);
+        parallelQueue.put(1);
+        assertEquals(1, (int) parallelQueue.poll());
+        assertEquals(3, (int) parallelQueue.poll());
+    }
+
+    @Test
+    public void ToArray_MultipleItems_ReturnsAllItems() {
+        for (int i : shuffledRange(200)) {
+            parallelQueue.put(i);
+        }
+
+        Integer[] result = parallelQueue.toArray(new Integer[0]);
+        Arrays.sort(result);
+        Integer[] expected = new Integer[200];
+        for (int i = 0; i < expected.length; i++) expected[i] = i;
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    public void Poll_RandomOrderSegmentedQueueMultipleResize_CorrectlyDequeuesItems() {
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 50);
+        for (int i : inputList) {
+            segmentedQueue.put(i);
+        }
+
+        for (int i = 0; i < inputList.length; i++) {
+            assertEquals(i, (int) segmentedQueue.poll());
+        }
+        assertTrue(segmentedQueue.isEmpty());
+    }
+
+    @Test
+    public void Poll_InterleavedSegmentedQueueMultipleResize_CorrectlyDequeuesItems() {
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 50);
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        for (int i = 0; i < inputList.length; i++) {
+            segmentedQueue.put(inputList[i]);
+            expected.add(inputList[i]);
+            if (i % 3 == 0) {
+                assertEquals(expected.poll(), segmentedQueue.poll());
+            }
+        }
+
+        while (!expected.isEmpty()) {
+            assertEquals(expected.poll(), segmentedQueue.poll());
+        }
+        assertNull(segmentedQueue.poll());
+    }
+
+    @Test
+    public void Poll_RandomOrderSegmentedQuaternaryQueueMultipleResize_CorrectlyDequeuesItems() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(1)
+                .storageMode(StorageMode.SEGMENTED)
+                .arity(4)
+                .build();
+        int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 50);
+        for (int i : inputList) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < inputList.length; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void AddAll_SegmentedQueue_GrowsAndDequeuesInOrder() {
+        segmentedQueue.put(-1);
+        List<Integer> input = new ArrayList<>();
+        for (int i : shuffledRange(1000)) {
+            input.add(i);
+        }
+        segmentedQueue.addAll(input);
+
+        assertEquals(1001, segmentedQueue.size());
+        for (int i = -1; i < 1000; i++) {
+            assertEquals(i, (int) segmentedQueue.poll());
+        }
+    }
+
+    @Test
+    public void DrainTo_SegmentedQueue_DrainsInOrderAndKeepsRest() {
+        for (int i : shuffledRange(1000)) {
+            segmentedQueue.put(i);
+        }
+        List<Integer> sink = new ArrayList<>();
+
+        assertEquals(600, segmentedQueue.drainTo(sink, 600));
+        for (int i = 0; i < 600; i++) {
+            assertEquals(i, (int) sink.get(i));
+        }
+        for (int i = 600; i < 1000; i++) {
+            assertEquals(i, (int) segmentedQueue.poll());
+        }
+    }
+
+    @Test
+    public void Clear_MultipleItemsSegmentedQueue_QueueIsEmptyAndReusable() {
+        for (int i : shuffledRange(500)) {
+            segmentedQueue.put(i);
+        }
+        segmentedQueue.clear();
+
+        assertTrue(segmentedQueue.isEmpty());
+        segmentedQueue.put(3);
+        segmentedQueue.put(1);
+        assertEquals(1, (int) segmentedQueue.poll());
+        assertEquals(3, (int) segmentedQueue.poll());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,198 @@
+package threadsafepq.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_TimedPoll {
+
+    private PipelinedPriorityQueue<Integer> queue;
+
+    @Before
+    public void before() {
+        queue = new PipelinedPriorityQueue<>();
+    }
+
+    @Test
+    public void TimedPoll_NonEmptyQueue_ReturnsHeadWithoutWaiting() throws InterruptedException {
+        for (int i : shuffledRange(50)) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, (int) queue.poll(0, TimeUnit.NANOSECONDS));
+        }
+        assertNull(queue.poll(0, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void TimedPoll_EmptyQueue_ReturnsNullAfterTimeout() throws InterruptedException {
+        long start = System.nanoTime();
+        assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void TimedPoll_SingleElementIntoEmptyQueue_WakesConsumer() throws InterruptedException {
+        Integer[] result = new Integer[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                result[0] = queue.poll(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+            }
+        });
+        consumer.start();
+        consumer.join(50);
+        assertTrue(consumer.isAlive());
+
+        long start = System.nanoTime();
+        queue.put(7);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(7, (int) result[0]);
+    }
+
+    @Test
+    public void Take_SingleElementIntoEmptyQueue_WakesConsumer() throws InterruptedException {
+        Integer[] result = new Integer[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                result[0] = queue.take();
+            } catch (InterruptedException ex) {
+            }
+        });
+        consumer.start();
+        consumer.join(50);
+        assertTrue(consumer.isAlive());
+
+        queue.put(3);
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(3, (int) result[0]);
+    }
+
+    @Test
+    public void TimedPoll_ManyWaitingConsumers_EachElementWakesOneConsumer() throws InterruptedException {
+        int numConsumers = 8;
+        int numElements = 5;
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger timedOut = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(numConsumers);
+        List<Thread> consumers = new ArrayList<>();
+        for (int t = 0; t < numConsumers; t++) {
+            Thread consumer = new Thread(() -> {
+                started.countDown();
+                try {
+                    if (queue.poll(500, TimeUnit.MILLISECONDS) != null) {
+                        received.incrementAndGet();
+                    } else {
+                        timedOut.incrementAndGet();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            });
+            consumers.add(consumer);
+            consumer.start();
+        }
+        started.await();
+        Thread.sleep(50);
+
+        for (int i : shuffledRange(numElements)) {
+            queue.put(i);
+        }
+        for (Thread consumer : consumers) consumer.join();
+
+        assertEquals(numElements, received.get());
+        assertEquals(numConsumers - numElements, timedOut.get());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void TimedPoll_InterruptedBeforeWaiting_ThrowsInterruptedException() throws InterruptedException {
+        Thread.currentThread().interrupt();
+        queue.poll(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void TimedPoll_InterruptedWhileWaiting_LeavesElementsForOthers() throws InterruptedException {
+        boolean[] interrupted = new boolean[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                queue.poll(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                interrupted[0] = true;
+            }
+        });
+        consumer.start();
+        consumer.join(50);
+        consumer.interrupt();
+        consumer.join(5000);
+
+        assertTrue(interrupted[0]);
+        queue.put(1);
+        assertEquals(1, (int) queue.poll(0, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void TimedPoll_ProducersAndConsumers_EveryElementReceivedOnce() throws InterruptedException {
+        int perThread = 2000;
+        int numThreads = 4;
+        long[] sums = new long[numThreads];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                for (int i = 0; i < perThread; i++) {
+                    if (random.nextInt(8) == 0) Thread.yield();
+                    queue.put(id * perThread + i);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        Integer value = queue.poll(10, TimeUnit.SECONDS);
+                        sums[id] += value;
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+
+        long total = 0;
+        for (long sum : sums) total += sum;
+        long n = (long) perThread * numThreads;
+        assertEquals(n * (n - 1) / 2, total);
+        assertTrue(queue.isEmpty());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
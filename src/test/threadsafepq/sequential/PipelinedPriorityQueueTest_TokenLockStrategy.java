@@ -0,0 +1,291 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.SpinParkTokenLock;
+import threadsafepq.TicketTokenLock;
+import threadsafepq.TokenLockStrategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_TokenLockStrategy {
+
+    private static final int CUSTOM_INITIAL_CAPACITY = 42;
+
+    @Test(expected = NullPointerException.class)
+    public void Builder_NullStrategy_ThrowsNullPointerException() {
+        PipelinedPriorityQueue.<Integer>builder().tokenLockStrategy(null);
+    }
+
+    @Test
+    public void Poll_RandomOrderEveryStrategyMultipleResize_CorrectlyDequeuesItems() {
+        for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .initialCapacity(CUSTOM_INITIAL_CAPACITY)
+                    .tokenLockStrategy(strategy)
+                    .build();
+            int[] inputList = shuffledRange(CUSTOM_INITIAL_CAPACITY * 20);
+            for (int i : inputList) {
+                queue.put(i);
+            }
+
+            for (int i = 0; i < inputList.length; i++) {
+                assertEquals(i, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void ReentrantOperations_SpinThenParkQueue_DoNotDeadlock() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .tokenLockStrategy(TokenLockStrategy.SPIN_THEN_PARK)
+                .build();
+        queue.put(2);
+        queue.put(1);
+
+        assertEquals(1, (int) queue.element());
+        assertEquals(1, (int) queue.remove());
+        assertTrue(queue.contains(2));
+        assertEquals(2, (int) queue.remove());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void Remove_EmptySpinThenParkQueue_ThrowsException() {
+        PipelinedPriorityQueue.<Integer>builder()
+                .tokenLockStrategy(TokenLockStrategy.SPIN_THEN_PARK)
+                .build()
+                .remove();
+    }
+
+    @Test
+    public void TryLock_HeldByOtherThread_ReturnsFalseUntilReleased() throws InterruptedException {
+        SpinParkTokenLock lock = new SpinParkTokenLock(0);
+        lock.lock();
+        lock.lock();
+
+        boolean[] acquired = new boolean[2];
+        Thread other = new Thread(() -> {
+            try {
+                acquired[0] = lock.tryLock(10, TimeUnit.MILLISECONDS);
+                acquired[1] = lock.tryLock(5, TimeUnit.SECONDS);
+                if (acquired[1]) lock.unlock();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        other.start();
+        Thread.sleep(100);
+        lock.unlock();
+        assertEquals(Thread.currentThread(), lock.getOwner());
+        lock.unlock();
+        other.join();
+
+        assertFalse(acquired[0]);
+        assertTrue(acquired[1]);
+        assertNull(lock.getOwner());
+    }
+
+    @Test
+    public void Unlock_FirstWaiterInterrupted_WakeupPassedToNextWaiter() throws InterruptedException {
+        SpinParkTokenLock lock = new SpinParkTokenLock(0);
+        lock.lock();
+
+        boolean[] interrupted = new boolean[1];
+        Thread cancelled = new Thread(() -> {
+            try {
+                lock.lockInterruptibly();
+                lock.unlock();
+            } catch (InterruptedException ex) {
+                interrupted[0] = true;
+            }
+        });
+        cancelled.start();
+        while (cancelled.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+        Thread waiting = new Thread(() -> {
+            lock.lock();
+            lock.unlock();
+        });
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+
+        // the token is released before the interrupted waiter has left, so the wakeup goes to that waiter
+        cancelled.interrupt();
+        lock.unlock();
+        cancelled.join();
+        waiting.join(5000);
+
+        assertTrue(interrupted[0]);
+        assertFalse(waiting.isAlive());
+        assertNull(lock.getOwner());
+    }
+
+    @Test
+    public void TryLock_TicketLockHeldByOtherThread_ReturnsFalseUntilReleased() throws InterruptedException {
+        TicketTokenLock lock = new TicketTokenLock();
+        lock.lock();
+        lock.lock();
+
+        boolean[] acquired = new boolean[3];
+        Thread other = new Thread(() -> {
+            try {
+                acquired[0] = lock.tryLock();
+                acquired[1] = lock.tryLock(10, TimeUnit.MILLISECONDS);
+                acquired[2] = lock.tryLock(5, TimeUnit.SECONDS);
+                if (acquired[2]) lock.unlock();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        other.start();
+        Thread.sleep(100);
+        lock.unlock();
+        assertEquals(Thread.currentThread(), lock.getOwner());
+        lock.unlock();
+        other.join();
+
+        assertFalse(acquired[0]);
+        assertFalse(acquired[1]);
+        assertTrue(acquired[2]);
+        assertNull(lock.getOwner());
+    }
+
+    @Test
+    public void Lock_TicketLockManyWaiters_GrantedInArrivalOrder() throws InterruptedException {
+        TicketTokenLock lock = new TicketTokenLock();
+        List<Integer> order = new ArrayList<>();
+        List<Thread> waiters = new ArrayList<>();
+        lock.lock();
+        for (int t = 0; t < 6; t++) {
+            int id = t;
+            Thread waiter = new Thread(() -> {
+                lock.lock();
+                order.add(id);
+                lock.unlock();
+            });
+            waiters.add(waiter);
+            waiter.start();
+            // the next waiter only arrives once this one holds a ticket
+            while (lock.getQueueLength() < t + 1) {
+                Thread.yield();
+            }
+        }
+        lock.unlock();
+        for (Thread waiter : waiters) waiter.join();
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), order);
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void Unlock_TicketLockNotOwner_ThrowsIllegalMonitorStateException() {
+        new TicketTokenLock().unlock();
+    }
+
+    @Test
+    public void PutAndPoll_EveryStrategyManyThreads_EveryElementPolledOnce() throws InterruptedException {
+        for (TokenLockStrategy strategy : TokenLockStrategy.values()) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .initialCapacity(1)
+                    .tokenLockStrategy(strategy)
+                    .build();
+            int numThreads = 8;
+            int perThread = 500;
+            long[] sums = new long[numThreads];
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int id = t;
+                threads.add(new Thread(() -> {
+                    int polled = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        queue.put(id * perThread + i);
+                        if (i % 2 == 1) {
+                            sums[id] += queue.poll();
+                            polled++;
+                        }
+                    }
+                    while (polled < perThread) {
+                        Integer value = queue.poll();
+                        if (value != null) {
+                            sums[id] += value;
+                            polled++;
+                        }
+                    }
+                }));
+            }
+            for (Thread t : threads) t.start();
+            for (Thread t : threads) t.join();
+
+            long total = 0;
+            for (long sum : sums) total += sum;
+            long n = (long) numThreads * perThread;
+            assertEquals(strategy.toString(), n * (n - 1) / 2, total);
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void TakeAndPut_ParkQueueManyThreads_EveryElementTakenOnce() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(1)
+                .tokenLockStrategy(TokenLockStrategy.PARK)
+                .build();
+        int numThreads = 16;
+        int perThread = 250;
+        long[] sums = new long[numThreads];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int id = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    queue.put(id * perThread + i);
+                }
+            }));
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        sums[id] += queue.take();
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        for (Thread t : threads) t.start();
+        for (Thread t : threads) t.join();
+
+        long total = 0;
+        for (long sum : sums) total += sum;
+        long n = (long) numThreads * perThread;
+        assertEquals(n * (n - 1) / 2, total);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = IllegalMonitorStateException.class)
+    public void Unlock_NotOwner_ThrowsIllegalMonitorStateException() {
+        new SpinParkTokenLock().unlock();
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
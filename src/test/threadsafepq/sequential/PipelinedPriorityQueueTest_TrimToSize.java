@@ -0,0 +1,156 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+import threadsafepq.StorageMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_TrimToSize {
+
+    private static final int NUM_ELEMENTS = 2000;
+    private static final int[] ARITIES = new int[]{2, 3, 4, 8};
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_ZeroLoadFactor_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().shrinkBelow(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Builder_LoadFactorAboveHalf_ThrowsIllegalArgumentException() {
+        PipelinedPriorityQueue.<Integer>builder().shrinkBelow(0.75);
+    }
+
+    @Test
+    public void TrimToSize_EmptyQueue_QueueIsReusable() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(NUM_ELEMENTS);
+        queue.trimToSize();
+
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+        for (int i : shuffledRange(100)) {
+            queue.put(i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+    }
+
+    @Test
+    public void TrimToSize_AfterBurstEveryArity_KeepsRemainingElementsInOrder() {
+        for (int arity : ARITIES) {
+            PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                    .arity(arity)
+                    .build();
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.put(i);
+            }
+            for (int i = 0; i < NUM_ELEMENTS - 37; i++) {
+                assertEquals(i, (int) queue.poll());
+            }
+            queue.trimToSize();
+
+            assertEquals(37, queue.size());
+            for (int i = NUM_ELEMENTS - 37; i < NUM_ELEMENTS; i++) {
+                assertEquals(i, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    public void TrimToSize_ThenGrowAgainEveryStorageMode_CorrectlyDequeuesItems() {
+        for (StorageMode mode : StorageMode.values()) {
+            PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>(1, null, mode);
+            int[] inputList = shuffledRange(NUM_ELEMENTS);
+            for (int i = 0; i < NUM_ELEMENTS / 2; i++) {
+                queue.put(inputList[i]);
+            }
+            queue.trimToSize();
+            for (int i = NUM_ELEMENTS / 2; i < NUM_ELEMENTS; i++) {
+                queue.put(inputList[i]);
+            }
+
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                assertEquals(i, (int) queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void Poll_ShrinkPolicyRepeatedBursts_MatchesPriorityQueue() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(4)
+                .shrinkBelow(0.25)
+                .build();
+        PriorityQueue<Integer> expected = new PriorityQueue<>();
+        Random random = new Random(NUM_ELEMENTS);
+        for (int burst = 0; burst < 5; burst++) {
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                int value = random.nextInt(NUM_ELEMENTS);
+                queue.put(value);
+                expected.add(value);
+            }
+            while (expected.size() > 3) {
+                assertEquals(expected.poll(), queue.poll());
+            }
+            for (int i = 0; i < NUM_ELEMENTS; i++) {
+                int value = random.nextInt(NUM_ELEMENTS);
+                queue.put(value);
+                expected.add(value);
+                assertEquals(expected.poll(), queue.poll());
+            }
+            assertEquals(expected.size(), queue.size());
+        }
+
+        while (!expected.isEmpty()) {
+            assertEquals(expected.poll(), queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void Poll_ShrinkPolicyWithRelaxedPolling_KeepsEveryElement() {
+        PipelinedPriorityQueue<Integer> queue = PipelinedPriorityQueue.<Integer>builder()
+                .initialCapacity(1)
+                .relaxedPolling(4)
+                .shrinkBelow(0.5)
+                .build();
+        List<Integer> polled = new ArrayList<>();
+        for (int burst = 0; burst < 3; burst++) {
+            for (int i : shuffledRange(NUM_ELEMENTS)) {
+                queue.put(i);
+            }
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                polled.add(value);
+            }
+        }
+
+        assertEquals(3 * NUM_ELEMENTS, polled.size());
+        long sum = 0;
+        for (int value : polled) sum += value;
+        assertEquals(3L * NUM_ELEMENTS * (NUM_ELEMENTS - 1) / 2, sum);
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}
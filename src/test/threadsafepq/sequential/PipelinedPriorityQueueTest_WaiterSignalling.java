@@ -0,0 +1,108 @@
+package threadsafepq.sequential;
+
+import org.junit.Test;
+import threadsafepq.PipelinedPriorityQueue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class PipelinedPriorityQueueTest_WaiterSignalling {
+
+    private static final int NUM_ELEMENTS = 2000;
+
+    @Test
+    public void AddAll_ManyWaitingTakers_WakesOneTakerPerElement() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        AtomicInteger taken = new AtomicInteger();
+        List<Thread> takers = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            Thread taker = new Thread(() -> {
+                try {
+                    queue.take();
+                    taken.incrementAndGet();
+                } catch (InterruptedException ex) {
+                }
+            });
+            takers.add(taker);
+            taker.start();
+        }
+        Thread.sleep(50);
+
+        queue.addAll(Arrays.asList(3, 1, 4, 2));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (taken.get() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        assertEquals(4, taken.get());
+        assertTrue(queue.isEmpty());
+
+        queue.addAll(Arrays.asList(5, 6));
+        for (Thread taker : takers) taker.join(5000);
+        for (Thread taker : takers) assertFalse(taker.isAlive());
+        assertEquals(6, taken.get());
+    }
+
+    @Test
+    public void TimedPoll_ProducerPausesBetweenInserts_NoWakeupIsLost() throws InterruptedException {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        long[] maxWait = new long[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < NUM_ELEMENTS; i++) {
+                    long start = System.nanoTime();
+                    assertNotNull(queue.poll(5, TimeUnit.SECONDS));
+                    maxWait[0] = Math.max(maxWait[0], System.nanoTime() - start);
+                }
+            } catch (InterruptedException ex) {
+            }
+        });
+        consumer.start();
+
+        Random random = new Random(NUM_ELEMENTS);
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            if (random.nextBoolean()) LockSupport.parkNanos(random.nextInt(20_000));
+            queue.put(i);
+        }
+        consumer.join();
+
+        assertTrue(queue.isEmpty());
+        assertTrue(maxWait[0] < TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void Put_NoWaitingConsumers_AllElementsPolledInOrder() {
+        PipelinedPriorityQueue<Integer> queue = new PipelinedPriorityQueue<>();
+        for (int i : shuffledRange(NUM_ELEMENTS)) {
+            queue.put(i);
+        }
+
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            assertEquals(i, (int) queue.poll());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    private int[] shuffledRange(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) array[i] = i;
+        Random random = new Random(n);
+        for (int i = n - 1; i > 0; i--) {
+            int index = random.nextInt(i + 1);
+            int temp = array[index];
+            array[index] = array[i];
+            array[i] = temp;
+        }
+        return array;
+    }
+}